@@ -0,0 +1,559 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import com.streamfirst.iceberg.hybrid.domain.BulkDeleteResult;
+import com.streamfirst.iceberg.hybrid.domain.FileListing;
+import com.streamfirst.iceberg.hybrid.domain.FileStat;
+import com.streamfirst.iceberg.hybrid.domain.Region;
+import com.streamfirst.iceberg.hybrid.domain.StorageLocation;
+import com.streamfirst.iceberg.hybrid.domain.StoragePath;
+import com.streamfirst.iceberg.hybrid.domain.StoredObject;
+import com.streamfirst.iceberg.hybrid.ports.StoragePort;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Storage port decorator that keeps recently read files on local disk, so repeated reads of hot
+ * files from a remote region's storage become local reads. Put it in front of the storage a
+ * {@code ReadRouter} reads through when the local replica is incomplete.
+ *
+ * <p>A read of a file whose cached copy was validated within the revalidation interval is served
+ * from disk without asking the delegate. Other reads ask the delegate for the file's etag and are
+ * served from disk if the cached copy has the same etag. Otherwise the whole file is fetched into
+ * the cache first, even for a range read; files larger than the cache are read straight from the
+ * delegate. Concurrent misses for the same file share one fetch. The least recently read files are
+ * evicted once the cache exceeds its size. Writes and deletes through this port drop the cached
+ * copy; a file replaced by someone else is served from its old copy until the copy is next
+ * validated.
+ *
+ * <p>Validation costs whatever the delegate's {@link StoragePort#getObjectInfo} costs: a metadata
+ * request for object storage, but a read of the whole file for a delegate relying on the default
+ * implementation. The interval bounds how often that is paid per cached file.
+ *
+ * <p>The cache starts empty: files left in the directory by an earlier run are deleted.
+ */
+@Slf4j
+public class CachingStoragePort implements StoragePort {
+
+  /** Default time a cached copy is served before its etag is checked with the delegate again. */
+  public static final Duration DEFAULT_REVALIDATION_INTERVAL = Duration.ofSeconds(10);
+
+  private static final String CACHE_FILE_PREFIX = "cache-";
+
+  private final StoragePort delegate;
+  private final Path cacheDirectory;
+  private final long maxBytes;
+  private final long revalidationNanos;
+
+  // Cached files by location and path, least recently read first
+  private final LinkedHashMap<CacheKey, CachedFile> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedBytes;
+  private final Map<Fetch, CompletableFuture<Path>> fetches = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder coalescedMisses = new LongAdder();
+  private final LongAdder bypassed = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param delegate the storage to read through
+   * @param cacheDirectory directory for cached files, used only by this cache
+   * @param maxBytes most bytes of files to keep cached
+   */
+  public CachingStoragePort(StoragePort delegate, Path cacheDirectory, long maxBytes) {
+    this(delegate, cacheDirectory, maxBytes, DEFAULT_REVALIDATION_INTERVAL);
+  }
+
+  /**
+   * @param delegate the storage to read through
+   * @param cacheDirectory directory for cached files, used only by this cache
+   * @param maxBytes most bytes of files to keep cached
+   * @param revalidationInterval how long a cached copy is served before its etag is checked with
+   *     the delegate again, zero to check on every read
+   */
+  public CachingStoragePort(
+      StoragePort delegate, Path cacheDirectory, long maxBytes, Duration revalidationInterval) {
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("Cache size must be at least 1 byte");
+    }
+    if (revalidationInterval.isNegative()) {
+      throw new IllegalArgumentException("Revalidation interval cannot be negative");
+    }
+    this.delegate = delegate;
+    this.cacheDirectory = cacheDirectory;
+    this.maxBytes = maxBytes;
+    this.revalidationNanos = revalidationInterval.toNanos();
+    try {
+      Files.createDirectories(cacheDirectory);
+      try (Stream<Path> leftovers = Files.list(cacheDirectory)) {
+        for (Path file : leftovers.toList()) {
+          if (file.getFileName().toString().startsWith(CACHE_FILE_PREFIX)) {
+            Files.deleteIfExists(file);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to prepare cache directory: " + cacheDirectory, e);
+    }
+  }
+
+  @Override
+  public byte[] readFile(StorageLocation location, StoragePath path) {
+    return read(location, path, Files::readAllBytes, () -> delegate.readFile(location, path));
+  }
+
+  @Override
+  public InputStream readFileStream(StorageLocation location, StoragePath path) {
+    return read(
+        location, path, Files::newInputStream, () -> delegate.readFileStream(location, path));
+  }
+
+  @Override
+  public byte[] readRange(StorageLocation location, StoragePath path, long offset, int length) {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("Offset and length cannot be negative");
+    }
+    return read(
+        location,
+        path,
+        file -> readRange(file, offset, length),
+        () -> delegate.readRange(location, path, offset, length));
+  }
+
+  @Override
+  public ByteBuffer readBuffer(StorageLocation location, StoragePath path) {
+    return ByteBuffer.wrap(readFile(location, path)).asReadOnlyBuffer();
+  }
+
+  @Override
+  public ByteBuffer readRangeBuffer(
+      StorageLocation location, StoragePath path, long offset, int length) {
+    return ByteBuffer.wrap(readRange(location, path, offset, length)).asReadOnlyBuffer();
+  }
+
+  @Override
+  public SeekableByteChannel openChannel(StorageLocation location, StoragePath path) {
+    return read(
+        location,
+        path,
+        file -> FileChannel.open(file, StandardOpenOption.READ),
+        () -> delegate.openChannel(location, path));
+  }
+
+  /**
+   * Reads a file from its cached copy, fetching it first on a miss, or from the delegate if it
+   * cannot be cached.
+   */
+  private <T> T read(
+      StorageLocation location, StoragePath path, CacheRead<T> cached, DirectRead<T> direct) {
+    Path file = recentlyValidated(new CacheKey(location.uri(), path.toString()));
+    if (file != null) {
+      hits.increment();
+    } else {
+      StoredObject object =
+          delegate
+              .getObjectInfo(location, path)
+              .orElseThrow(
+                  () ->
+                      new RuntimeException(
+                          "File not found: " + path + " in storage " + location.uri()));
+      if (object.size() > maxBytes) {
+        bypassed.increment();
+        return direct.read();
+      }
+      file = cachedFile(location, object);
+    }
+
+    if (file != null) {
+      try {
+        return cached.read(file);
+      } catch (NoSuchFileException e) {
+        // Evicted since it was looked up
+        log.debug("Cached copy of {} was evicted during the read", path);
+      } catch (IOException e) {
+        log.warn("Failed to read cached copy of {}, reading from storage", path, e);
+      }
+    }
+    return direct.read();
+  }
+
+  /**
+   * Gets the cached copy of a file's current content, fetching it unless another caller is
+   * already. Returns null if the file changed while being fetched.
+   */
+  private Path cachedFile(StorageLocation location, StoredObject object) {
+    CacheKey key = new CacheKey(location.uri(), object.path().toString());
+    Path file = lookup(key, object.etag());
+    if (file != null) {
+      hits.increment();
+      return file;
+    }
+
+    Fetch fetch = new Fetch(key, object.etag());
+    CompletableFuture<Path> fetched = new CompletableFuture<>();
+    CompletableFuture<Path> pending = fetches.putIfAbsent(fetch, fetched);
+    if (pending != null) {
+      coalescedMisses.increment();
+      try {
+        return pending.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+    }
+
+    try {
+      // Another caller may have finished fetching between the lookup and registering this fetch
+      file = lookup(key, object.etag());
+      if (file != null) {
+        hits.increment();
+      } else {
+        misses.increment();
+        file = fetch(location, object);
+        if (file != null) {
+          admit(key, new CachedFile(object.etag(), file, object.size(), System.nanoTime()));
+        }
+      }
+      fetched.complete(file);
+      return file;
+    } catch (RuntimeException e) {
+      fetched.completeExceptionally(e);
+      throw e;
+    } finally {
+      fetches.remove(fetch, fetched);
+    }
+  }
+
+  /** Gets the cached copy of a file if it was validated within the revalidation interval. */
+  private Path recentlyValidated(CacheKey key) {
+    long now = System.nanoTime();
+    synchronized (entries) {
+      CachedFile cached = entries.get(key);
+      return cached != null && now - cached.validatedNanos() < revalidationNanos
+          ? cached.file()
+          : null;
+    }
+  }
+
+  /** Gets the cached copy of a file if it has the given etag, marking it as validated now. */
+  private Path lookup(CacheKey key, String etag) {
+    synchronized (entries) {
+      CachedFile cached = entries.get(key);
+      if (cached == null || !cached.etag().equals(etag)) {
+        return null;
+      }
+      entries.put(
+          key, new CachedFile(cached.etag(), cached.file(), cached.size(), System.nanoTime()));
+      return cached.file();
+    }
+  }
+
+  /** Copies a file into the cache directory, returning null if its content is not as expected. */
+  private Path fetch(StorageLocation location, StoredObject object) {
+    Path file = null;
+    try {
+      file = Files.createTempFile(cacheDirectory, CACHE_FILE_PREFIX, ".bin");
+      MessageDigest digest = StoredObject.newEtagDigest();
+      try (InputStream in = delegate.readFileStream(location, object.path());
+          OutputStream out = Files.newOutputStream(file)) {
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+          out.write(buffer, 0, read);
+        }
+      }
+      if (!StoredObject.etagOf(digest).equals(object.etag())) {
+        log.debug("{} changed while being cached, reading it uncached", object.path());
+        delete(file);
+        return null;
+      }
+      log.debug("Cached {} from {} ({} bytes)", object.path(), location.uri(), object.size());
+      return file;
+    } catch (IOException e) {
+      if (file != null) {
+        delete(file);
+      }
+      throw new RuntimeException("Failed to cache file: " + object.path(), e);
+    }
+  }
+
+  /** Adds a fetched file to the cache, evicting the least recently read files to make room. */
+  private void admit(CacheKey key, CachedFile file) {
+    List<Path> evicted = new ArrayList<>();
+    synchronized (entries) {
+      CachedFile replaced = entries.put(key, file);
+      cachedBytes += file.size();
+      if (replaced != null) {
+        cachedBytes -= replaced.size();
+        evicted.add(replaced.file());
+      }
+      Iterator<CachedFile> leastRecent = entries.values().iterator();
+      while (cachedBytes > maxBytes && leastRecent.hasNext()) {
+        CachedFile eldest = leastRecent.next();
+        if (eldest == file) {
+          break;
+        }
+        leastRecent.remove();
+        cachedBytes -= eldest.size();
+        evicted.add(eldest.file());
+        evictions.increment();
+      }
+    }
+    evicted.forEach(CachingStoragePort::delete);
+  }
+
+  /** Drops the cached copy of a file written or deleted through this port. */
+  private void invalidate(StorageLocation location, StoragePath path) {
+    CachedFile removed;
+    synchronized (entries) {
+      removed = entries.remove(new CacheKey(location.uri(), path.toString()));
+      if (removed != null) {
+        cachedBytes -= removed.size();
+      }
+    }
+    if (removed != null) {
+      delete(removed.file());
+    }
+  }
+
+  private static byte[] readRange(Path file, long offset, int length) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long from = Math.min(offset, channel.size());
+      ByteBuffer range = ByteBuffer.allocate((int) Math.min(length, channel.size() - from));
+      while (range.hasRemaining() && channel.read(range, from + range.position()) >= 0) {
+        // Keep reading until the range is full
+      }
+      return range.array();
+    }
+  }
+
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Failed to delete cached file {}", file, e);
+    }
+  }
+
+  /** Gets the cache's hit and eviction counts and current size. */
+  public CacheStats getStats() {
+    long bytes;
+    int files;
+    synchronized (entries) {
+      bytes = cachedBytes;
+      files = entries.size();
+    }
+    return new CacheStats(
+        hits.sum(),
+        misses.sum(),
+        coalescedMisses.sum(),
+        bypassed.sum(),
+        evictions.sum(),
+        files,
+        bytes);
+  }
+
+  @Override
+  public void writeFile(StorageLocation location, StoragePath path, byte[] data) {
+    delegate.writeFile(location, path, data);
+    invalidate(location, path);
+  }
+
+  @Override
+  public void writeBuffer(StorageLocation location, StoragePath path, ByteBuffer data) {
+    delegate.writeBuffer(location, path, data);
+    invalidate(location, path);
+  }
+
+  @Override
+  public void writeFile(StorageLocation location, StoragePath path, InputStream data) {
+    delegate.writeFile(location, path, data);
+    invalidate(location, path);
+  }
+
+  @Override
+  public StoredObject writeFileInParts(
+      StorageLocation location, StoragePath path, InputStream data, int partBytes) {
+    StoredObject written = delegate.writeFileInParts(location, path, data, partBytes);
+    invalidate(location, path);
+    return written;
+  }
+
+  @Override
+  public String createMultipartUpload(StorageLocation location, StoragePath path, String tag) {
+    return delegate.createMultipartUpload(location, path, tag);
+  }
+
+  @Override
+  public Optional<String> getMultipartUploadTag(
+      StorageLocation location, StoragePath path, String uploadId) {
+    return delegate.getMultipartUploadTag(location, path, uploadId);
+  }
+
+  @Override
+  public void uploadPart(
+      StorageLocation location, StoragePath path, String uploadId, int partNumber, byte[] data) {
+    delegate.uploadPart(location, path, uploadId, partNumber, data);
+  }
+
+  @Override
+  public List<String> listMultipartUploads(StorageLocation location, StoragePath path) {
+    return delegate.listMultipartUploads(location, path);
+  }
+
+  @Override
+  public Map<Integer, Long> listUploadedParts(
+      StorageLocation location, StoragePath path, String uploadId) {
+    return delegate.listUploadedParts(location, path, uploadId);
+  }
+
+  @Override
+  public void completeMultipartUpload(
+      StorageLocation location, StoragePath path, String uploadId, int partCount) {
+    delegate.completeMultipartUpload(location, path, uploadId, partCount);
+    invalidate(location, path);
+  }
+
+  @Override
+  public void abortMultipartUpload(StorageLocation location, StoragePath path, String uploadId) {
+    delegate.abortMultipartUpload(location, path, uploadId);
+  }
+
+  @Override
+  public boolean fileExists(StorageLocation location, StoragePath path) {
+    return delegate.fileExists(location, path);
+  }
+
+  @Override
+  public Optional<StoredObject> getObjectInfo(StorageLocation location, StoragePath path) {
+    return delegate.getObjectInfo(location, path);
+  }
+
+  @Override
+  public Set<StoragePath> existsAll(StorageLocation location, Collection<StoragePath> paths) {
+    return delegate.existsAll(location, paths);
+  }
+
+  @Override
+  public Map<StoragePath, FileStat> statAll(
+      StorageLocation location, Collection<StoragePath> paths) {
+    return delegate.statAll(location, paths);
+  }
+
+  @Override
+  public BulkDeleteResult deleteAll(StorageLocation location, Collection<StoragePath> paths) {
+    BulkDeleteResult result = delegate.deleteAll(location, paths);
+    result.deleted().forEach(path -> invalidate(location, path));
+    return result;
+  }
+
+  @Override
+  public void deleteFile(StorageLocation location, StoragePath path) {
+    delegate.deleteFile(location, path);
+    invalidate(location, path);
+  }
+
+  @Override
+  public void copyFile(
+      StorageLocation source,
+      StoragePath sourcePath,
+      StorageLocation target,
+      StoragePath targetPath) {
+    delegate.copyFile(source, sourcePath, target, targetPath);
+    invalidate(target, targetPath);
+  }
+
+  @Override
+  public List<StoragePath> listFiles(StorageLocation location, Predicate<StoragePath> predicate) {
+    return delegate.listFiles(location, predicate);
+  }
+
+  @Override
+  public List<StoragePath> listFiles(StorageLocation location, String prefix) {
+    return delegate.listFiles(location, prefix);
+  }
+
+  @Override
+  public FileListing listFiles(
+      StorageLocation location, String prefix, String startAfter, int limit) {
+    return delegate.listFiles(location, prefix, startAfter, limit);
+  }
+
+  @Override
+  public long getFileSize(StorageLocation location, StoragePath path) {
+    return delegate.getFileSize(location, path);
+  }
+
+  @Override
+  public StorageLocation getStorageLocation(Region region) {
+    return delegate.getStorageLocation(region);
+  }
+
+  /**
+   * Cache activity since creation.
+   *
+   * @param hits reads served from a cached copy
+   * @param misses reads that fetched the file into the cache
+   * @param coalescedMisses reads that waited for another read's fetch of the same file
+   * @param bypassed reads of files too large to cache, served by the delegate
+   * @param evictions files evicted to make room
+   * @param cachedFiles files currently cached
+   * @param cachedBytes bytes currently cached
+   */
+  public record CacheStats(
+      long hits,
+      long misses,
+      long coalescedMisses,
+      long bypassed,
+      long evictions,
+      int cachedFiles,
+      long cachedBytes) {
+
+    /** Gets the share of reads served without a fetch of their own, or 0 before any reads. */
+    public double hitRatio() {
+      long reads = hits + misses + coalescedMisses + bypassed;
+      return reads == 0 ? 0 : (double) (hits + coalescedMisses) / reads;
+    }
+  }
+
+  private record CacheKey(String storageUri, String path) {}
+
+  private record CachedFile(String etag, Path file, long size, long validatedNanos) {}
+
+  private record Fetch(CacheKey key, String etag) {}
+
+  @FunctionalInterface
+  private interface CacheRead<T> {
+    T read(Path file) throws IOException;
+  }
+
+  @FunctionalInterface
+  private interface DirectRead<T> {
+    T read();
+  }
+}
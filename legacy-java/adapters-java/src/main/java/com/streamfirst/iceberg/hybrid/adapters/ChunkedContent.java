@@ -0,0 +1,148 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import com.streamfirst.iceberg.hybrid.adapters.ContentStore.Content;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Content held in buffers of a fixed chunk size, each full but the last. Buffers returned by
+ * {@link #buffer} and {@link #range} are views of a chunk when the bytes lie in one chunk, and
+ * heap copies otherwise; stores that reuse chunks override {@link #range} to copy always.
+ */
+abstract class ChunkedContent implements Content {
+  private final List<ByteBuffer> chunks;
+  private final int chunkBytes;
+  private final int size;
+
+  /**
+   * @param chunks the chunks, each positioned at zero with its limit at the bytes it holds
+   * @param chunkBytes bytes held by each chunk but the last
+   * @param size total bytes held
+   */
+  ChunkedContent(List<ByteBuffer> chunks, int chunkBytes, int size) {
+    this.chunks = chunks;
+    this.chunkBytes = chunkBytes;
+    this.size = size;
+  }
+
+  /** Gets the chunks, for stores that free them. */
+  List<ByteBuffer> chunks() {
+    return chunks;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public ByteBuffer buffer() {
+    return range(0, size);
+  }
+
+  @Override
+  public ByteBuffer range(int offset, int length) {
+    if (length == 0) {
+      return ByteBuffer.allocate(0).asReadOnlyBuffer();
+    }
+    int chunkOffset = offset % chunkBytes;
+    if (chunkOffset + length <= chunkBytes) {
+      ByteBuffer chunk = chunks.get(offset / chunkBytes);
+      return chunk.slice(chunkOffset, length).asReadOnlyBuffer();
+    }
+    return copyOfRange(offset, length);
+  }
+
+  /** Copies part of the content into a read-only heap buffer. */
+  ByteBuffer copyOfRange(int offset, int length) {
+    byte[] copy = new byte[length];
+    read(offset, copy, 0, length);
+    return ByteBuffer.wrap(copy).asReadOnlyBuffer();
+  }
+
+  @Override
+  public void read(int offset, byte[] target, int targetOffset, int length) {
+    while (length > 0) {
+      ByteBuffer chunk = chunks.get(offset / chunkBytes);
+      int chunkOffset = offset % chunkBytes;
+      int count = Math.min(length, chunk.limit() - chunkOffset);
+      chunk.get(chunkOffset, target, targetOffset, count);
+      offset += count;
+      targetOffset += count;
+      length -= count;
+    }
+  }
+
+  @Override
+  public void read(int offset, ByteBuffer target, int length) {
+    while (length > 0) {
+      ByteBuffer chunk = chunks.get(offset / chunkBytes);
+      int chunkOffset = offset % chunkBytes;
+      int count = Math.min(length, chunk.limit() - chunkOffset);
+      target.put(target.position(), chunk, chunkOffset, count);
+      target.position(target.position() + count);
+      offset += count;
+      length -= count;
+    }
+  }
+
+  @Override
+  public InputStream stream() {
+    if (!retain()) {
+      throw new RuntimeException("Content was freed before it could be read");
+    }
+    return new InputStream() {
+      private int position;
+      private boolean closed;
+
+      @Override
+      public int read() throws IOException {
+        ensureOpen();
+        if (position >= size) {
+          return -1;
+        }
+        byte[] one = new byte[1];
+        ChunkedContent.this.read(position++, one, 0, 1);
+        return one[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] target, int offset, int length) throws IOException {
+        ensureOpen();
+        if (length == 0) {
+          return 0;
+        }
+        if (position >= size) {
+          return -1;
+        }
+        int count = Math.min(length, size - position);
+        ChunkedContent.this.read(position, target, offset, count);
+        position += count;
+        return count;
+      }
+
+      @Override
+      public int available() throws IOException {
+        ensureOpen();
+        return size - position;
+      }
+
+      @Override
+      public void close() {
+        if (!closed) {
+          closed = true;
+          release();
+        }
+      }
+
+      // Once released, the chunks may already hold other content
+      private void ensureOpen() throws IOException {
+        if (closed) {
+          throw new IOException("Stream closed");
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,58 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/** Where {@link InMemoryStorageAdapter} keeps file content. */
+interface ContentStore {
+
+  /** Stores a copy of the remaining bytes of the buffers, in order, without moving them. */
+  Content copyOf(ByteBuffer... data);
+
+  /**
+   * Stores the rest of a stream, reading it through a bounded buffer rather than all at once.
+   *
+   * @param digest updated with every byte stored
+   */
+  Content copyOf(InputStream data, MessageDigest digest) throws IOException;
+
+  /**
+   * Content of a stored file, never modified once stored. Content is reference counted and starts
+   * with one reference; stores that free memory do so when the last reference is released.
+   */
+  interface Content {
+
+    /** Gets the content size in bytes. */
+    int size();
+
+    /**
+     * Gets the whole content as a read-only buffer, a view where the store allows. Stores that
+     * reuse freed memory return a copy, which stays valid after the content is freed.
+     */
+    ByteBuffer buffer();
+
+    /** Gets part of the content as a read-only buffer, a view where {@link #buffer} is one. */
+    ByteBuffer range(int offset, int length);
+
+    /** Copies part of the content into an array. */
+    void read(int offset, byte[] target, int targetOffset, int length);
+
+    /** Copies part of the content into a buffer at its position, advancing it. */
+    void read(int offset, ByteBuffer target, int length);
+
+    /**
+     * Opens a stream over the content, which holds a reference to it until the stream is closed.
+     *
+     * @throws RuntimeException if the content has already been freed
+     */
+    InputStream stream();
+
+    /** Adds a reference; returns false if the content has already been freed. */
+    boolean retain();
+
+    /** Drops a reference, freeing the content if it was the last. */
+    void release();
+  }
+}
@@ -0,0 +1,85 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps content in on-heap arrays. Arrays are shared freely, since content is never modified, and
+ * left to the garbage collector, so reference counting is not needed.
+ *
+ * <p>Content of a known size is kept in one array. Streamed content is kept in arrays of {@value
+ * #STREAM_CHUNK_BYTES} bytes as it arrives, so a large stream is never held twice or copied into a
+ * growing buffer.
+ */
+final class HeapContentStore implements ContentStore {
+
+  /** Chunk size for streamed content. */
+  static final int STREAM_CHUNK_BYTES = 1024 * 1024;
+
+  @Override
+  public Content copyOf(ByteBuffer... data) {
+    long total = 0;
+    for (ByteBuffer part : data) {
+      total += part.remaining();
+    }
+    if (total > Integer.MAX_VALUE - 8) {
+      throw new RuntimeException("File too large for in-memory storage: " + total + " bytes");
+    }
+
+    byte[] content = new byte[(int) total];
+    int position = 0;
+    for (ByteBuffer part : data) {
+      int length = part.remaining();
+      part.duplicate().get(content, position, length);
+      position += length;
+    }
+    // One chunk, whatever its size
+    return new HeapContent(List.of(ByteBuffer.wrap(content)), Integer.MAX_VALUE, content.length);
+  }
+
+  @Override
+  public Content copyOf(InputStream data, MessageDigest digest) throws IOException {
+    List<ByteBuffer> chunks = new ArrayList<>();
+    long total = 0;
+    // The first chunk is sized to what arrives, so small streams don't take a whole chunk; later
+    // chunks are read in place, and only a short last one is trimmed
+    byte[] chunk = data.readNBytes(STREAM_CHUNK_BYTES);
+    while (true) {
+      total += chunk.length;
+      if (total > Integer.MAX_VALUE - 8) {
+        throw new RuntimeException("File too large for in-memory storage");
+      }
+      digest.update(chunk);
+      chunks.add(ByteBuffer.wrap(chunk));
+      if (chunk.length < STREAM_CHUNK_BYTES) {
+        break;
+      }
+      chunk = new byte[STREAM_CHUNK_BYTES];
+      int read = data.readNBytes(chunk, 0, STREAM_CHUNK_BYTES);
+      if (read < STREAM_CHUNK_BYTES) {
+        chunk = Arrays.copyOf(chunk, read);
+      }
+    }
+    return new HeapContent(chunks, STREAM_CHUNK_BYTES, (int) total);
+  }
+
+  private static final class HeapContent extends ChunkedContent {
+
+    HeapContent(List<ByteBuffer> chunks, int chunkBytes, int size) {
+      super(chunks, chunkBytes, size);
+    }
+
+    @Override
+    public boolean retain() {
+      return true;
+    }
+
+    @Override
+    public void release() {}
+  }
+}
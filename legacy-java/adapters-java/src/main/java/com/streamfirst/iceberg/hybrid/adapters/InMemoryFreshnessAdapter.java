@@ -0,0 +1,183 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import com.streamfirst.iceberg.hybrid.domain.*;
+import com.streamfirst.iceberg.hybrid.ports.FreshnessPort;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory implementation of FreshnessPort. Keeps a numbered timeline of recent commits per
+ * table, so lag in commits is a subtraction and lag in time a single lookup, and a lag histogram
+ * per table and region. State is lost when the application stops.
+ */
+@Slf4j
+public class InMemoryFreshnessAdapter implements FreshnessPort {
+
+  /** Commits remembered per table; lag in time is underestimated for replicas further behind. */
+  private static final int MAX_TRACKED_COMMITS = 10_000;
+
+  private final Map<TableId, TableTimeline> timelines = new ConcurrentHashMap<>();
+
+  @Override
+  public void recordCommit(
+      TableId tableId, CommitId commitId, Instant committedAt, Collection<Region> replicaRegions) {
+    timeline(tableId).recordCommit(commitId, committedAt, replicaRegions);
+  }
+
+  @Override
+  public void recordReplicated(
+      TableId tableId,
+      Region region,
+      CommitId commitId,
+      Instant publishedAt,
+      Instant replicatedAt) {
+    log.debug("Commit {} of table {} replicated to region {}", commitId, tableId, region);
+    timeline(tableId).recordReplicated(region, commitId, publishedAt, replicatedAt);
+  }
+
+  @Override
+  public Optional<ReplicationFreshness> getFreshness(TableId tableId, Region region) {
+    TableTimeline timeline = timelines.get(tableId);
+    return timeline == null
+        ? Optional.empty()
+        : Optional.ofNullable(timeline.freshness(tableId, region, Instant.now()));
+  }
+
+  @Override
+  public List<ReplicationFreshness> getFreshness(TableId tableId) {
+    TableTimeline timeline = timelines.get(tableId);
+    return timeline == null ? List.of() : timeline.allFreshness(tableId, Instant.now());
+  }
+
+  @Override
+  public List<ReplicationFreshness> getAllFreshness() {
+    Instant now = Instant.now();
+    List<ReplicationFreshness> all = new ArrayList<>();
+    timelines.forEach((tableId, timeline) -> all.addAll(timeline.allFreshness(tableId, now)));
+    return all;
+  }
+
+  @Override
+  public Optional<LagHistogram> getLagHistogram(TableId tableId, Region region) {
+    TableTimeline timeline = timelines.get(tableId);
+    return timeline == null ? Optional.empty() : Optional.ofNullable(timeline.histogram(region));
+  }
+
+  /** Clears all tracked commits and replicas. Useful for testing. */
+  public void clear() {
+    log.info("Clearing all freshness data");
+    timelines.clear();
+  }
+
+  private TableTimeline timeline(TableId tableId) {
+    return timelines.computeIfAbsent(tableId, id -> new TableTimeline());
+  }
+
+  private record Commit(CommitId commitId, Instant committedAt) {}
+
+  /** Commits of one table numbered in order, and how far each region has got. */
+  private static final class TableTimeline {
+    private final NavigableMap<Long, Commit> commits = new TreeMap<>();
+    private final Map<CommitId, Long> sequences = new HashMap<>();
+    private final Map<Region, Replica> replicas = new HashMap<>();
+    private long latestSequence;
+
+    synchronized void recordCommit(
+        CommitId commitId, Instant committedAt, Collection<Region> replicaRegions) {
+      Long known = sequences.get(commitId);
+      long sequence = known != null ? known : ++latestSequence;
+      if (known == null) {
+        sequences.put(commitId, sequence);
+        commits.put(sequence, new Commit(commitId, committedAt));
+        if (commits.size() > MAX_TRACKED_COMMITS) {
+          sequences.remove(commits.pollFirstEntry().getValue().commitId());
+        }
+      }
+      // A new region has everything from this commit on still to receive
+      for (Region region : replicaRegions) {
+        replicas.computeIfAbsent(region, r -> new Replica(sequence - 1));
+      }
+    }
+
+    synchronized void recordReplicated(
+        Region region, CommitId commitId, Instant publishedAt, Instant replicatedAt) {
+      Replica replica = replicas.computeIfAbsent(region, r -> new Replica(0));
+      replica.lags.record(Duration.between(publishedAt, replicatedAt));
+      // A commit made before tracking started, or long forgotten, cannot be placed in the timeline
+      Long sequence = sequences.get(commitId);
+      if (sequence != null && sequence > replica.sequence) {
+        replica.sequence = sequence;
+        replica.commitId = commitId;
+        replica.replicatedAt = replicatedAt;
+      }
+    }
+
+    synchronized ReplicationFreshness freshness(TableId tableId, Region region, Instant now) {
+      Replica replica = replicas.get(region);
+      if (replica == null) {
+        return null;
+      }
+
+      long behind = latestSequence - replica.sequence;
+      Duration lag = Duration.ZERO;
+      if (behind > 0) {
+        // The oldest missing commit, or the oldest remembered one if it has been forgotten
+        Map.Entry<Long, Commit> oldestMissing = commits.higherEntry(replica.sequence);
+        Instant since = oldestMissing.getValue().committedAt();
+        lag = since.isBefore(now) ? Duration.between(since, now) : Duration.ZERO;
+      }
+      return new ReplicationFreshness(
+          tableId, region, replica.commitId, replica.replicatedAt, behind, lag, now);
+    }
+
+    synchronized List<ReplicationFreshness> allFreshness(TableId tableId, Instant now) {
+      return replicas.keySet().stream().map(region -> freshness(tableId, region, now)).toList();
+    }
+
+    synchronized LagHistogram histogram(Region region) {
+      Replica replica = replicas.get(region);
+      return replica == null ? null : replica.lags.snapshot();
+    }
+  }
+
+  /** A region's replica; the commit and its time are null until a first replication completes. */
+  private static final class Replica {
+    private final LagRecorder lags = new LagRecorder();
+    private long sequence;
+    private CommitId commitId;
+    private Instant replicatedAt;
+
+    Replica(long sequence) {
+      this.sequence = sequence;
+    }
+  }
+
+  /** Mutable counterpart of {@link LagHistogram}; guarded by the owning timeline. */
+  private static final class LagRecorder {
+    private static final long[] BOUND_NANOS =
+        LagHistogram.DEFAULT_BOUNDS.stream().mapToLong(Duration::toNanos).toArray();
+
+    private final long[] counts = new long[BOUND_NANOS.length + 1];
+    private long totalNanos;
+    private long maxNanos;
+
+    void record(Duration lag) {
+      long nanos = Math.max(0, lag.toNanos());
+      int bucket = Arrays.binarySearch(BOUND_NANOS, nanos);
+      counts[bucket >= 0 ? bucket : -bucket - 1]++;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    LagHistogram snapshot() {
+      return new LagHistogram(
+          LagHistogram.DEFAULT_BOUNDS,
+          Arrays.stream(counts).boxed().toList(),
+          Duration.ofNanos(totalNanos),
+          Duration.ofNanos(maxNanos));
+    }
+  }
+}
@@ -1,14 +1,29 @@
 package com.streamfirst.iceberg.hybrid.adapters;
 
+import com.streamfirst.iceberg.hybrid.adapters.ContentStore.Content;
+import com.streamfirst.iceberg.hybrid.domain.BulkDeleteResult;
+import com.streamfirst.iceberg.hybrid.domain.FileListing;
+import com.streamfirst.iceberg.hybrid.domain.FileStat;
 import com.streamfirst.iceberg.hybrid.domain.Region;
 import com.streamfirst.iceberg.hybrid.domain.StorageLocation;
 import com.streamfirst.iceberg.hybrid.domain.StoragePath;
+import com.streamfirst.iceberg.hybrid.domain.StoredObject;
 import com.streamfirst.iceberg.hybrid.ports.StoragePort;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import lombok.extern.slf4j.Slf4j;
 
@@ -16,32 +31,63 @@ import lombok.extern.slf4j.Slf4j;
  * In-memory implementation of StoragePort for testing and development. Simulates file storage using
  * in-memory byte arrays and maps. Data is lost when the application stops - not suitable for
  * production use.
+ *
+ * <p>Stored content is never modified, so it is shared rather than copied wherever the caller
+ * cannot change it: buffer and stream reads are views of the stored content, and copies between
+ * locations share it. Only the {@code byte[]} methods copy, since the caller owns those arrays,
+ * and buffer reads from stores that reuse freed memory.
+ *
+ * <p>Content is kept on the heap unless a subclass supplies another {@link ContentStore}; see
+ * {@link OffHeapStorageAdapter}.
  */
 @Slf4j
 public class InMemoryStorageAdapter implements StoragePort {
 
-  // Map from storage location URI to file path to file content
-  private final Map<String, Map<String, byte[]>> storageContents = new ConcurrentHashMap<>();
+  private final ContentStore contentStore;
+
+  // Map from storage location URI to file path to file content, with paths in order for listing
+  private final Map<String, ConcurrentNavigableMap<String, StoredFile>> storageContents =
+      new ConcurrentHashMap<>();
+
+  // File count and bytes stored per storage location URI, kept up to date on write and delete
+  private final Map<String, LocationUsage> usage = new ConcurrentHashMap<>();
 
   // Map from region to its primary storage location
   private final Map<Region, StorageLocation> regionStorageMap = new ConcurrentHashMap<>();
 
+  // Unfinished multipart uploads by upload ID
+  private final Map<String, MultipartUpload> multipartUploads = new ConcurrentHashMap<>();
+  private final AtomicLong uploadCounter = new AtomicLong();
+
+  public InMemoryStorageAdapter() {
+    this(new HeapContentStore());
+  }
+
+  InMemoryStorageAdapter(ContentStore contentStore) {
+    this.contentStore = contentStore;
+  }
+
   @Override
   public void writeFile(StorageLocation location, StoragePath path, byte[] data) {
-    log.debug("Writing file {} to storage {} ({} bytes)", path, location.uri(), data.length);
-
-    storageContents
-        .computeIfAbsent(location.uri(), k -> new ConcurrentHashMap<>())
-        .put(path.toString(), Arrays.copyOf(data, data.length));
+    // The caller keeps the array, so store a copy of it
+    store(location, path, contentStore.copyOf(ByteBuffer.wrap(data)));
 
     log.debug("Successfully wrote file {} to storage {}", path, location.uri());
   }
 
+  @Override
+  public void writeBuffer(StorageLocation location, StoragePath path, ByteBuffer data) {
+    store(location, path, contentStore.copyOf(data));
+  }
+
   @Override
   public void writeFile(StorageLocation location, StoragePath path, InputStream data) {
     try {
-      byte[] bytes = data.readAllBytes();
-      writeFile(location, path, bytes);
+      // Stored as it is read, in bounded chunks, with the etag computed on the way
+      MessageDigest digest = StoredObject.newEtagDigest();
+      Content content = contentStore.copyOf(data, digest);
+      log.debug("Writing file {} to storage {} ({} bytes)", path, location.uri(), content.size());
+      replace(location, path, new StoredFile(content, StoredObject.etagOf(digest)));
     } catch (IOException e) {
       log.error("Failed to write file {} to storage {}", path, location.uri(), e);
       throw new RuntimeException("Failed to write file: " + path, e);
@@ -52,33 +98,172 @@ public class InMemoryStorageAdapter implements StoragePort {
   public byte[] readFile(StorageLocation location, StoragePath path) {
     log.debug("Reading file {} from storage {}", path, location.uri());
 
-    Map<String, byte[]> storage = storageContents.get(location.uri());
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
     if (storage == null) {
       throw new RuntimeException("Storage location not found: " + location.uri());
     }
 
-    byte[] content = storage.get(path.toString());
-    if (content == null) {
+    StoredFile file = storage.get(path.toString());
+    if (file == null) {
       throw new RuntimeException("File not found: " + path + " in storage " + location.uri());
     }
+    byte[] content = file.read(stored -> copyRange(stored, 0, stored.size()));
 
     log.debug(
         "Successfully read file {} from storage {} ({} bytes)",
         path,
         location.uri(),
         content.length);
-    return Arrays.copyOf(content, content.length);
+    return content;
   }
 
   @Override
   public InputStream readFileStream(StorageLocation location, StoragePath path) {
-    byte[] content = readFile(location, path);
-    return new ByteArrayInputStream(content);
+    return storedFile(location, path).content().stream();
+  }
+
+  @Override
+  public ByteBuffer readBuffer(StorageLocation location, StoragePath path) {
+    return storedFile(location, path).read(Content::buffer);
+  }
+
+  @Override
+  public ByteBuffer readRangeBuffer(
+      StorageLocation location, StoragePath path, long offset, int length) {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("Offset and length cannot be negative");
+    }
+    return storedFile(location, path)
+        .read(
+            content -> {
+              int from = (int) Math.min(offset, content.size());
+              int to = (int) Math.min((long) from + length, content.size());
+              return content.range(from, to - from);
+            });
+  }
+
+  @Override
+  public byte[] readRange(StorageLocation location, StoragePath path, long offset, int length) {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("Offset and length cannot be negative");
+    }
+    return storedFile(location, path)
+        .read(
+            content -> {
+              int from = (int) Math.min(offset, content.size());
+              int to = (int) Math.min((long) from + length, content.size());
+              return copyRange(content, from, to - from);
+            });
+  }
+
+  private static byte[] copyRange(Content content, int offset, int length) {
+    byte[] copy = new byte[length];
+    content.read(offset, copy, 0, length);
+    return copy;
+  }
+
+  /**
+   * Opens a channel over the file's content as it is now. The content is kept from being freed
+   * until the channel is closed, even if the file is replaced or deleted meanwhile.
+   */
+  @Override
+  public SeekableByteChannel openChannel(StorageLocation location, StoragePath path) {
+    StoredFile pinned = storedFile(location, path).copy();
+    if (pinned == null) {
+      throw new RuntimeException("File was deleted while being opened: " + path);
+    }
+    return new ContentChannel(pinned);
+  }
+
+  @Override
+  public String createMultipartUpload(StorageLocation location, StoragePath path, String tag) {
+    long sequence = uploadCounter.incrementAndGet();
+    String uploadId = "upload-" + sequence;
+    multipartUploads.put(
+        uploadId, new MultipartUpload(sequence, location.uri(), path.toString(), tag));
+    log.debug("Started multipart upload {} for {} in storage {}", uploadId, path, location.uri());
+    return uploadId;
+  }
+
+  @Override
+  public void uploadPart(
+      StorageLocation location, StoragePath path, String uploadId, int partNumber, byte[] data) {
+    if (partNumber < 1) {
+      throw new IllegalArgumentException("Part numbers start at 1");
+    }
+    upload(location, path, uploadId).parts().put(partNumber, Arrays.copyOf(data, data.length));
+    log.debug("Uploaded part {} of {} ({} bytes)", partNumber, uploadId, data.length);
+  }
+
+  @Override
+  public List<String> listMultipartUploads(StorageLocation location, StoragePath path) {
+    return multipartUploads.entrySet().stream()
+        .filter(entry -> entry.getValue().isFor(location.uri(), path.toString()))
+        .sorted(Comparator.comparingLong(entry -> entry.getValue().sequence()))
+        .map(Map.Entry::getKey)
+        .toList();
+  }
+
+  @Override
+  public Optional<String> getMultipartUploadTag(
+      StorageLocation location, StoragePath path, String uploadId) {
+    return Optional.ofNullable(upload(location, path, uploadId).tag());
+  }
+
+  @Override
+  public Map<Integer, Long> listUploadedParts(
+      StorageLocation location, StoragePath path, String uploadId) {
+    Map<Integer, Long> sizes = new TreeMap<>();
+    upload(location, path, uploadId)
+        .parts()
+        .forEach((part, data) -> sizes.put(part, (long) data.length));
+    return sizes;
+  }
+
+  @Override
+  public void completeMultipartUpload(
+      StorageLocation location, StoragePath path, String uploadId, int partCount) {
+    MultipartUpload upload = upload(location, path, uploadId);
+    ByteBuffer[] parts = new ByteBuffer[partCount];
+    long size = 0;
+    for (int part = 1; part <= partCount; part++) {
+      byte[] data = upload.parts().get(part);
+      if (data == null) {
+        throw new RuntimeException("Part " + part + " of upload " + uploadId + " is missing");
+      }
+      parts[part - 1] = ByteBuffer.wrap(data);
+      size += data.length;
+    }
+    store(location, path, contentStore.copyOf(parts));
+    multipartUploads.remove(uploadId);
+    log.debug(
+        "Completed multipart upload {} of {} ({} parts, {} bytes)",
+        uploadId,
+        path,
+        partCount,
+        size);
+  }
+
+  @Override
+  public void abortMultipartUpload(StorageLocation location, StoragePath path, String uploadId) {
+    MultipartUpload upload = multipartUploads.get(uploadId);
+    if (upload != null && upload.isFor(location.uri(), path.toString())) {
+      multipartUploads.remove(uploadId);
+      log.debug("Aborted multipart upload {} of {}", uploadId, path);
+    }
+  }
+
+  private MultipartUpload upload(StorageLocation location, StoragePath path, String uploadId) {
+    MultipartUpload upload = multipartUploads.get(uploadId);
+    if (upload == null || !upload.isFor(location.uri(), path.toString())) {
+      throw new RuntimeException("Multipart upload not found: " + uploadId + " for " + path);
+    }
+    return upload;
   }
 
   @Override
   public boolean fileExists(StorageLocation location, StoragePath path) {
-    Map<String, byte[]> storage = storageContents.get(location.uri());
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
     boolean exists = storage != null && storage.containsKey(path.toString());
 
     log.debug("File {} exists in storage {}: {}", path, location.uri(), exists);
@@ -89,15 +274,17 @@ public class InMemoryStorageAdapter implements StoragePort {
   public void deleteFile(StorageLocation location, StoragePath path) {
     log.debug("Deleting file {} from storage {}", path, location.uri());
 
-    Map<String, byte[]> storage = storageContents.get(location.uri());
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
     if (storage == null) {
       throw new RuntimeException("Storage location not found: " + location.uri());
     }
 
-    byte[] removed = storage.remove(path.toString());
+    StoredFile removed = storage.remove(path.toString());
     if (removed == null) {
       throw new RuntimeException("File not found: " + path + " in storage " + location.uri());
     }
+    account(location.uri(), -1, -removed.content().size());
+    removed.release();
 
     log.debug("Successfully deleted file {} from storage {}", path, location.uri());
   }
@@ -111,11 +298,12 @@ public class InMemoryStorageAdapter implements StoragePort {
     log.debug(
         "Copying file from {}:{} to {}:{}", source.uri(), sourcePath, target.uri(), targetPath);
 
-    // Read from source
-    byte[] content = readFile(source, sourcePath);
-
-    // Write to target
-    writeFile(target, targetPath, content);
+    // Content is immutable once stored, so the target shares it along with its etag
+    StoredFile copy = storedFile(source, sourcePath).copy();
+    if (copy == null) {
+      throw new RuntimeException("File not found: " + sourcePath + " in storage " + source.uri());
+    }
+    replace(target, targetPath, copy);
 
     log.debug(
         "Successfully copied file from {}:{} to {}:{}",
@@ -129,43 +317,170 @@ public class InMemoryStorageAdapter implements StoragePort {
   public List<StoragePath> listFiles(StorageLocation location, Predicate<StoragePath> predicate) {
     log.debug("Listing files matching predicate in storage {}", location.uri());
 
-    Map<String, byte[]> storage = storageContents.get(location.uri());
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
     if (storage == null) {
       log.debug("Storage location not found: {}", location.uri());
       return List.of();
     }
 
+    // Keys are already in path order
     List<StoragePath> matchingFiles =
-        storage.keySet().stream()
-            .map(StoragePath::of)
-            .filter(predicate)
-            .sorted((a, b) -> a.toString().compareTo(b.toString()))
-            .toList();
+        storage.keySet().stream().map(StoragePath::of).filter(predicate).toList();
 
     log.debug(
         "Found {} files matching predicate in storage {}", matchingFiles.size(), location.uri());
     return matchingFiles;
   }
 
+  @Override
+  public List<StoragePath> listFiles(StorageLocation location, String prefix) {
+    return listFiles(location, prefix, null, Integer.MAX_VALUE).paths();
+  }
+
+  @Override
+  public FileListing listFiles(
+      StorageLocation location, String prefix, String startAfter, int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Listing limit must be at least 1");
+    }
+    ConcurrentNavigableMap<String, StoredFile> storage = storageContents.get(location.uri());
+    if (storage == null) {
+      return new FileListing(List.of(), null);
+    }
+
+    // Paths with the prefix are contiguous in key order, from the prefix itself, so the page is
+    // found by seeking rather than scanning
+    boolean resume = startAfter != null && startAfter.compareTo(prefix) >= 0;
+    List<StoragePath> page = new ArrayList<>();
+    for (String key : storage.navigableKeySet().tailSet(resume ? startAfter : prefix, !resume)) {
+      if (!key.startsWith(prefix)) {
+        break;
+      }
+      if (page.size() == limit) {
+        return new FileListing(page, page.get(limit - 1).toString());
+      }
+      page.add(StoragePath.of(key));
+    }
+    return new FileListing(page, null);
+  }
+
   @Override
   public long getFileSize(StorageLocation location, StoragePath path) {
     log.debug("Getting size of file {} in storage {}", path, location.uri());
 
-    Map<String, byte[]> storage = storageContents.get(location.uri());
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
     if (storage == null) {
       throw new RuntimeException("Storage location not found: " + location.uri());
     }
 
-    byte[] content = storage.get(path.toString());
-    if (content == null) {
+    StoredFile file = storage.get(path.toString());
+    if (file == null) {
       throw new RuntimeException("File not found: " + path + " in storage " + location.uri());
     }
 
-    long size = content.length;
+    long size = file.content().size();
     log.debug("File {} in storage {} has size {} bytes", path, location.uri(), size);
     return size;
   }
 
+  @Override
+  public Optional<StoredObject> getObjectInfo(StorageLocation location, StoragePath path) {
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
+    StoredFile file = storage == null ? null : storage.get(path.toString());
+    if (file == null) {
+      return Optional.empty();
+    }
+    return Optional.of(new StoredObject(path, file.content().size(), file.etag()));
+  }
+
+  @Override
+  public Set<StoragePath> existsAll(StorageLocation location, Collection<StoragePath> paths) {
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
+    Set<StoragePath> existing = new HashSet<>();
+    if (storage != null) {
+      for (StoragePath path : paths) {
+        if (storage.containsKey(path.toString())) {
+          existing.add(path);
+        }
+      }
+    }
+    return existing;
+  }
+
+  @Override
+  public Map<StoragePath, FileStat> statAll(
+      StorageLocation location, Collection<StoragePath> paths) {
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
+    Map<StoragePath, FileStat> stats = new HashMap<>();
+    if (storage != null) {
+      for (StoragePath path : paths) {
+        StoredFile file = storage.get(path.toString());
+        if (file != null) {
+          stats.put(
+              path, new FileStat(path, file.content().size(), file.etag(), file.modified()));
+        }
+      }
+    }
+    return stats;
+  }
+
+  @Override
+  public BulkDeleteResult deleteAll(StorageLocation location, Collection<StoragePath> paths) {
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
+    List<StoragePath> deleted = new ArrayList<>();
+    List<StoragePath> notFound = new ArrayList<>();
+    for (StoragePath path : paths) {
+      StoredFile removed = storage == null ? null : storage.remove(path.toString());
+      if (removed == null) {
+        notFound.add(path);
+      } else {
+        account(location.uri(), -1, -removed.content().size());
+        removed.release();
+        deleted.add(path);
+      }
+    }
+    log.debug(
+        "Deleted {} files from storage {}, {} not found",
+        deleted.size(),
+        location.uri(),
+        notFound.size());
+    return new BulkDeleteResult(deleted, notFound, Map.of());
+  }
+
+  private void store(StorageLocation location, StoragePath path, Content content) {
+    log.debug("Writing file {} to storage {} ({} bytes)", path, location.uri(), content.size());
+    replace(location, path, new StoredFile(content, null));
+  }
+
+  /** Puts a file at a path, releasing the content it replaces. */
+  private void replace(StorageLocation location, StoragePath path, StoredFile file) {
+    StoredFile replaced =
+        storageContents
+            .computeIfAbsent(location.uri(), k -> new ConcurrentSkipListMap<>())
+            .put(path.toString(), file);
+    if (replaced == null) {
+      account(location.uri(), 1, file.content().size());
+    } else {
+      account(location.uri(), 0, file.content().size() - replaced.content().size());
+      replaced.release();
+    }
+  }
+
+  private void account(String storageUri, int files, long bytes) {
+    LocationUsage locationUsage = usage.computeIfAbsent(storageUri, k -> new LocationUsage());
+    locationUsage.files().add(files);
+    locationUsage.bytes().add(bytes);
+  }
+
+  private StoredFile storedFile(StorageLocation location, StoragePath path) {
+    Map<String, StoredFile> storage = storageContents.get(location.uri());
+    StoredFile file = storage == null ? null : storage.get(path.toString());
+    if (file == null) {
+      throw new RuntimeException("File not found: " + path + " in storage " + location.uri());
+    }
+    return file;
+  }
+
   @Override
   public StorageLocation getStorageLocation(Region region) {
     StorageLocation location = regionStorageMap.get(region);
@@ -184,38 +499,284 @@ public class InMemoryStorageAdapter implements StoragePort {
     regionStorageMap.put(region, location);
 
     // Initialize storage if it doesn't exist
-    storageContents.computeIfAbsent(location.uri(), k -> new ConcurrentHashMap<>());
+    storageContents.computeIfAbsent(location.uri(), k -> new ConcurrentSkipListMap<>());
   }
 
   /** Clears all storage data. Useful for testing. */
   public void clear() {
     log.info("Clearing all storage data");
+    storageContents.values().forEach(storage -> storage.values().forEach(StoredFile::release));
     storageContents.clear();
+    usage.clear();
     regionStorageMap.clear();
+    multipartUploads.clear();
   }
 
   /** Gets the total number of files across all storage locations. */
   public int getTotalFileCount() {
-    return storageContents.values().stream().mapToInt(Map::size).sum();
+    return (int)
+        usage.values().stream().mapToLong(locationUsage -> locationUsage.files().sum()).sum();
   }
 
   /** Gets the total size of all files across all storage locations. */
   public long getTotalStorageSize() {
-    return storageContents.values().stream()
-        .flatMap(storage -> storage.values().stream())
-        .mapToLong(content -> content.length)
-        .sum();
+    return usage.values().stream().mapToLong(locationUsage -> locationUsage.bytes().sum()).sum();
+  }
+
+  /** Gets the number of files in a storage location. */
+  public long getFileCount(String storageUri) {
+    LocationUsage locationUsage = usage.get(storageUri);
+    return locationUsage == null ? 0 : locationUsage.files().sum();
   }
 
-  /** Gets all files in a storage location for debugging. */
+  /** Gets the total size of the files in a storage location. */
+  public long getStorageSize(String storageUri) {
+    LocationUsage locationUsage = usage.get(storageUri);
+    return locationUsage == null ? 0 : locationUsage.bytes().sum();
+  }
+
+  /**
+   * Gets all files in a storage location for debugging. Copies every path; use {@link
+   * #iterateStorageInfo} for large stores.
+   */
   public Map<String, Integer> getStorageInfo(String storageUri) {
-    Map<String, byte[]> storage = storageContents.get(storageUri);
+    Map<String, StoredFile> storage = storageContents.get(storageUri);
     if (storage == null) {
       return Map.of();
     }
 
     Map<String, Integer> info = new HashMap<>();
-    storage.forEach((path, content) -> info.put(path, content.length));
+    storage.forEach((path, file) -> info.put(path, file.content().size()));
     return info;
   }
+
+  /**
+   * Gets one page of the files in a storage location, in path order.
+   *
+   * @param startAfter list only paths that sort after this one, or null to start at the first
+   * @param limit maximum number of files on the page
+   */
+  public List<FileInfo> getStorageInfo(String storageUri, String startAfter, int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Page limit must be at least 1");
+    }
+    ConcurrentNavigableMap<String, StoredFile> storage = storageContents.get(storageUri);
+    if (storage == null) {
+      return List.of();
+    }
+
+    Map<String, StoredFile> files =
+        startAfter == null ? storage : storage.tailMap(startAfter, false);
+    List<FileInfo> page = new ArrayList<>();
+    for (Map.Entry<String, StoredFile> entry : files.entrySet()) {
+      if (page.size() == limit) {
+        break;
+      }
+      StoredFile file = entry.getValue();
+      page.add(new FileInfo(entry.getKey(), file.content().size(), file.modified()));
+    }
+    return page;
+  }
+
+  /**
+   * Iterates over the files in a storage location in path order, fetching them a page at a time.
+   * Files written or deleted during iteration may or may not be seen.
+   */
+  public Iterator<FileInfo> iterateStorageInfo(String storageUri, int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be at least 1");
+    }
+    return new Iterator<>() {
+      private List<FileInfo> page = List.of();
+      private int index;
+      private boolean lastPage;
+
+      @Override
+      public boolean hasNext() {
+        if (index < page.size()) {
+          return true;
+        }
+        if (lastPage) {
+          return false;
+        }
+        String startAfter = page.isEmpty() ? null : page.get(page.size() - 1).path();
+        page = getStorageInfo(storageUri, startAfter, pageSize);
+        index = 0;
+        lastPage = page.size() < pageSize;
+        return !page.isEmpty();
+      }
+
+      @Override
+      public FileInfo next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return page.get(index++);
+      }
+    };
+  }
+
+  /** Gets the number of multipart uploads that have been started but not completed or aborted. */
+  public int getPendingUploadCount() {
+    return multipartUploads.size();
+  }
+
+  /**
+   * Size and modification time of a stored file.
+   *
+   * @param path the file path within its storage location
+   * @param size file size in bytes
+   * @param lastModified when the file was last written
+   */
+  public record FileInfo(String path, long size, Instant lastModified) {}
+
+  private record LocationUsage(LongAdder files, LongAdder bytes) {
+    LocationUsage() {
+      this(new LongAdder(), new LongAdder());
+    }
+  }
+
+  private record MultipartUpload(
+      long sequence, String storageUri, String path, String tag, Map<Integer, byte[]> parts) {
+    MultipartUpload(long sequence, String storageUri, String path, String tag) {
+      this(sequence, storageUri, path, tag, new ConcurrentSkipListMap<>());
+    }
+
+    boolean isFor(String storageUri, String path) {
+      return this.storageUri.equals(storageUri) && this.path.equals(path);
+    }
+  }
+
+  /** Read-only channel over pinned content, serving reads straight from it. */
+  private static final class ContentChannel implements SeekableByteChannel {
+    private final StoredFile file;
+    private long position;
+    private boolean open = true;
+
+    ContentChannel(StoredFile file) {
+      this.file = file;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer target) throws IOException {
+      ensureOpen();
+      Content content = file.content();
+      if (position >= content.size()) {
+        return -1;
+      }
+      int length = (int) Math.min(target.remaining(), content.size() - position);
+      content.read((int) position, target, length);
+      position += length;
+      return length;
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+      ensureOpen();
+      return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+      ensureOpen();
+      if (newPosition < 0) {
+        throw new IllegalArgumentException("Position cannot be negative");
+      }
+      position = newPosition;
+      return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+      ensureOpen();
+      return file.content().size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public synchronized void close() {
+      if (open) {
+        open = false;
+        file.release();
+      }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+    }
+  }
+
+  /**
+   * Stored content with its etag, computed on first request unless known when stored, and when it
+   * was written. The content is never modified, so copies of a file share it, each holding one
+   * reference.
+   */
+  private static final class StoredFile {
+    private final Content content;
+    private final Instant modified = Instant.now();
+    private volatile String etag;
+
+    StoredFile(Content content, String etag) {
+      this.content = content;
+      this.etag = etag;
+    }
+
+    Content content() {
+      return content;
+    }
+
+    Instant modified() {
+      return modified;
+    }
+
+    /** Makes a copy sharing the content and etag, or returns null if the content has been freed. */
+    StoredFile copy() {
+      return content.retain() ? new StoredFile(content, etag) : null;
+    }
+
+    /** Reads from the content, keeping it from being freed by a concurrent delete meanwhile. */
+    <T> T read(Function<Content, T> reader) {
+      if (!content.retain()) {
+        throw new RuntimeException("File was deleted while being read");
+      }
+      try {
+        return reader.apply(content);
+      } finally {
+        content.release();
+      }
+    }
+
+    void release() {
+      content.release();
+    }
+
+    String etag() {
+      String computed = etag;
+      if (computed == null) {
+        try (InputStream stream = content.stream()) {
+          computed = StoredObject.computeEtag(stream);
+        } catch (IOException e) {
+          throw new RuntimeException("Failed to read content for hashing", e);
+        }
+        etag = computed;
+      }
+      return computed;
+    }
+  }
 }
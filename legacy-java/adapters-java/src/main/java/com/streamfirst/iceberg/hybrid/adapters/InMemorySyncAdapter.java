@@ -2,43 +2,80 @@ package com.streamfirst.iceberg.hybrid.adapters;
 
 import com.streamfirst.iceberg.hybrid.domain.*;
 import com.streamfirst.iceberg.hybrid.ports.SyncPort;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * In-memory implementation of SyncPort for testing and development. Provides simple event queuing
- * and status tracking using in-memory collections. Data is lost when the application stops - not
+ * In-memory implementation of SyncPort for testing and development. Keeps a lock-free FIFO work
+ * queue per target region, plus creation-ordered indexes by region and status, by table and region,
+ * and by creation time, so polling and queries cost O(result) instead of O(all events). Claims are
+ * leases tracked per region in expiry order; expired leases are released lazily on the next claim.
+ * Publishing coalesces the new event with the latest still-pending event for the same table and
+ * region. Finished events stay until purged. Data is lost when the application stops - not
  * suitable for production use.
  */
 @Slf4j
 public class InMemorySyncAdapter implements SyncPort {
 
   private final Map<EventId, SyncEvent> events = new ConcurrentHashMap<>();
-  private final Map<Region, List<EventId>> pendingEventsByRegion = new ConcurrentHashMap<>();
-  private final Map<TableId, List<EventId>> eventsByTable = new ConcurrentHashMap<>();
+
+  // Position of each event in the ordered indexes below, assigned when the event is first stored
+  private final Map<EventId, IndexEntry> indexEntries = new ConcurrentHashMap<>();
+  private final NavigableSet<IndexEntry> eventsByCreation = new ConcurrentSkipListSet<>();
+  private final Map<Region, Map<SyncEvent.Status, NavigableSet<IndexEntry>>> eventsByStatus =
+      new ConcurrentHashMap<>();
+  private final Map<TableRegion, NavigableSet<IndexEntry>> eventsByTable =
+      new ConcurrentHashMap<>();
+
+  // Pending work per target region; contains exactly the events whose status is PENDING
+  private final Map<Region, NavigableSet<IndexEntry>> pendingQueues = new ConcurrentHashMap<>();
+
+  // Active claims by event, plus an expiry-ordered view per region for releasing stale claims
+  private final Map<EventId, Lease> leases = new ConcurrentHashMap<>();
+  private final Map<Region, NavigableSet<Lease>> leaseExpiries = new ConcurrentHashMap<>();
+
   private final AtomicLong eventCounter = new AtomicLong(1);
 
+  // Latest published event per coalescing key; entries may be stale once that event is claimed
+  private final Map<CoalescingKey, EventId> coalescibleEvents = new ConcurrentHashMap<>();
+  private final AtomicLong supersededCount = new AtomicLong();
+
+  private final Map<Region, Map<EventId, DeadLetterEntry>> deadLetters = new ConcurrentHashMap<>();
+
   @Override
   public void publishSyncEvent(SyncEvent event) {
     log.debug("Publishing sync event: {}", event);
 
-    // Store the event
-    events.put(event.getEventId(), event);
-
-    // Add to pending queue for target region
-    pendingEventsByRegion
-        .computeIfAbsent(event.getTargetRegion(), k -> new ArrayList<>())
-        .add(event.getEventId());
-
-    // Add to table history
-    eventsByTable
-        .computeIfAbsent(event.getTableId(), k -> new ArrayList<>())
-        .add(event.getEventId());
+    CoalescingKey key = CoalescingKey.of(event);
+    if (key == null || event.getStatus() != SyncEvent.Status.PENDING) {
+      store(event);
+    } else {
+      // Serializes publishers of the same key so each one sees the event it supersedes
+      coalescibleEvents.compute(
+          key,
+          (k, latestId) -> {
+            SyncEvent pending =
+                latestId == null || latestId.equals(event.getEventId())
+                    ? null
+                    : events.get(latestId);
+            if (pending == null || pending.getStatus() != SyncEvent.Status.PENDING) {
+              store(event);
+            } else {
+              // The successor is stored before the event it replaces is superseded, so persisted
+              // changes never hold the superseded event without the successor taking on its work
+              store(coalesce(pending, event));
+              supersede(latestId, event.getEventId());
+            }
+            return event.getEventId();
+          });
+    }
 
     log.info(
         "Published sync event {} for table {} to region {}",
@@ -49,51 +86,157 @@ public class InMemorySyncAdapter implements SyncPort {
 
   @Override
   public List<SyncEvent> getSyncEvents(Predicate<SyncEvent> predicate) {
-    return events.values().stream()
-        .filter(predicate)
-        .sorted(Comparator.comparing(SyncEvent::getCreatedAt))
-        .toList();
+    // Arbitrary predicates still need a full scan, but the creation index avoids the sort
+    return resolve(eventsByCreation, predicate, Integer.MAX_VALUE);
   }
 
   @Override
   public List<SyncEvent> getPendingEvents(Region targetRegion) {
-    List<EventId> eventIds = pendingEventsByRegion.get(targetRegion);
-    if (eventIds == null) {
+    return getPendingEvents(targetRegion, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public List<SyncEvent> getPendingEvents(Region targetRegion, int maxEvents) {
+    NavigableSet<IndexEntry> queue = pendingQueues.get(targetRegion);
+    if (queue == null) {
       log.debug("No pending events found for region {}", targetRegion);
       return List.of();
     }
 
     List<SyncEvent> pendingEvents =
-        eventIds.stream()
-            .map(events::get)
-            .filter(Objects::nonNull)
-            .filter(event -> event.getStatus() == SyncEvent.Status.PENDING)
-            .sorted(Comparator.comparing(SyncEvent::getCreatedAt))
-            .toList();
-
+        resolve(queue, event -> event.getStatus() == SyncEvent.Status.PENDING, maxEvents);
     log.debug("Found {} pending events for region {}", pendingEvents.size(), targetRegion);
     return pendingEvents;
   }
 
   @Override
-  public void updateEventStatus(EventId eventId, SyncEvent.Status status) {
-    SyncEvent event = events.get(eventId);
-    if (event == null) {
-      throw new IllegalArgumentException("Event not found: " + eventId);
+  public List<SyncEvent> claimPendingEvents(
+      Region targetRegion, String workerId, int maxEvents, Duration visibilityTimeout) {
+    releaseExpiredClaims(targetRegion);
+
+    NavigableSet<IndexEntry> queue = pendingQueues.get(targetRegion);
+    if (queue == null) {
+      return List.of();
     }
 
-    log.debug("Updating event {} status from {} to {}", eventId, event.getStatus(), status);
+    List<SyncEvent> claimed = new ArrayList<>(Math.min(maxEvents, 64));
+    while (claimed.size() < maxEvents) {
+      // pollFirst hands each queue entry to exactly one caller
+      IndexEntry entry = queue.pollFirst();
+      if (entry == null) {
+        break;
+      }
+      SyncEvent event = claim(entry.eventId(), workerId, visibilityTimeout);
+      if (event != null) {
+        claimed.add(event);
+      }
+    }
 
-    SyncEvent updatedEvent = event.withStatus(status, Instant.now());
-    events.put(eventId, updatedEvent);
+    log.debug("Worker {} claimed {} events for region {}", workerId, claimed.size(), targetRegion);
+    return claimed;
+  }
 
-    // Remove from pending queue if completed or failed
-    if (status == SyncEvent.Status.COMPLETED || status == SyncEvent.Status.FAILED) {
-      List<EventId> pendingIds = pendingEventsByRegion.get(event.getTargetRegion());
-      if (pendingIds != null) {
-        pendingIds.remove(eventId);
+  @Override
+  public boolean renewClaim(EventId eventId, String workerId, Duration visibilityTimeout) {
+    boolean[] renewed = new boolean[1];
+    events.computeIfPresent(
+        eventId,
+        (id, event) -> {
+          if (holdsClaim(event, workerId)) {
+            grantLease(event, workerId, Instant.now().plus(visibilityTimeout));
+            renewed[0] = true;
+          }
+          return event;
+        });
+
+    if (!renewed[0]) {
+      log.warn("Worker {} could not renew claim on event {}", workerId, eventId);
+    }
+    return renewed[0];
+  }
+
+  @Override
+  public boolean completeClaim(EventId eventId, String workerId, SyncEvent.Status status) {
+    if (status == SyncEvent.Status.IN_PROGRESS) {
+      throw new IllegalArgumentException("Cannot complete claim with IN_PROGRESS status");
+    }
+
+    boolean[] completed = new boolean[1];
+    events.computeIfPresent(
+        eventId,
+        (id, event) -> {
+          if (!holdsClaim(event, workerId)) {
+            return event;
+          }
+          SyncEvent updated = event.withStatus(status, Instant.now());
+          reindex(event, updated);
+          completed[0] = true;
+          return updated;
+        });
+
+    if (completed[0]) {
+      log.debug("Worker {} completed event {} with status {}", workerId, eventId, status);
+    } else {
+      log.warn(
+          "Worker {} no longer holds claim on event {} - ignoring {}", workerId, eventId, status);
+    }
+    return completed[0];
+  }
+
+  @Override
+  public int releaseExpiredClaims(Region targetRegion) {
+    NavigableSet<Lease> expiries = leaseExpiries.get(targetRegion);
+    if (expiries == null) {
+      return 0;
+    }
+
+    Instant now = Instant.now();
+    int released = 0;
+    for (Lease expired : expiries) {
+      if (!expired.expiresAt().isBefore(now)) {
+        break;
+      }
+      // Removing from the expiry set first makes this thread the only one releasing the lease
+      if (!expiries.remove(expired)) {
+        continue;
+      }
+      boolean[] requeued = new boolean[1];
+      events.computeIfPresent(
+          expired.eventId(),
+          (id, event) -> {
+            if (leases.get(id) != expired) {
+              return event;
+            }
+            SyncEvent updated = event.withStatus(SyncEvent.Status.PENDING, now);
+            reindex(event, updated);
+            requeued[0] = true;
+            return updated;
+          });
+      if (requeued[0]) {
+        released++;
+        log.info(
+            "Claim by worker {} on event {} expired - returned to PENDING",
+            expired.workerId(),
+            expired.eventId());
       }
     }
+    return released;
+  }
+
+  @Override
+  public void updateEventStatus(EventId eventId, SyncEvent.Status status) {
+    SyncEvent updatedEvent =
+        events.computeIfPresent(
+            eventId,
+            (id, event) -> {
+              log.debug("Updating event {} status from {} to {}", id, event.getStatus(), status);
+              SyncEvent updated = event.withStatus(status, Instant.now());
+              reindex(event, updated);
+              return updated;
+            });
+    if (updatedEvent == null) {
+      throw new IllegalArgumentException("Event not found: " + eventId);
+    }
 
     log.debug("Updated event {} status to {}", eventId, status);
   }
@@ -111,7 +254,9 @@ public class InMemorySyncAdapter implements SyncPort {
             metadata.getCommitId(),
             metadata.getSourceRegion(),
             targetRegion,
+            List.of(),
             SyncEvent.Status.PENDING,
+            0,
             now,
             now);
 
@@ -138,7 +283,9 @@ public class InMemorySyncAdapter implements SyncPort {
             metadata.getCommitId(),
             metadata.getSourceRegion(),
             targetRegion,
+            List.copyOf(dataFiles),
             SyncEvent.Status.PENDING,
+            0,
             now,
             now);
 
@@ -154,19 +301,13 @@ public class InMemorySyncAdapter implements SyncPort {
 
   @Override
   public List<SyncEvent> getEventHistory(TableId tableId, Region region) {
-    List<EventId> eventIds = eventsByTable.get(tableId);
-    if (eventIds == null) {
-      log.debug("No events found for table {}", tableId);
+    NavigableSet<IndexEntry> tableEntries = eventsByTable.get(new TableRegion(tableId, region));
+    if (tableEntries == null) {
+      log.debug("No events found for table {} in region {}", tableId, region);
       return List.of();
     }
 
-    List<SyncEvent> tableEvents =
-        eventIds.stream()
-            .map(events::get)
-            .filter(Objects::nonNull)
-            .filter(event -> event.getTargetRegion().equals(region))
-            .sorted(Comparator.comparing(SyncEvent::getCreatedAt))
-            .toList();
+    List<SyncEvent> tableEvents = resolve(tableEntries, event -> true, Integer.MAX_VALUE);
 
     log.debug("Found {} events for table {} in region {}", tableEvents.size(), tableId, region);
     return tableEvents;
@@ -174,17 +315,8 @@ public class InMemorySyncAdapter implements SyncPort {
 
   @Override
   public List<SyncEvent> getFailedEvents(Region region) {
-    List<EventId> eventIds = pendingEventsByRegion.get(region);
-    if (eventIds == null) {
-      log.debug("No events found for region {}", region);
-      return List.of();
-    }
-
     List<SyncEvent> failedEvents =
-        eventIds.stream()
-            .map(events::get)
-            .filter(Objects::nonNull)
-            .filter(event -> event.getStatus() == SyncEvent.Status.FAILED)
+        getEventsByStatus(region, SyncEvent.Status.FAILED, Integer.MAX_VALUE).stream()
             .sorted(Comparator.comparing(SyncEvent::getUpdatedAt).reversed())
             .toList();
 
@@ -192,38 +324,459 @@ public class InMemorySyncAdapter implements SyncPort {
     return failedEvents;
   }
 
+  @Override
+  public List<SyncEvent> getEventsByStatus(
+      Region region, SyncEvent.Status status, int maxEvents) {
+    Map<SyncEvent.Status, NavigableSet<IndexEntry>> regionIndex = eventsByStatus.get(region);
+    NavigableSet<IndexEntry> entries = regionIndex == null ? null : regionIndex.get(status);
+    if (entries == null) {
+      return List.of();
+    }
+    return resolve(entries, event -> event.getStatus() == status, maxEvents);
+  }
+
+  @Override
+  public List<SyncEvent> getEventsCreatedBetween(Instant from, Instant to, int maxEvents) {
+    if (!from.isBefore(to)) {
+      return List.of();
+    }
+    NavigableSet<IndexEntry> range =
+        eventsByCreation.subSet(
+            new IndexEntry(from, Long.MIN_VALUE, null),
+            true,
+            new IndexEntry(to, Long.MIN_VALUE, null),
+            false);
+    return resolve(range, event -> true, maxEvents);
+  }
+
+  @Override
+  public int purgeCompletedEvents(Instant finishedBefore) {
+    int purged = 0;
+    for (Map<SyncEvent.Status, NavigableSet<IndexEntry>> regionIndex : eventsByStatus.values()) {
+      for (SyncEvent.Status status :
+          List.of(SyncEvent.Status.COMPLETED, SyncEvent.Status.SUPERSEDED)) {
+        NavigableSet<IndexEntry> entries = regionIndex.get(status);
+        if (entries == null) {
+          continue;
+        }
+        for (IndexEntry entry : entries) {
+          boolean removed =
+              remove(
+                  entry.eventId(),
+                  event ->
+                      event.getStatus() == status
+                          && event.getUpdatedAt().isBefore(finishedBefore));
+          if (removed) {
+            purged++;
+          }
+        }
+      }
+    }
+
+    log.info("Purged {} finished events last updated before {}", purged, finishedBefore);
+    return purged;
+  }
+
   @Override
   public void retryFailedEvent(EventId eventId) {
-    SyncEvent event = events.get(eventId);
-    if (event == null) {
+    SyncEvent retriedEvent =
+        events.computeIfPresent(
+            eventId,
+            (id, event) -> {
+              if (event.getStatus() != SyncEvent.Status.FAILED) {
+                throw new IllegalArgumentException("Event " + id + " is not in FAILED status");
+              }
+              log.info("Retrying failed event {}", id);
+
+              // Reset status to PENDING; reindexing puts it back on the region queue
+              SyncEvent updated = event.withStatus(SyncEvent.Status.PENDING, Instant.now());
+              reindex(event, updated);
+              return updated;
+            });
+    if (retriedEvent == null) {
       throw new IllegalArgumentException("Event not found: " + eventId);
     }
 
-    if (event.getStatus() != SyncEvent.Status.FAILED) {
-      throw new IllegalArgumentException("Event " + eventId + " is not in FAILED status");
+    log.info("Retried event {} - reset to PENDING status", eventId);
+  }
+
+  @Override
+  public void deadLetterEvent(EventId eventId, String reason) {
+    SyncEvent deadLettered =
+        events.computeIfPresent(
+            eventId,
+            (id, event) -> {
+              if (event.getStatus() != SyncEvent.Status.FAILED) {
+                throw new IllegalArgumentException("Event " + id + " is not in FAILED status");
+              }
+              Instant now = Instant.now();
+              SyncEvent updated = event.withStatus(SyncEvent.Status.DEAD_LETTERED, now);
+              reindex(event, updated);
+              DeadLetterEntry entry = new DeadLetterEntry(updated, reason, now);
+              deadLetters
+                  .computeIfAbsent(event.getTargetRegion(), k -> new ConcurrentHashMap<>())
+                  .put(id, entry);
+              onDeadLettered(entry);
+              return updated;
+            });
+    if (deadLettered == null) {
+      throw new IllegalArgumentException("Event not found: " + eventId);
     }
 
-    log.info("Retrying failed event {}", eventId);
+    log.warn(
+        "Dead-lettered event {} after {} attempts: {}",
+        eventId,
+        deadLettered.getAttempts(),
+        reason);
+  }
 
-    // Reset status to PENDING
-    SyncEvent retriedEvent = event.withStatus(SyncEvent.Status.PENDING, Instant.now());
-    events.put(eventId, retriedEvent);
+  @Override
+  public List<DeadLetterEntry> getDeadLetterEvents(Region region) {
+    Map<EventId, DeadLetterEntry> entries = deadLetters.get(region);
+    if (entries == null) {
+      return List.of();
+    }
+    return entries.values().stream()
+        .sorted(Comparator.comparing(DeadLetterEntry::deadLetteredAt).reversed())
+        .toList();
+  }
 
-    // Add back to pending queue if not already there
-    List<EventId> pendingIds =
-        pendingEventsByRegion.computeIfAbsent(event.getTargetRegion(), k -> new ArrayList<>());
-    if (!pendingIds.contains(eventId)) {
-      pendingIds.add(eventId);
+  @Override
+  public void redriveDeadLetterEvent(EventId eventId) {
+    SyncEvent redriven =
+        events.computeIfPresent(
+            eventId,
+            (id, event) -> {
+              if (event.getStatus() != SyncEvent.Status.DEAD_LETTERED) {
+                throw new IllegalArgumentException("Event " + id + " is not dead-lettered");
+              }
+              SyncEvent updated =
+                  event.withStatus(SyncEvent.Status.PENDING, Instant.now()).withAttempts(0);
+              reindex(event, updated);
+              Map<EventId, DeadLetterEntry> entries = deadLetters.get(event.getTargetRegion());
+              if (entries != null) {
+                entries.remove(id);
+              }
+              return updated;
+            });
+    if (redriven == null) {
+      throw new IllegalArgumentException("Event not found: " + eventId);
     }
 
-    log.info("Retried event {} - reset to PENDING status", eventId);
+    log.info("Redrove dead-lettered event {} - reset to PENDING status", eventId);
+  }
+
+  private void store(SyncEvent event) {
+    events.compute(
+        event.getEventId(),
+        (eventId, previous) -> {
+          if (previous == null) {
+            index(event);
+          }
+          reindex(previous, event);
+          return event;
+        });
+  }
+
+  /**
+   * Removes an event and all its index entries if it matches the condition. Returns true if the
+   * event was removed.
+   */
+  private boolean remove(EventId eventId, Predicate<SyncEvent> condition) {
+    SyncEvent[] removed = new SyncEvent[1];
+    events.computeIfPresent(
+        eventId,
+        (id, event) -> {
+          if (!condition.test(event)) {
+            return event;
+          }
+          unindex(event);
+          onEventRemoved(id);
+          removed[0] = event;
+          return null;
+        });
+    if (removed[0] == null) {
+      return false;
+    }
+
+    // Outside the compute above, since publishers lock coalescing keys before events
+    CoalescingKey key = CoalescingKey.of(removed[0]);
+    if (key != null) {
+      coalescibleEvents.remove(key, eventId);
+    }
+    return true;
+  }
+
+  /** Adds a newly stored event to the creation and table indexes. */
+  private void index(SyncEvent event) {
+    IndexEntry entry =
+        new IndexEntry(event.getCreatedAt(), eventCounter.getAndIncrement(), event.getEventId());
+    indexEntries.put(event.getEventId(), entry);
+    eventsByCreation.add(entry);
+    eventsByTable.compute(
+        new TableRegion(event.getTableId(), event.getTargetRegion()),
+        (key, entries) -> {
+          NavigableSet<IndexEntry> tableEntries =
+              entries == null ? new ConcurrentSkipListSet<>() : entries;
+          tableEntries.add(entry);
+          return tableEntries;
+        });
+  }
+
+  private void unindex(SyncEvent event) {
+    EventId eventId = event.getEventId();
+    if (event.getStatus() == SyncEvent.Status.PENDING) {
+      dequeue(event);
+    }
+    dropLease(eventId);
+    IndexEntry entry = indexEntries.remove(eventId);
+    if (entry != null) {
+      statusIndex(event).remove(entry);
+      eventsByCreation.remove(entry);
+      eventsByTable.computeIfPresent(
+          new TableRegion(event.getTableId(), event.getTargetRegion()),
+          (key, entries) -> {
+            entries.remove(entry);
+            return entries.isEmpty() ? null : entries;
+          });
+    }
+    Map<EventId, DeadLetterEntry> deadLetterEntries = deadLetters.get(event.getTargetRegion());
+    if (deadLetterEntries != null) {
+      deadLetterEntries.remove(eventId);
+    }
+  }
+
+  private NavigableSet<IndexEntry> statusIndex(SyncEvent event) {
+    return eventsByStatus
+        .computeIfAbsent(event.getTargetRegion(), k -> new ConcurrentHashMap<>())
+        .computeIfAbsent(event.getStatus(), k -> new ConcurrentSkipListSet<>());
+  }
+
+  /**
+   * Looks up the events behind index entries, in index order, up to a limit. Entries may briefly
+   * outlive a concurrent status change or removal, so callers pass a condition to skip those.
+   */
+  private List<SyncEvent> resolve(
+      Collection<IndexEntry> entries, Predicate<SyncEvent> condition, int maxEvents) {
+    List<SyncEvent> resolved = new ArrayList<>(Math.min(maxEvents, 64));
+    for (IndexEntry entry : entries) {
+      if (resolved.size() >= maxEvents) {
+        break;
+      }
+      SyncEvent event = events.get(entry.eventId());
+      if (event != null && condition.test(event)) {
+        resolved.add(event);
+      }
+    }
+    return resolved;
+  }
+
+  /**
+   * Marks an event as superseded by a successor that already has its work folded in. An event
+   * claimed since the successor was stored is left alone, and its work is then done twice.
+   */
+  private void supersede(EventId pendingId, EventId successorId) {
+    boolean[] superseded = new boolean[1];
+    events.computeIfPresent(
+        pendingId,
+        (id, pending) -> {
+          if (pending.getStatus() != SyncEvent.Status.PENDING) {
+            return pending;
+          }
+          SyncEvent updated = pending.withStatus(SyncEvent.Status.SUPERSEDED, Instant.now());
+          reindex(pending, updated);
+          superseded[0] = true;
+          return updated;
+        });
+    if (superseded[0]) {
+      supersededCount.incrementAndGet();
+      log.debug("Event {} superseded by {}", pendingId, successorId);
+    }
+  }
+
+  private static SyncEvent coalesce(SyncEvent older, SyncEvent newer) {
+    SyncEvent merged = newer.withCreatedAt(older.getCreatedAt());
+    if (newer.getType() == SyncEvent.Type.DATA_SYNC) {
+      Set<StoragePath> dataFiles = new LinkedHashSet<>(older.getDataFiles());
+      dataFiles.addAll(newer.getDataFiles());
+      merged = merged.withDataFiles(List.copyOf(dataFiles));
+    }
+    return merged;
+  }
+
+  /**
+   * Moves an event between the status index and the pending queues. Must be called from within a
+   * {@code compute} on {@link #events} so that transitions for one event are serialized.
+   */
+  private void reindex(SyncEvent previous, SyncEvent current) {
+    EventId eventId = current.getEventId();
+    IndexEntry entry = indexEntries.get(eventId);
+    if (previous != null) {
+      statusIndex(previous).remove(entry);
+    }
+    statusIndex(current).add(entry);
+
+    boolean wasPending = previous != null && previous.getStatus() == SyncEvent.Status.PENDING;
+    boolean isPending = current.getStatus() == SyncEvent.Status.PENDING;
+    if (wasPending && !isPending) {
+      dequeue(previous);
+    } else if (isPending && !wasPending) {
+      enqueue(current);
+    }
+
+    if (current.getStatus() != SyncEvent.Status.IN_PROGRESS) {
+      dropLease(eventId);
+    }
+    onEventChanged(current);
+  }
+
+  /**
+   * Called with the new state of an event after every creation or status change, while the change
+   * is still serialized against other changes to the same event. Subclasses can override this to
+   * persist changes in the order they happen; it must not call back into this adapter.
+   */
+  protected void onEventChanged(SyncEvent event) {}
+
+  /** Called after an event is moved to the dead-letter store, under the same rules as above. */
+  protected void onDeadLettered(DeadLetterEntry entry) {}
+
+  /** Called after an event is removed by a purge, under the same rules as above. */
+  protected void onEventRemoved(EventId eventId) {}
+
+  /**
+   * Restores a previously persisted event as-is, without coalescing or claiming. Used by subclasses
+   * to rebuild state on startup; the change hooks still fire for restored events. Subclasses call
+   * {@link #rebuildCoalescingIndex} once all events are restored.
+   */
+  protected void restoreEvent(SyncEvent event) {
+    store(event);
+    if (event.getStatus() != SyncEvent.Status.DEAD_LETTERED) {
+      Map<EventId, DeadLetterEntry> entries = deadLetters.get(event.getTargetRegion());
+      if (entries != null) {
+        entries.remove(event.getEventId());
+      }
+    }
+  }
+
+  /**
+   * Points each coalescing key at its newest PENDING event, the one a new event for the key would
+   * supersede. Restored events arrive in no particular order, so the index is rebuilt from the
+   * pending queues afterwards rather than updated as each event is restored.
+   */
+  protected void rebuildCoalescingIndex() {
+    coalescibleEvents.clear();
+    for (NavigableSet<IndexEntry> queue : pendingQueues.values()) {
+      // Queues are in creation order, so the last event seen for a key is its newest
+      for (SyncEvent event :
+          resolve(queue, event -> event.getStatus() == SyncEvent.Status.PENDING, queue.size())) {
+        CoalescingKey key = CoalescingKey.of(event);
+        if (key != null) {
+          coalescibleEvents.put(key, event.getEventId());
+        }
+      }
+    }
+  }
+
+  /** Restores the removal of a previously persisted event. */
+  protected void restoreRemoval(EventId eventId) {
+    remove(eventId, event -> true);
+  }
+
+  /** Restores a previously persisted dead-letter entry. */
+  protected void restoreDeadLetter(DeadLetterEntry entry) {
+    deadLetters
+        .computeIfAbsent(entry.event().getTargetRegion(), k -> new ConcurrentHashMap<>())
+        .put(entry.eventId(), entry);
+  }
+
+  /** Moves a PENDING event to IN_PROGRESS under a new lease; returns null if it was not PENDING. */
+  private SyncEvent claim(EventId eventId, String workerId, Duration visibilityTimeout) {
+    SyncEvent[] claimed = new SyncEvent[1];
+    events.computeIfPresent(
+        eventId,
+        (id, event) -> {
+          if (event.getStatus() != SyncEvent.Status.PENDING) {
+            return event;
+          }
+          Instant now = Instant.now();
+          SyncEvent updated =
+              event
+                  .withStatus(SyncEvent.Status.IN_PROGRESS, now)
+                  .withAttempts(event.getAttempts() + 1);
+          reindex(event, updated);
+          grantLease(updated, workerId, now.plus(visibilityTimeout));
+          claimed[0] = updated;
+          return updated;
+        });
+    return claimed[0];
+  }
+
+  /**
+   * Checks that a worker holds an unexpired claim. An expired lease is not honoured even before a
+   * sweep has returned its event to PENDING.
+   */
+  private boolean holdsClaim(SyncEvent event, String workerId) {
+    Lease lease = leases.get(event.getEventId());
+    return event.getStatus() == SyncEvent.Status.IN_PROGRESS
+        && lease != null
+        && lease.workerId().equals(workerId)
+        && !lease.expiresAt().isBefore(Instant.now());
+  }
+
+  private void grantLease(SyncEvent event, String workerId, Instant expiresAt) {
+    Lease lease =
+        new Lease(
+            event.getEventId(),
+            event.getTargetRegion(),
+            workerId,
+            expiresAt,
+            eventCounter.getAndIncrement());
+    Lease previous = leases.put(event.getEventId(), lease);
+    NavigableSet<Lease> expiries =
+        leaseExpiries.computeIfAbsent(event.getTargetRegion(), k -> new ConcurrentSkipListSet<>());
+    if (previous != null) {
+      expiries.remove(previous);
+    }
+    expiries.add(lease);
+  }
+
+  private void dropLease(EventId eventId) {
+    Lease lease = leases.remove(eventId);
+    if (lease != null) {
+      NavigableSet<Lease> expiries = leaseExpiries.get(lease.region());
+      if (expiries != null) {
+        expiries.remove(lease);
+      }
+    }
+  }
+
+  private void enqueue(SyncEvent event) {
+    pendingQueues
+        .computeIfAbsent(event.getTargetRegion(), k -> new ConcurrentSkipListSet<>())
+        .add(indexEntries.get(event.getEventId()));
+  }
+
+  private void dequeue(SyncEvent event) {
+    IndexEntry entry = indexEntries.get(event.getEventId());
+    NavigableSet<IndexEntry> queue = pendingQueues.get(event.getTargetRegion());
+    if (entry != null && queue != null) {
+      queue.remove(entry);
+    }
   }
 
   /** Clears all sync data. Useful for testing. */
   public void clear() {
     log.info("Clearing all sync data");
     events.clear();
-    pendingEventsByRegion.clear();
+    indexEntries.clear();
+    eventsByCreation.clear();
+    pendingQueues.clear();
+    leases.clear();
+    leaseExpiries.clear();
+    coalescibleEvents.clear();
+    supersededCount.set(0);
+    deadLetters.clear();
+    eventsByStatus.clear();
     eventsByTable.clear();
     eventCounter.set(1);
   }
@@ -233,10 +786,34 @@ public class InMemorySyncAdapter implements SyncPort {
     return events.size();
   }
 
+  /** Gets the number of events waiting in a region's pending queue. */
+  public int getPendingQueueDepth(Region region) {
+    NavigableSet<IndexEntry> queue = pendingQueues.get(region);
+    return queue == null ? 0 : queue.size();
+  }
+
+  /** Gets the number of events currently claimed by workers. */
+  public int getActiveClaimCount() {
+    return leases.size();
+  }
+
+  /** Gets the number of pending events that were superseded by a newer event. */
+  public long getSupersededEventCount() {
+    return supersededCount.get();
+  }
+
   /** Gets event count by status for monitoring. */
   public Map<SyncEvent.Status, Long> getEventCountByStatus() {
-    return events.values().stream()
-        .collect(Collectors.groupingBy(SyncEvent::getStatus, Collectors.counting()));
+    Map<SyncEvent.Status, Long> counts = new EnumMap<>(SyncEvent.Status.class);
+    for (Map<SyncEvent.Status, NavigableSet<IndexEntry>> regionIndex : eventsByStatus.values()) {
+      regionIndex.forEach(
+          (status, entries) -> {
+            if (!entries.isEmpty()) {
+              counts.merge(status, (long) entries.size(), Long::sum);
+            }
+          });
+    }
+    return counts;
   }
 
   /** Gets event count by type for monitoring. */
@@ -249,4 +826,56 @@ public class InMemorySyncAdapter implements SyncPort {
   public Collection<SyncEvent> getAllEvents() {
     return new ArrayList<>(events.values());
   }
+
+  /**
+   * Position of an event in the pending queues and ordered indexes. Ordered by creation time, with
+   * the insertion sequence as a tie-breaker so that events created in the same instant keep FIFO
+   * order.
+   */
+  private record IndexEntry(Instant createdAt, long sequence, EventId eventId)
+      implements Comparable<IndexEntry> {
+
+    @Override
+    public int compareTo(IndexEntry other) {
+      int byTime = createdAt.compareTo(other.createdAt);
+      return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  private record TableRegion(TableId tableId, Region targetRegion) {}
+
+  /**
+   * Identifies events that can replace each other while pending. Metadata events coalesce per table
+   * and target region; data events also require the same source region, since their files are
+   * copied from there.
+   */
+  private record CoalescingKey(
+      SyncEvent.Type type, TableId tableId, Region sourceRegion, Region targetRegion) {
+
+    static CoalescingKey of(SyncEvent event) {
+      return switch (event.getType()) {
+        case METADATA_SYNC ->
+            new CoalescingKey(event.getType(), event.getTableId(), null, event.getTargetRegion());
+        case DATA_SYNC ->
+            new CoalescingKey(
+                event.getType(),
+                event.getTableId(),
+                event.getSourceRegion(),
+                event.getTargetRegion());
+        case COMMIT_COMPLETED -> null;
+      };
+    }
+  }
+
+  /** A worker's claim on an IN_PROGRESS event, ordered by expiry for lazy release. */
+  private record Lease(
+      EventId eventId, Region region, String workerId, Instant expiresAt, long sequence)
+      implements Comparable<Lease> {
+
+    @Override
+    public int compareTo(Lease other) {
+      int byExpiry = expiresAt.compareTo(other.expiresAt);
+      return byExpiry != 0 ? byExpiry : Long.compare(sequence, other.sequence);
+    }
+  }
 }
@@ -0,0 +1,679 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * SyncPort adapter that keeps the in-memory event store durable in an append-only journal on local
+ * disk, so pending replication work survives process restarts. Every event creation and status
+ * transition is appended to the current journal segment and fsynced before the mutating call
+ * returns. A single writer thread batches all records appended while the previous fsync was in
+ * flight into one write and one fsync (group commit), so concurrent workers share the cost of
+ * durability instead of paying one fsync each. Once a journal write fails, further changes and
+ * checkpoints fail rather than go unjournaled.
+ *
+ * <p>A periodic checkpoint rolls the journal over to a new segment and writes a compacted snapshot
+ * holding only the latest record per live event; purged events leave removal records in the
+ * journal and drop out of the next checkpoint. Older segments are then deleted. Recovery loads the
+ * newest checkpoint and replays the segments written after it, ignoring a torn record at the end of
+ * the last segment. Claims are not journaled: events that were IN_PROGRESS when the process
+ * stopped come back as PENDING, as if their leases had expired.
+ */
+@Slf4j
+public class JournaledSyncAdapter extends InMemorySyncAdapter implements AutoCloseable {
+
+  private static final byte EVENT_RECORD = 1;
+  private static final byte DEAD_LETTER_RECORD = 2;
+  private static final byte REMOVAL_RECORD = 3;
+  private static final int CHECKPOINT_MAGIC = 0x53594e43;
+  private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String CHECKPOINT_PREFIX = "checkpoint-";
+  private static final String CHECKPOINT_SUFFIX = ".snap";
+
+  private final Path directory;
+  private final Thread writerThread;
+  private final ScheduledExecutorService checkpointScheduler;
+  private final Object checkpointLock = new Object();
+
+  // Group commit state; records are appended by callers and written by the writer thread
+  private final ReentrantLock journalLock = new ReentrantLock();
+  private final Condition recordsAppended = journalLock.newCondition();
+  private final Condition recordsDurable = journalLock.newCondition();
+  private List<byte[]> unwrittenRecords = new ArrayList<>();
+  private long appendedSequence;
+  private long durableSequence;
+  private CompletableFuture<Long> rollRequest;
+  private IOException writeFailure;
+  private boolean closed;
+  private boolean writerStopped;
+
+  // Latest journaled record per event, in the order events were first journaled; this is what a
+  // checkpoint writes. Guarded by journalLock.
+  private final Map<EventId, byte[]> latestEventRecords = new LinkedHashMap<>();
+  private final Map<EventId, byte[]> deadLetterRecords = new LinkedHashMap<>();
+
+  // Sequence of the last record appended by each thread, awaited before a mutating call returns
+  private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+  private volatile boolean recovering;
+
+  private FileChannel segmentChannel;
+  private long segmentNumber;
+
+  /**
+   * Opens or creates a journal in the given directory, restoring any events it already holds, and
+   * takes a checkpoint at the given interval.
+   */
+  public JournaledSyncAdapter(Path directory, Duration checkpointInterval) {
+    if (checkpointInterval.isNegative() || checkpointInterval.isZero()) {
+      throw new IllegalArgumentException("Checkpoint interval must be positive");
+    }
+    this.directory = directory;
+    try {
+      Files.createDirectories(directory);
+      openSegment(recover() + 1);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to open sync journal in " + directory, e);
+    }
+
+    writerThread = new Thread(this::writeLoop, "sync-journal-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+
+    checkpointScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "sync-journal-checkpoint");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long intervalMillis = checkpointInterval.toMillis();
+    checkpointScheduler.scheduleWithFixedDelay(
+        this::checkpointQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    log.info("Opened sync journal in {} at segment {}", directory, segmentNumber);
+  }
+
+  @Override
+  public void publishSyncEvent(SyncEvent event) {
+    super.publishSyncEvent(event);
+    awaitDurable();
+  }
+
+  @Override
+  public List<SyncEvent> claimPendingEvents(
+      Region targetRegion, String workerId, int maxEvents, Duration visibilityTimeout) {
+    List<SyncEvent> claimed =
+        super.claimPendingEvents(targetRegion, workerId, maxEvents, visibilityTimeout);
+    awaitDurable();
+    return claimed;
+  }
+
+  @Override
+  public boolean completeClaim(EventId eventId, String workerId, SyncEvent.Status status) {
+    boolean completed = super.completeClaim(eventId, workerId, status);
+    awaitDurable();
+    return completed;
+  }
+
+  @Override
+  public int releaseExpiredClaims(Region targetRegion) {
+    int released = super.releaseExpiredClaims(targetRegion);
+    awaitDurable();
+    return released;
+  }
+
+  @Override
+  public void updateEventStatus(EventId eventId, SyncEvent.Status status) {
+    super.updateEventStatus(eventId, status);
+    awaitDurable();
+  }
+
+  @Override
+  public void retryFailedEvent(EventId eventId) {
+    super.retryFailedEvent(eventId);
+    awaitDurable();
+  }
+
+  @Override
+  public void deadLetterEvent(EventId eventId, String reason) {
+    super.deadLetterEvent(eventId, reason);
+    awaitDurable();
+  }
+
+  @Override
+  public void redriveDeadLetterEvent(EventId eventId) {
+    super.redriveDeadLetterEvent(eventId);
+    awaitDurable();
+  }
+
+  @Override
+  public int purgeCompletedEvents(Instant finishedBefore) {
+    int purged = super.purgeCompletedEvents(finishedBefore);
+    awaitDurable();
+    return purged;
+  }
+
+  /** Clears all sync data, including the journal on disk. Useful for testing. */
+  @Override
+  public void clear() {
+    journalLock.lock();
+    try {
+      super.clear();
+      latestEventRecords.clear();
+      deadLetterRecords.clear();
+    } finally {
+      journalLock.unlock();
+    }
+    checkpoint();
+  }
+
+  @Override
+  protected void onEventChanged(SyncEvent event) {
+    if (recovering) {
+      return;
+    }
+    EventId eventId = event.getEventId();
+    byte[] record = encode(EVENT_RECORD, out -> SyncEventCodec.writeEvent(out, event));
+    append(
+        record,
+        () -> {
+          latestEventRecords.put(eventId, record);
+          if (event.getStatus() != SyncEvent.Status.DEAD_LETTERED) {
+            deadLetterRecords.remove(eventId);
+          }
+        });
+  }
+
+  @Override
+  protected void onDeadLettered(DeadLetterEntry entry) {
+    if (recovering) {
+      return;
+    }
+    byte[] record = encode(DEAD_LETTER_RECORD, out -> SyncEventCodec.writeDeadLetter(out, entry));
+    append(record, () -> deadLetterRecords.put(entry.eventId(), record));
+  }
+
+  @Override
+  protected void onEventRemoved(EventId eventId) {
+    if (recovering) {
+      return;
+    }
+    byte[] record = encode(REMOVAL_RECORD, out -> out.writeUTF(eventId.value()));
+    append(
+        record,
+        () -> {
+          latestEventRecords.remove(eventId);
+          deadLetterRecords.remove(eventId);
+        });
+  }
+
+  /**
+   * Rolls the journal over to a new segment and writes a compacted snapshot of all events, then
+   * deletes the segments and checkpoints it replaces. Runs periodically; can also be called
+   * directly, e.g. before a planned shutdown to shorten the next recovery. Fails once a journal
+   * write has failed, since the writer thread is then no longer there to roll the journal.
+   */
+  public void checkpoint() {
+    synchronized (checkpointLock) {
+      CompletableFuture<Long> roll = new CompletableFuture<>();
+      journalLock.lock();
+      try {
+        checkWritable();
+        rollRequest = roll;
+        recordsAppended.signal();
+      } finally {
+        journalLock.unlock();
+      }
+
+      // Every record appended before the roll is already in the latest-record maps, so the
+      // snapshot covers the old segments; anything newer is replayed again from the new segment
+      long firstSegment = roll.join();
+      List<byte[]> records = new ArrayList<>();
+      journalLock.lock();
+      try {
+        records.addAll(latestEventRecords.values());
+        records.addAll(deadLetterRecords.values());
+      } finally {
+        journalLock.unlock();
+      }
+      Path checkpointFile = checkpointFile(firstSegment);
+      Path tempFile = directory.resolve(checkpointFile.getFileName() + ".tmp");
+      int recordCount = 0;
+      try {
+        try (FileChannel channel =
+                FileChannel.open(
+                    tempFile,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+          out.writeInt(CHECKPOINT_MAGIC);
+          for (byte[] record : records) {
+            out.write(frame(record));
+            recordCount++;
+          }
+          out.flush();
+          channel.force(true);
+        }
+        Files.move(tempFile, checkpointFile, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        for (long segment : listNumbered(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+          if (segment < firstSegment) {
+            Files.deleteIfExists(segmentFile(segment));
+          }
+        }
+        for (long checkpoint : listNumbered(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX)) {
+          if (checkpoint < firstSegment) {
+            Files.deleteIfExists(checkpointFile(checkpoint));
+          }
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to write sync journal checkpoint", e);
+      }
+      log.info("Wrote sync journal checkpoint {} with {} records", firstSegment, recordCount);
+    }
+  }
+
+  /**
+   * Stops the checkpoint schedule and closes the journal once all appended records are durable.
+   * Changes made after the journal is closed fail with an {@link IllegalStateException}.
+   */
+  @Override
+  public void close() {
+    checkpointScheduler.shutdownNow();
+    journalLock.lock();
+    try {
+      closed = true;
+      recordsAppended.signal();
+    } finally {
+      journalLock.unlock();
+    }
+    try {
+      writerThread.join();
+      segmentChannel.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      log.warn("Failed to close sync journal segment", e);
+    }
+    log.info("Closed sync journal in {}", directory);
+  }
+
+  /** Gets the number of the journal segment currently being written. */
+  public long getCurrentSegment() {
+    journalLock.lock();
+    try {
+      return segmentNumber;
+    } finally {
+      journalLock.unlock();
+    }
+  }
+
+  private void checkpointQuietly() {
+    try {
+      checkpoint();
+    } catch (RuntimeException e) {
+      log.error("Sync journal checkpoint failed", e);
+    }
+  }
+
+  /**
+   * Queues a record for the writer thread and applies it to the latest-record maps in the same
+   * step, so a checkpoint taken at a roll covers every record written before it. Called from
+   * within the change hooks, so records for one event are appended in the order its changes
+   * happened.
+   */
+  private void append(byte[] record, Runnable updateLatest) {
+    byte[] framed = frame(record);
+    long sequence;
+    journalLock.lock();
+    try {
+      checkWritable();
+      updateLatest.run();
+      unwrittenRecords.add(framed);
+      sequence = ++appendedSequence;
+      recordsAppended.signal();
+    } finally {
+      journalLock.unlock();
+    }
+    lastAppended.get()[0] = sequence;
+  }
+
+  /** Fails if records can no longer be written. Called with journalLock held. */
+  private void checkWritable() {
+    if (writeFailure != null) {
+      throw new UncheckedIOException("Sync journal write failed", writeFailure);
+    }
+    if (closed || writerStopped) {
+      throw new IllegalStateException("Sync journal is closed");
+    }
+  }
+
+  /**
+   * Blocks until every record this thread has appended is on disk. Records appended before the
+   * journal was closed are still written by the closing writer thread, so this only fails once the
+   * writer has stopped without writing them.
+   */
+  private void awaitDurable() {
+    long sequence = lastAppended.get()[0];
+    journalLock.lock();
+    try {
+      while (durableSequence < sequence) {
+        if (writeFailure != null) {
+          throw new UncheckedIOException("Sync journal write failed", writeFailure);
+        }
+        if (writerStopped) {
+          throw new IllegalStateException("Sync journal is closed");
+        }
+        recordsDurable.awaitUninterruptibly();
+      }
+    } finally {
+      journalLock.unlock();
+    }
+  }
+
+  private void writeLoop() {
+    try {
+      writeBatches();
+    } finally {
+      // Wake callers still waiting for records, or a roll, that will now never be written
+      CompletableFuture<Long> roll;
+      journalLock.lock();
+      try {
+        writerStopped = true;
+        recordsDurable.signalAll();
+        roll = rollRequest;
+        rollRequest = null;
+      } finally {
+        journalLock.unlock();
+      }
+      if (roll != null) {
+        roll.completeExceptionally(new IllegalStateException("Sync journal writer stopped"));
+      }
+    }
+  }
+
+  private void writeBatches() {
+    while (true) {
+      List<byte[]> batch;
+      long batchSequence;
+      CompletableFuture<Long> roll;
+      journalLock.lock();
+      try {
+        while (unwrittenRecords.isEmpty() && rollRequest == null && !closed) {
+          recordsAppended.awaitUninterruptibly();
+        }
+        if (unwrittenRecords.isEmpty() && rollRequest == null) {
+          return;
+        }
+        batch = unwrittenRecords;
+        unwrittenRecords = new ArrayList<>();
+        batchSequence = appendedSequence;
+        roll = rollRequest;
+        rollRequest = null;
+      } finally {
+        journalLock.unlock();
+      }
+
+      try {
+        write(batch);
+        if (roll != null) {
+          segmentChannel.close();
+          openSegment(segmentNumber + 1);
+        }
+      } catch (IOException e) {
+        log.error("Sync journal write failed - no further changes will be persisted", e);
+        journalLock.lock();
+        try {
+          writeFailure = e;
+          recordsDurable.signalAll();
+        } finally {
+          journalLock.unlock();
+        }
+        if (roll != null) {
+          roll.completeExceptionally(e);
+        }
+        return;
+      } catch (RuntimeException | Error e) {
+        if (roll != null) {
+          roll.completeExceptionally(e);
+        }
+        throw e;
+      }
+
+      journalLock.lock();
+      try {
+        durableSequence = batchSequence;
+        recordsDurable.signalAll();
+      } finally {
+        journalLock.unlock();
+      }
+      if (roll != null) {
+        roll.complete(segmentNumber);
+      }
+    }
+  }
+
+  private void write(List<byte[]> batch) throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = ByteBuffer.wrap(batch.get(i));
+    }
+    while (buffers[buffers.length - 1].hasRemaining()) {
+      segmentChannel.write(buffers);
+    }
+    segmentChannel.force(false);
+  }
+
+  private void openSegment(long number) throws IOException {
+    Path segmentFile = segmentFile(number);
+    FileChannel channel =
+        FileChannel.open(segmentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    syncDirectory();
+    journalLock.lock();
+    try {
+      segmentChannel = channel;
+      segmentNumber = number;
+    } finally {
+      journalLock.unlock();
+    }
+  }
+
+  /**
+   * Rebuilds the in-memory state from the newest checkpoint and the segments after it. Returns
+   * the highest segment or checkpoint number found, so that writing resumes in a fresh segment.
+   */
+  private long recover() throws IOException {
+    recovering = true;
+    try {
+      List<Long> segments = listNumbered(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+      List<Long> checkpoints = listNumbered(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+      long replayFrom = 0;
+      long highest = 0;
+      int records = 0;
+      if (!checkpoints.isEmpty()) {
+        replayFrom = checkpoints.get(checkpoints.size() - 1);
+        highest = replayFrom;
+        records += readRecords(checkpointFile(replayFrom), true);
+      }
+      for (long segment : segments) {
+        highest = Math.max(highest, segment);
+        if (segment >= replayFrom) {
+          records += readRecords(segmentFile(segment), false);
+        }
+      }
+
+      // Leases do not survive a restart; hand claimed events back out
+      int reclaimed = 0;
+      Instant now = Instant.now();
+      for (SyncEvent event : getAllEvents()) {
+        if (event.getStatus() == SyncEvent.Status.IN_PROGRESS) {
+          restoreEvent(event.withStatus(SyncEvent.Status.PENDING, now));
+          reclaimed++;
+        }
+      }
+      rebuildCoalescingIndex();
+
+      if (records > 0) {
+        log.info(
+            "Recovered {} events from {} sync journal records ({} claims returned to PENDING)",
+            getTotalEventCount(),
+            records,
+            reclaimed);
+      }
+      return highest;
+    } finally {
+      recovering = false;
+    }
+  }
+
+  /**
+   * Applies the records of a checkpoint or segment file. A checkpoint must be intact; a segment may
+   * end in a partially written record, which is where the previous process stopped.
+   */
+  private int readRecords(Path file, boolean checkpoint) throws IOException {
+    int count = 0;
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (checkpoint && in.readInt() != CHECKPOINT_MAGIC) {
+        throw new IOException("Not a sync journal checkpoint: " + file);
+      }
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        byte[] record;
+        try {
+          int checksum = in.readInt();
+          if (length < 1 || length > MAX_RECORD_BYTES) {
+            throw new IOException("Invalid record length " + length);
+          }
+          record = new byte[length];
+          in.readFully(record);
+          if (checksum(record) != checksum) {
+            throw new IOException("Checksum mismatch");
+          }
+        } catch (IOException e) {
+          if (checkpoint) {
+            throw new IOException("Corrupt sync journal checkpoint " + file, e);
+          }
+          log.warn("Ignoring torn tail of sync journal segment {} after {} records", file, count);
+          break;
+        }
+        apply(record);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private void apply(byte[] record) throws IOException {
+    DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+    if (record[0] == EVENT_RECORD) {
+      SyncEvent event = SyncEventCodec.readEvent(in);
+      latestEventRecords.put(event.getEventId(), record);
+      if (event.getStatus() != SyncEvent.Status.DEAD_LETTERED) {
+        deadLetterRecords.remove(event.getEventId());
+      }
+      restoreEvent(event);
+    } else if (record[0] == DEAD_LETTER_RECORD) {
+      DeadLetterEntry entry = SyncEventCodec.readDeadLetter(in);
+      deadLetterRecords.put(entry.eventId(), record);
+      restoreDeadLetter(entry);
+    } else if (record[0] == REMOVAL_RECORD) {
+      EventId eventId = EventId.of(in.readUTF());
+      latestEventRecords.remove(eventId);
+      deadLetterRecords.remove(eventId);
+      restoreRemoval(eventId);
+    } else {
+      throw new IOException("Unknown sync journal record type " + record[0]);
+    }
+  }
+
+  private List<Long> listNumbered(String prefix, String suffix) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+          .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+          .map(Long::parseLong)
+          .sorted()
+          .toList();
+    }
+  }
+
+  /** Makes file creations and renames in the journal directory durable, where supported. */
+  private void syncDirectory() {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      log.debug("Directory fsync not supported for {}", directory);
+    }
+  }
+
+  private Path segmentFile(long number) {
+    return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+  }
+
+  private Path checkpointFile(long number) {
+    return directory.resolve(
+        String.format("%s%012d%s", CHECKPOINT_PREFIX, number, CHECKPOINT_SUFFIX));
+  }
+
+  private static byte[] encode(byte recordType, RecordWriter writer) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(recordType);
+      writer.write(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /** Prefixes a record with its length and checksum. */
+  private static byte[] frame(byte[] record) {
+    return ByteBuffer.allocate(8 + record.length)
+        .putInt(record.length)
+        .putInt(checksum(record))
+        .put(record)
+        .array();
+  }
+
+  private static int checksum(byte[] record) {
+    CRC32C crc = new CRC32C();
+    crc.update(record);
+    return (int) crc.getValue();
+  }
+
+  @FunctionalInterface
+  private interface RecordWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+}
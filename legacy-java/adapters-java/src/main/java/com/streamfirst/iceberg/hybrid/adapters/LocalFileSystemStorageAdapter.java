@@ -0,0 +1,898 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import com.streamfirst.iceberg.hybrid.domain.BulkDeleteResult;
+import com.streamfirst.iceberg.hybrid.domain.FileStat;
+import com.streamfirst.iceberg.hybrid.domain.Region;
+import com.streamfirst.iceberg.hybrid.domain.StorageLocation;
+import com.streamfirst.iceberg.hybrid.domain.StoragePath;
+import com.streamfirst.iceberg.hybrid.domain.StoredObject;
+import com.streamfirst.iceberg.hybrid.ports.StoragePort;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * StoragePort backed by the local file system, standing in for object storage in single-node
+ * deployments and performance tests. Each storage location is a directory: {@code file:} URIs name
+ * it directly, and other URIs map to a directory under the root, e.g. {@code s3://bucket/prefix}
+ * to {@code <root>/s3/bucket/prefix}.
+ *
+ * <p>Files appear atomically: every write goes to a temporary file that is renamed into place, so
+ * readers see either the old content or the new, never a partial file. Writes are not forced to
+ * disk, so they can be lost in an operating system crash. Copies move data with {@link
+ * FileChannel#transferTo}, which the kernel can do without passing it through the Java heap, and
+ * buffer reads of large files are memory-mapped.
+ *
+ * <p>Staging files and unfinished multipart uploads live in a {@value #INTERNAL_DIRECTORY}
+ * directory in each location, which is never listed and cannot be addressed by storage paths.
+ * Multipart uploads persist there across restarts.
+ *
+ * <p>Etags are cached in memory and, where the file system supports user-defined attributes,
+ * stored with each file in a {@value #ETAG_ATTRIBUTE} attribute, so they survive restarts. Either
+ * is trusted only while the file keeps the size and modification time it was hashed at. On file
+ * systems without such attributes, the first stat of each file after a restart hashes it.
+ */
+@Slf4j
+public class LocalFileSystemStorageAdapter implements StoragePort {
+
+  /** Directory in each location holding staging files and multipart uploads. */
+  public static final String INTERNAL_DIRECTORY = ".hybrid";
+
+  /** Default size from which buffer reads are memory-mapped rather than read into the heap. */
+  public static final int DEFAULT_MMAP_THRESHOLD = 1024 * 1024;
+
+  /** User-defined file attribute holding a file's etag, with the size and time it is for. */
+  public static final String ETAG_ATTRIBUTE = "hybrid.etag";
+
+  /** Files whose etags are remembered before the least recently hashed are forgotten. */
+  private static final int MAX_CACHED_ETAGS = 100_000;
+
+  /** Heap buffer through which content is copied when it is hashed on the way. */
+  private static final int TRANSFER_BYTES = 64 * 1024;
+
+  private static final String UPLOAD_TARGET_FILE = "target";
+  private static final String UPLOAD_TAG_FILE = "tag";
+  private static final String PART_PREFIX = "part-";
+
+  private final Path rootDirectory;
+  private final int mmapThreshold;
+  private final Map<String, Path> locationDirectories = new ConcurrentHashMap<>();
+  private final Map<Region, StorageLocation> regionStorageMap = new ConcurrentHashMap<>();
+  private final AtomicLong uploadCounter = new AtomicLong();
+  private final Map<Path, CachedEtag> etags =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, CachedEtag> eldest) {
+          return size() > MAX_CACHED_ETAGS;
+        }
+      };
+
+  /**
+   * @param rootDirectory directory under which locations without {@code file:} URIs are stored
+   */
+  public LocalFileSystemStorageAdapter(Path rootDirectory) {
+    this(rootDirectory, DEFAULT_MMAP_THRESHOLD);
+  }
+
+  /**
+   * @param rootDirectory directory under which locations without {@code file:} URIs are stored
+   * @param mmapThreshold size in bytes from which buffer reads are memory-mapped
+   */
+  public LocalFileSystemStorageAdapter(Path rootDirectory, int mmapThreshold) {
+    if (mmapThreshold < 0) {
+      throw new IllegalArgumentException("Memory-map threshold cannot be negative");
+    }
+    this.rootDirectory = rootDirectory.toAbsolutePath().normalize();
+    this.mmapThreshold = mmapThreshold;
+  }
+
+  @Override
+  public void writeFile(StorageLocation location, StoragePath path, byte[] data) {
+    writeBuffer(location, path, ByteBuffer.wrap(data));
+  }
+
+  @Override
+  public void writeBuffer(StorageLocation location, StoragePath path, ByteBuffer data) {
+    ByteBuffer source = data.duplicate();
+    writeAtomically(
+        location,
+        path,
+        out -> {
+          while (source.hasRemaining()) {
+            out.write(source);
+          }
+        });
+  }
+
+  @Override
+  public void writeFile(StorageLocation location, StoragePath path, InputStream data) {
+    // Streamed through a bounded buffer, with the etag computed on the way
+    MessageDigest digest = StoredObject.newEtagDigest();
+    writeAtomically(
+        location,
+        path,
+        out -> {
+          byte[] buffer = new byte[64 * 1024];
+          int read;
+          while ((read = data.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) {
+              out.write(chunk);
+            }
+          }
+        },
+        () -> StoredObject.etagOf(digest));
+  }
+
+  @Override
+  public byte[] readFile(StorageLocation location, StoragePath path) {
+    log.debug("Reading file {} from storage {}", path, location.uri());
+    try {
+      byte[] content = Files.readAllBytes(file(location, path));
+      log.debug(
+          "Successfully read file {} from storage {} ({} bytes)",
+          path,
+          location.uri(),
+          content.length);
+      return content;
+    } catch (IOException e) {
+      throw failure("read", location, path, e);
+    }
+  }
+
+  @Override
+  public InputStream readFileStream(StorageLocation location, StoragePath path) {
+    try {
+      return Files.newInputStream(file(location, path));
+    } catch (IOException e) {
+      throw failure("read", location, path, e);
+    }
+  }
+
+  @Override
+  public byte[] readRange(StorageLocation location, StoragePath path, long offset, int length) {
+    ByteBuffer range = readRangeInto(location, path, offset, length, false);
+    byte[] content = new byte[range.remaining()];
+    range.get(content);
+    return content;
+  }
+
+  @Override
+  public ByteBuffer readBuffer(StorageLocation location, StoragePath path) {
+    if (getFileSize(location, path) > Integer.MAX_VALUE) {
+      throw new RuntimeException("File too large to read into one buffer: " + path);
+    }
+    return readRangeBuffer(location, path, 0, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public ByteBuffer readRangeBuffer(
+      StorageLocation location, StoragePath path, long offset, int length) {
+    return readRangeInto(location, path, offset, length, true).asReadOnlyBuffer();
+  }
+
+  @Override
+  public SeekableByteChannel openChannel(StorageLocation location, StoragePath path) {
+    try {
+      return FileChannel.open(file(location, path), StandardOpenOption.READ);
+    } catch (IOException e) {
+      throw failure("read", location, path, e);
+    }
+  }
+
+  /** Reads a range into a heap buffer, or maps it if allowed and it is large enough. */
+  private ByteBuffer readRangeInto(
+      StorageLocation location, StoragePath path, long offset, int length, boolean mapLarge) {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("Offset and length cannot be negative");
+    }
+    try (FileChannel channel = FileChannel.open(file(location, path), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long from = Math.min(offset, size);
+      int count = (int) Math.min(length, size - from);
+      if (mapLarge && count >= mmapThreshold && count > 0) {
+        // The mapping stays valid after the channel is closed, and after the file is replaced or
+        // deleted, since the old file is only unlinked
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, count);
+      }
+      ByteBuffer content = ByteBuffer.allocate(count);
+      while (content.hasRemaining()) {
+        if (channel.read(content, from + content.position()) < 0) {
+          break;
+        }
+      }
+      return content.flip();
+    } catch (IOException e) {
+      throw failure("read", location, path, e);
+    }
+  }
+
+  @Override
+  public String createMultipartUpload(StorageLocation location, StoragePath path, String tag) {
+    // Upload IDs sort in creation order, which listing relies on
+    String uploadId =
+        String.format(
+            "upload-%013d-%06d",
+            System.currentTimeMillis(), uploadCounter.incrementAndGet() % 1_000_000);
+    // Rejects paths that could never be completed
+    file(location, path);
+    try {
+      Path upload = Files.createDirectories(uploadsDirectory(location).resolve(uploadId));
+      if (tag != null) {
+        Files.writeString(upload.resolve(UPLOAD_TAG_FILE), tag);
+      }
+      // Written last: an upload without its target file is never listed or resumed
+      Files.writeString(upload.resolve(UPLOAD_TARGET_FILE), path.toString());
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to start multipart upload for: " + path, e);
+    }
+    log.debug("Started multipart upload {} for {} in storage {}", uploadId, path, location.uri());
+    return uploadId;
+  }
+
+  @Override
+  public void uploadPart(
+      StorageLocation location, StoragePath path, String uploadId, int partNumber, byte[] data) {
+    if (partNumber < 1) {
+      throw new IllegalArgumentException("Part numbers start at 1");
+    }
+    Path upload = upload(location, path, uploadId);
+    try {
+      Path staged = Files.createTempFile(upload, "staging-", ".tmp");
+      try {
+        Files.write(staged, data);
+        Files.move(
+            staged,
+            upload.resolve(String.format("%s%05d", PART_PREFIX, partNumber)),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(staged);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to upload part " + partNumber + " of " + uploadId, e);
+    }
+    log.debug("Uploaded part {} of {} ({} bytes)", partNumber, uploadId, data.length);
+  }
+
+  @Override
+  public List<String> listMultipartUploads(StorageLocation location, StoragePath path) {
+    Path uploads = uploadsDirectory(location);
+    if (!Files.isDirectory(uploads)) {
+      return List.of();
+    }
+    try (Stream<Path> entries = Files.list(uploads)) {
+      List<String> uploadIds = new ArrayList<>();
+      for (Path upload : entries.sorted().toList()) {
+        Path target = upload.resolve(UPLOAD_TARGET_FILE);
+        if (Files.isRegularFile(target) && Files.readString(target).equals(path.toString())) {
+          uploadIds.add(upload.getFileName().toString());
+        }
+      }
+      return uploadIds;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to list multipart uploads for: " + path, e);
+    }
+  }
+
+  @Override
+  public Optional<String> getMultipartUploadTag(
+      StorageLocation location, StoragePath path, String uploadId) {
+    Path tag = upload(location, path, uploadId).resolve(UPLOAD_TAG_FILE);
+    try {
+      return Files.isRegularFile(tag) ? Optional.of(Files.readString(tag)) : Optional.empty();
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read tag of multipart upload: " + uploadId, e);
+    }
+  }
+
+  @Override
+  public Map<Integer, Long> listUploadedParts(
+      StorageLocation location, StoragePath path, String uploadId) {
+    Map<Integer, Long> sizes = new TreeMap<>();
+    try (Stream<Path> entries = Files.list(upload(location, path, uploadId))) {
+      for (Path part : entries.toList()) {
+        String name = part.getFileName().toString();
+        if (name.startsWith(PART_PREFIX)) {
+          sizes.put(Integer.parseInt(name.substring(PART_PREFIX.length())), Files.size(part));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to list parts of multipart upload: " + uploadId, e);
+    }
+    return sizes;
+  }
+
+  @Override
+  public void completeMultipartUpload(
+      StorageLocation location, StoragePath path, String uploadId, int partCount) {
+    Path upload = upload(location, path, uploadId);
+    List<Path> parts = new ArrayList<>();
+    for (int part = 1; part <= partCount; part++) {
+      Path partFile = upload.resolve(String.format("%s%05d", PART_PREFIX, part));
+      if (!Files.isRegularFile(partFile)) {
+        throw new RuntimeException("Part " + part + " of upload " + uploadId + " is missing");
+      }
+      parts.add(partFile);
+    }
+
+    // Hashed while the parts are joined, so verifying the file does not read it again
+    MessageDigest digest = StoredObject.newEtagDigest();
+    writeAtomically(
+        location,
+        path,
+        out -> {
+          for (Path part : parts) {
+            try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+              transfer(in, out, digest);
+            }
+          }
+        },
+        () -> StoredObject.etagOf(digest));
+    deleteRecursively(upload);
+    log.debug("Completed multipart upload {} of {} ({} parts)", uploadId, path, partCount);
+  }
+
+  @Override
+  public void abortMultipartUpload(StorageLocation location, StoragePath path, String uploadId) {
+    Path upload = uploadsDirectory(location).resolve(uploadId).normalize();
+    if (isUploadFor(upload, uploadsDirectory(location), path)) {
+      deleteRecursively(upload);
+      log.debug("Aborted multipart upload {} of {}", uploadId, path);
+    }
+  }
+
+  private Path upload(StorageLocation location, StoragePath path, String uploadId) {
+    Path uploads = uploadsDirectory(location);
+    Path upload = uploads.resolve(uploadId).normalize();
+    if (!isUploadFor(upload, uploads, path)) {
+      throw new RuntimeException("Multipart upload not found: " + uploadId + " for " + path);
+    }
+    return upload;
+  }
+
+  private static boolean isUploadFor(Path upload, Path uploads, StoragePath path) {
+    Path target = upload.resolve(UPLOAD_TARGET_FILE);
+    try {
+      return upload.getParent().equals(uploads)
+          && Files.isRegularFile(target)
+          && Files.readString(target).equals(path.toString());
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean fileExists(StorageLocation location, StoragePath path) {
+    boolean exists = Files.isRegularFile(file(location, path));
+    log.debug("File {} exists in storage {}: {}", path, location.uri(), exists);
+    return exists;
+  }
+
+  @Override
+  public Optional<StoredObject> getObjectInfo(StorageLocation location, StoragePath path) {
+    return stat(location, path).map(FileStat::object);
+  }
+
+  @Override
+  public Map<StoragePath, FileStat> statAll(
+      StorageLocation location, Collection<StoragePath> paths) {
+    Map<StoragePath, FileStat> stats = new HashMap<>();
+    for (StoragePath path : paths) {
+      stat(location, path).ifPresent(stat -> stats.put(path, stat));
+    }
+    return stats;
+  }
+
+  private Optional<FileStat> stat(StorageLocation location, StoragePath path) {
+    Path file = file(location, path);
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      // A replaced file has a new file key, and an externally modified one a new size or time
+      CachedEtag cached = knownEtag(file, attributes);
+      if (cached == null) {
+        String etag;
+        try (InputStream in = Files.newInputStream(file)) {
+          etag = StoredObject.computeEtag(in);
+        }
+        cached =
+            new CachedEtag(
+                attributes.fileKey(), attributes.size(), attributes.lastModifiedTime(), etag);
+        synchronized (etags) {
+          etags.put(file, cached);
+        }
+        storeEtag(file, cached);
+      }
+      return Optional.of(
+          new FileStat(
+              path, attributes.size(), cached.etag(), attributes.lastModifiedTime().toInstant()));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      throw failure("inspect", location, path, e);
+    }
+  }
+
+  @Override
+  public void deleteFile(StorageLocation location, StoragePath path) {
+    log.debug("Deleting file {} from storage {}", path, location.uri());
+    Path file = file(location, path);
+    try {
+      Files.delete(file);
+    } catch (IOException e) {
+      throw failure("delete", location, path, e);
+    }
+    forgetEtag(file);
+    log.debug("Successfully deleted file {} from storage {}", path, location.uri());
+  }
+
+  @Override
+  public BulkDeleteResult deleteAll(StorageLocation location, Collection<StoragePath> paths) {
+    List<StoragePath> deleted = new ArrayList<>();
+    List<StoragePath> notFound = new ArrayList<>();
+    Map<StoragePath, String> failed = new HashMap<>();
+    for (StoragePath path : paths) {
+      try {
+        Path file = file(location, path);
+        Files.delete(file);
+        forgetEtag(file);
+        deleted.add(path);
+      } catch (NoSuchFileException e) {
+        notFound.add(path);
+      } catch (IOException | RuntimeException e) {
+        failed.put(path, String.valueOf(e.getMessage()));
+      }
+    }
+    log.debug(
+        "Deleted {} files from storage {}, {} not found, {} failed",
+        deleted.size(),
+        location.uri(),
+        notFound.size(),
+        failed.size());
+    return new BulkDeleteResult(deleted, notFound, failed);
+  }
+
+  @Override
+  public void copyFile(
+      StorageLocation source,
+      StoragePath sourcePath,
+      StorageLocation target,
+      StoragePath targetPath) {
+    log.debug(
+        "Copying file from {}:{} to {}:{}", source.uri(), sourcePath, target.uri(), targetPath);
+
+    Path sourceFile = file(source, sourcePath);
+    CachedEtag sourceEtag;
+    FileChannel in;
+    try {
+      sourceEtag = cachedEtag(sourceFile);
+      in = FileChannel.open(sourceFile, StandardOpenOption.READ);
+    } catch (IOException e) {
+      throw failure("read", source, sourcePath, e);
+    }
+    try (in) {
+      // The path held the same file before and after it was opened, so the etag is that of the
+      // opened file even if another file was renamed into place meanwhile
+      if (sourceEtag != null && sourceEtag.equals(cachedEtag(sourceFile))) {
+        // The copy has the source's etag, so the kernel can move the bytes without hashing them,
+        // as long as the source was not changed meanwhile
+        writeAtomically(
+            target,
+            targetPath,
+            out -> transfer(in, out),
+            () -> sourceEtag.equals(cachedEtagOrNull(sourceFile)) ? sourceEtag.etag() : null);
+      } else {
+        MessageDigest digest = StoredObject.newEtagDigest();
+        writeAtomically(
+            target,
+            targetPath,
+            out -> transfer(in, out, digest),
+            () -> StoredObject.etagOf(digest));
+      }
+    } catch (IOException e) {
+      throw failure("read", source, sourcePath, e);
+    }
+
+    log.debug(
+        "Successfully copied file from {}:{} to {}:{}",
+        source.uri(),
+        sourcePath,
+        target.uri(),
+        targetPath);
+  }
+
+  @Override
+  public List<StoragePath> listFiles(StorageLocation location, Predicate<StoragePath> predicate) {
+    log.debug("Listing files matching predicate in storage {}", location.uri());
+
+    List<StoragePath> matchingFiles = walk(location, directory(location), predicate);
+    log.debug(
+        "Found {} files matching predicate in storage {}", matchingFiles.size(), location.uri());
+    return matchingFiles;
+  }
+
+  @Override
+  public List<StoragePath> listFiles(StorageLocation location, String prefix) {
+    // Only the directory named by the prefix's complete segments can hold matches
+    Path start = directory(location);
+    int lastSlash = prefix.lastIndexOf('/');
+    if (lastSlash > 0) {
+      String directoryPrefix = prefix.substring(0, lastSlash).replaceFirst("^/+", "");
+      if (!directoryPrefix.isEmpty()) {
+        start = start.resolve(directoryPrefix).normalize();
+        if (!start.startsWith(directory(location))) {
+          return List.of();
+        }
+      }
+    }
+    return walk(location, start, path -> path.startsWith(prefix));
+  }
+
+  /** Lists the files under a directory of a location, in path order. */
+  private List<StoragePath> walk(
+      StorageLocation location, Path start, Predicate<StoragePath> predicate) {
+    Path directory = directory(location);
+    if (!Files.isDirectory(start)) {
+      log.debug("Storage directory not found: {}", start);
+      return List.of();
+    }
+
+    Path internal = directory.resolve(INTERNAL_DIRECTORY);
+    if (start.startsWith(internal)) {
+      return List.of();
+    }
+    List<StoragePath> matchingFiles = new ArrayList<>();
+    try {
+      Files.walkFileTree(
+          start,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+              return dir.equals(internal) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+              if (attributes.isRegularFile()) {
+                StoragePath path = StoragePath.of(directory.relativize(file).toString());
+                if (predicate.test(path)) {
+                  matchingFiles.add(path);
+                }
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+              // Files deleted while the walk is under way are simply not listed
+              if (e instanceof NoSuchFileException) {
+                return FileVisitResult.CONTINUE;
+              }
+              throw e;
+            }
+          });
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to list files in storage: " + location.uri(), e);
+    }
+    matchingFiles.sort(Comparator.comparing(StoragePath::toString));
+    return matchingFiles;
+  }
+
+  @Override
+  public long getFileSize(StorageLocation location, StoragePath path) {
+    try {
+      long size = Files.size(file(location, path));
+      log.debug("File {} in storage {} has size {} bytes", path, location.uri(), size);
+      return size;
+    } catch (IOException e) {
+      throw failure("inspect", location, path, e);
+    }
+  }
+
+  @Override
+  public StorageLocation getStorageLocation(Region region) {
+    StorageLocation location = regionStorageMap.get(region);
+    if (location == null) {
+      throw new IllegalArgumentException("No storage configured for region: " + region);
+    }
+    return location;
+  }
+
+  /** Registers a storage location for a region, creating its directory if needed. */
+  public void registerStorageLocation(Region region, StorageLocation location) {
+    Path directory = directory(location);
+    log.info("Registering storage location for region {}: {} at {}", region, location, directory);
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to create storage directory: " + directory, e);
+    }
+    regionStorageMap.put(region, location);
+  }
+
+  /** Gets the directory holding a storage location's files. */
+  public Path getLocationDirectory(StorageLocation location) {
+    return directory(location);
+  }
+
+  private void writeAtomically(StorageLocation location, StoragePath path, ChannelWriter writer) {
+    writeAtomically(location, path, writer, null);
+  }
+
+  /**
+   * Writes a file's content to a staging file and renames it into place.
+   *
+   * @param etag if not null, gives the etag of the content once the writer is done, or null if it
+   *     is not known; a known etag is cached
+   */
+  private void writeAtomically(
+      StorageLocation location, StoragePath path, ChannelWriter writer, Supplier<String> etag) {
+    Path file = file(location, path);
+    log.debug("Writing file {} to storage {}", path, location.uri());
+    Path staged = null;
+    try {
+      Files.createDirectories(file.getParent());
+      staged = Files.createTempFile(stagingDirectory(location), "write-", ".tmp");
+      try (FileChannel out = FileChannel.open(staged, StandardOpenOption.WRITE)) {
+        writer.write(out);
+      }
+      // Renaming keeps the file key and modification time the etag is cached against
+      String known = etag == null ? null : etag.get();
+      CachedEtag cached = null;
+      if (known != null) {
+        BasicFileAttributes attributes = Files.readAttributes(staged, BasicFileAttributes.class);
+        cached =
+            new CachedEtag(
+                attributes.fileKey(), attributes.size(), attributes.lastModifiedTime(), known);
+        storeEtag(staged, cached);
+      }
+      Files.move(
+          staged, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      staged = null;
+      synchronized (etags) {
+        if (cached != null) {
+          etags.put(file, cached);
+        } else {
+          etags.remove(file);
+        }
+      }
+    } catch (IOException e) {
+      log.error("Failed to write file {} to storage {}", path, location.uri(), e);
+      throw new RuntimeException("Failed to write file: " + path, e);
+    } finally {
+      if (staged != null) {
+        try {
+          Files.deleteIfExists(staged);
+        } catch (IOException e) {
+          log.warn("Failed to delete staging file {}", staged, e);
+        }
+      }
+    }
+  }
+
+  /** Copies a whole channel, letting the kernel move the bytes where it can. */
+  private static void transfer(FileChannel in, FileChannel out) throws IOException {
+    long size = in.size();
+    long position = 0;
+    while (position < size) {
+      long transferred = in.transferTo(position, size - position, out);
+      if (transferred <= 0) {
+        // The source shrank under us
+        break;
+      }
+      position += transferred;
+    }
+  }
+
+  /** Copies a whole channel through the heap, updating the digest with every byte copied. */
+  private static void transfer(FileChannel in, FileChannel out, MessageDigest digest)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BYTES);
+    while (in.read(buffer) != -1) {
+      buffer.flip();
+      digest.update(buffer.array(), 0, buffer.limit());
+      while (buffer.hasRemaining()) {
+        out.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+
+  /** Gets a file's known etag if the file has not changed since it was hashed, or null. */
+  private CachedEtag cachedEtag(Path file) throws IOException {
+    return knownEtag(file, Files.readAttributes(file, BasicFileAttributes.class));
+  }
+
+  /**
+   * Gets the etag cached for a file, or else stored with it, if the file still has the given
+   * attributes; null if neither is.
+   */
+  private CachedEtag knownEtag(Path file, BasicFileAttributes attributes) {
+    CachedEtag cached;
+    synchronized (etags) {
+      cached = etags.get(file);
+    }
+    if (cached != null && cached.matches(attributes)) {
+      return cached;
+    }
+    CachedEtag stored = readStoredEtag(file, attributes);
+    if (stored != null) {
+      synchronized (etags) {
+        etags.put(file, stored);
+      }
+    }
+    return stored;
+  }
+
+  /** Reads the etag stored with a file if the file still has the given attributes, or null. */
+  private static CachedEtag readStoredEtag(Path file, BasicFileAttributes attributes) {
+    UserDefinedFileAttributeView view =
+        Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+    if (view == null) {
+      return null;
+    }
+    try {
+      ByteBuffer value = ByteBuffer.allocate(view.size(ETAG_ATTRIBUTE));
+      view.read(ETAG_ATTRIBUTE, value);
+      String[] fields =
+          new String(value.array(), 0, value.position(), StandardCharsets.UTF_8).split(" ");
+      if (fields.length != 3) {
+        return null;
+      }
+      CachedEtag stored =
+          new CachedEtag(
+              attributes.fileKey(),
+              Long.parseLong(fields[0]),
+              FileTime.from(Instant.parse(fields[1])),
+              fields[2]);
+      return stored.matches(attributes) ? stored : null;
+    } catch (IOException | RuntimeException e) {
+      // No etag stored, or not one this adapter wrote
+      return null;
+    }
+  }
+
+  /** Stores an etag with its file, if the file system supports user-defined attributes. */
+  private static void storeEtag(Path file, CachedEtag etag) {
+    UserDefinedFileAttributeView view =
+        Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+    if (view == null) {
+      return;
+    }
+    String value = etag.size() + " " + etag.modified().toInstant() + " " + etag.etag();
+    try {
+      view.write(ETAG_ATTRIBUTE, StandardCharsets.UTF_8.encode(value));
+    } catch (IOException | UnsupportedOperationException e) {
+      log.debug("Cannot store the etag of {} with it", file, e);
+    }
+  }
+
+  private CachedEtag cachedEtagOrNull(Path file) {
+    try {
+      return cachedEtag(file);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private Path stagingDirectory(StorageLocation location) throws IOException {
+    Path internal = directory(location).resolve(INTERNAL_DIRECTORY);
+    return Files.createDirectories(internal.resolve("staging"));
+  }
+
+  private Path uploadsDirectory(StorageLocation location) {
+    return directory(location).resolve(INTERNAL_DIRECTORY).resolve("uploads");
+  }
+
+  /** Resolves a storage path to a file in its location's directory. */
+  private Path file(StorageLocation location, StoragePath path) {
+    Path directory = directory(location);
+    String relative = path.toString().replaceFirst("^/+", "");
+    Path file = directory.resolve(relative).normalize();
+    if (relative.isEmpty()
+        || !file.startsWith(directory)
+        || file.equals(directory)
+        || file.startsWith(directory.resolve(INTERNAL_DIRECTORY))) {
+      throw new IllegalArgumentException(
+          "Not a file path in storage " + location.uri() + ": " + path);
+    }
+    return file;
+  }
+
+  private Path directory(StorageLocation location) {
+    return locationDirectories.computeIfAbsent(location.uri(), this::resolveDirectory);
+  }
+
+  private Path resolveDirectory(String uri) {
+    if (uri.startsWith("file:")) {
+      return Path.of(URI.create(uri)).toAbsolutePath().normalize();
+    }
+    int separator = uri.indexOf("://");
+    String scheme = separator < 0 ? "local" : uri.substring(0, separator);
+    String rest = separator < 0 ? uri : uri.substring(separator + 3);
+    Path directory = rootDirectory.resolve(sanitize(scheme));
+    for (String segment : rest.split("/")) {
+      if (!segment.isEmpty() && !segment.equals(".") && !segment.equals("..")) {
+        directory = directory.resolve(sanitize(segment));
+      }
+    }
+    return directory;
+  }
+
+  private static String sanitize(String segment) {
+    return segment.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  private void forgetEtag(Path file) {
+    synchronized (etags) {
+      etags.remove(file);
+    }
+  }
+
+  private static RuntimeException failure(
+      String action, StorageLocation location, StoragePath path, IOException e) {
+    if (e instanceof NoSuchFileException) {
+      return new RuntimeException("File not found: " + path + " in storage " + location.uri(), e);
+    }
+    return new RuntimeException("Failed to " + action + " file: " + path, e);
+  }
+
+  private static void deleteRecursively(Path directory) {
+    try (Stream<Path> entries = Files.walk(directory)) {
+      for (Path entry : entries.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(entry);
+      }
+    } catch (NoSuchFileException e) {
+      // Already gone
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to delete: " + directory, e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface ChannelWriter {
+    void write(FileChannel out) throws IOException;
+  }
+
+  /** An etag with the attributes of the file it was computed from. */
+  private record CachedEtag(Object fileKey, long size, FileTime modified, String etag) {
+    boolean matches(BasicFileAttributes attributes) {
+      return Objects.equals(fileKey, attributes.fileKey())
+          && size == attributes.size()
+          && modified.equals(attributes.lastModifiedTime());
+    }
+  }
+}
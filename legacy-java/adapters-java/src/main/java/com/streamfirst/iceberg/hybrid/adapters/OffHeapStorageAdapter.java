@@ -0,0 +1,51 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+/**
+ * In-memory storage that keeps file content in direct memory outside the Java heap, for
+ * simulations and load tests that store more data than the heap should carry. The heap holds only
+ * the file index, so garbage collection stays flat as stored data grows. Memory is allocated from
+ * slabs reserved up to a fixed limit and freed for reuse when files are deleted or overwritten.
+ *
+ * <p>Buffers from {@link #readBuffer} and {@link #readRangeBuffer} are heap copies, since memory
+ * freed by a delete or overwrite is reused for other files. Streams from {@link #readFileStream}
+ * and channels from {@link #openChannel} read the stored memory directly and keep it from being
+ * freed until they are closed, so they must be closed. Parts of unfinished multipart uploads are
+ * kept on the heap.
+ */
+public class OffHeapStorageAdapter extends InMemoryStorageAdapter {
+
+  /** Default slab size, also the largest single piece of a file. */
+  public static final int DEFAULT_SLAB_BYTES = 4 * 1024 * 1024;
+
+  private final SlabContentStore slabs;
+
+  /**
+   * @param maxBytes most direct memory to reserve; writes fail once it is used up
+   */
+  public OffHeapStorageAdapter(long maxBytes) {
+    this(DEFAULT_SLAB_BYTES, maxBytes);
+  }
+
+  /**
+   * @param slabBytes size of each slab of direct memory reserved, a power of two
+   * @param maxBytes most direct memory to reserve; writes fail once it is used up
+   */
+  public OffHeapStorageAdapter(int slabBytes, long maxBytes) {
+    this(new SlabContentStore(slabBytes, maxBytes));
+  }
+
+  private OffHeapStorageAdapter(SlabContentStore slabs) {
+    super(slabs);
+    this.slabs = slabs;
+  }
+
+  /** Gets the direct memory reserved so far, in bytes. Reserved memory is never given back. */
+  public long getReservedBytes() {
+    return slabs.getReservedBytes();
+  }
+
+  /** Gets the reserved memory currently holding file content, in bytes. */
+  public long getUsedBytes() {
+    return slabs.getUsedBytes();
+  }
+}
@@ -0,0 +1,234 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps content in direct (off-heap) memory, so the heap holds only small chunk references however
+ * much is stored and garbage collection cost stays flat.
+ *
+ * <p>Memory is reserved from the operating system in fixed-size slabs, each carved into chunks of
+ * one power-of-two size class. Content is stored in the smallest chunk that fits it; content
+ * larger than a slab is split into slab-sized chunks plus one for the rest. Chunks freed when
+ * content is released go on their class's free list and are reused before any new slab is
+ * reserved. Slabs are never returned, and a slab carved for one class is not reused for another,
+ * so the reserved total is the high-water mark of each class's use.
+ */
+@Slf4j
+final class SlabContentStore implements ContentStore {
+
+  /** Smallest chunk size; smaller content wastes the rest of its chunk. */
+  private static final int MIN_CHUNK_BYTES = 256;
+
+  /** Heap buffer through which streamed content is copied into chunks. */
+  private static final int TRANSFER_BYTES = 64 * 1024;
+
+  private final int slabBytes;
+  private final long maxBytes;
+  private final List<Queue<ByteBuffer>> freeChunks = new ArrayList<>();
+  private final Object slabLock = new Object();
+  private long reservedBytes;
+  private final AtomicLong usedBytes = new AtomicLong();
+
+  /**
+   * @param slabBytes size of each slab reserved from the operating system, a power of two
+   * @param maxBytes most direct memory to reserve in total
+   */
+  SlabContentStore(int slabBytes, long maxBytes) {
+    if (slabBytes < MIN_CHUNK_BYTES || Integer.bitCount(slabBytes) != 1) {
+      throw new IllegalArgumentException(
+          "Slab size must be a power of two of at least " + MIN_CHUNK_BYTES + " bytes");
+    }
+    if (maxBytes < slabBytes) {
+      throw new IllegalArgumentException("Memory limit must allow at least one slab");
+    }
+    this.slabBytes = slabBytes;
+    this.maxBytes = maxBytes;
+    for (int size = MIN_CHUNK_BYTES; size <= slabBytes; size *= 2) {
+      freeChunks.add(new ConcurrentLinkedQueue<>());
+    }
+  }
+
+  @Override
+  public Content copyOf(ByteBuffer... data) {
+    long total = 0;
+    for (ByteBuffer part : data) {
+      total += part.remaining();
+    }
+    if (total > Integer.MAX_VALUE - 8) {
+      throw new RuntimeException("File too large for in-memory storage: " + total + " bytes");
+    }
+
+    // Fill chunks in order across the parts; each chunk's limit is the bytes it will hold
+    List<ByteBuffer> chunks = new ArrayList<>();
+    try {
+      long unwritten = total;
+      ByteBuffer chunk = null;
+      for (ByteBuffer part : data) {
+        ByteBuffer source = part.duplicate();
+        while (source.hasRemaining()) {
+          if (chunk == null || !chunk.hasRemaining()) {
+            chunk = allocate((int) Math.min(unwritten, slabBytes));
+            chunks.add(chunk);
+          }
+          int length = Math.min(chunk.remaining(), source.remaining());
+          chunk.put(chunk.position(), source, source.position(), length);
+          chunk.position(chunk.position() + length);
+          source.position(source.position() + length);
+          unwritten -= length;
+        }
+      }
+      if (chunks.isEmpty()) {
+        chunks.add(allocate(0));
+      }
+    } catch (RuntimeException e) {
+      chunks.forEach(this::free);
+      throw e;
+    }
+    chunks.forEach(ByteBuffer::flip);
+    return new SlabContent(chunks, (int) total);
+  }
+
+  @Override
+  public Content copyOf(InputStream data, MessageDigest digest) throws IOException {
+    // The size is not known up front, so fill slab-sized chunks and shrink the last at the end
+    List<ByteBuffer> chunks = new ArrayList<>();
+    byte[] transfer = new byte[TRANSFER_BYTES];
+    long total = 0;
+    try {
+      ByteBuffer chunk = null;
+      int read;
+      while ((read = data.read(transfer)) != -1) {
+        total += read;
+        if (total > Integer.MAX_VALUE - 8) {
+          throw new RuntimeException("File too large for in-memory storage");
+        }
+        digest.update(transfer, 0, read);
+        for (int position = 0; position < read; ) {
+          if (chunk == null || !chunk.hasRemaining()) {
+            chunk = allocate(slabBytes);
+            chunks.add(chunk);
+          }
+          int length = Math.min(chunk.remaining(), read - position);
+          chunk.put(transfer, position, length);
+          position += length;
+        }
+      }
+      if (chunk == null) {
+        chunks.add(allocate(0));
+      } else if (sizeClass(chunk.position()) < sizeClass(chunk.capacity())) {
+        ByteBuffer smaller = allocate(chunk.position());
+        smaller.put(chunk.flip());
+        free(chunk);
+        chunks.set(chunks.size() - 1, smaller);
+      }
+    } catch (IOException | RuntimeException e) {
+      chunks.forEach(this::free);
+      throw e;
+    }
+    chunks.forEach(ByteBuffer::flip);
+    return new SlabContent(chunks, (int) total);
+  }
+
+  /** Gets the direct memory reserved in slabs, in bytes. */
+  long getReservedBytes() {
+    synchronized (slabLock) {
+      return reservedBytes;
+    }
+  }
+
+  /** Gets the bytes of chunks holding content, including the unused tail of each chunk. */
+  long getUsedBytes() {
+    return usedBytes.get();
+  }
+
+  /** Takes a free chunk able to hold the given number of bytes, with its limit set to them. */
+  private ByteBuffer allocate(int length) {
+    int sizeClass = sizeClass(length);
+    Queue<ByteBuffer> free = freeChunks.get(sizeClass);
+    ByteBuffer chunk;
+    while ((chunk = free.poll()) == null) {
+      reserveSlab(sizeClass);
+    }
+    usedBytes.addAndGet(chunk.capacity());
+    chunk.clear().limit(length);
+    return chunk;
+  }
+
+  private void free(ByteBuffer chunk) {
+    usedBytes.addAndGet(-chunk.capacity());
+    freeChunks.get(sizeClass(chunk.capacity())).add(chunk);
+  }
+
+  /** Carves a new slab into chunks of a size class, unless another thread has just done so. */
+  private void reserveSlab(int sizeClass) {
+    synchronized (slabLock) {
+      Queue<ByteBuffer> free = freeChunks.get(sizeClass);
+      if (!free.isEmpty()) {
+        return;
+      }
+      if (reservedBytes + slabBytes > maxBytes) {
+        throw new RuntimeException(
+            "Off-heap storage is full: " + reservedBytes + " of " + maxBytes + " bytes reserved");
+      }
+      ByteBuffer slab = ByteBuffer.allocateDirect(slabBytes);
+      reservedBytes += slabBytes;
+      int chunkBytes = MIN_CHUNK_BYTES << sizeClass;
+      for (int offset = 0; offset < slabBytes; offset += chunkBytes) {
+        free.add(slab.slice(offset, chunkBytes));
+      }
+      log.debug("Reserved {} byte slab of {} byte chunks", slabBytes, chunkBytes);
+    }
+  }
+
+  private static int sizeClass(int length) {
+    int size = Math.max(length, MIN_CHUNK_BYTES);
+    int ceiling = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+    return Integer.numberOfTrailingZeros(ceiling) - Integer.numberOfTrailingZeros(MIN_CHUNK_BYTES);
+  }
+
+  /**
+   * Content in slab chunks. Buffers handed out are copies, since a view would show other content
+   * once the chunks are freed and reused.
+   */
+  private final class SlabContent extends ChunkedContent {
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    SlabContent(List<ByteBuffer> chunks, int size) {
+      super(chunks, slabBytes, size);
+    }
+
+    @Override
+    public ByteBuffer range(int offset, int length) {
+      return copyOfRange(offset, length);
+    }
+
+    @Override
+    public boolean retain() {
+      int current;
+      do {
+        current = references.get();
+        if (current == 0) {
+          return false;
+        }
+      } while (!references.compareAndSet(current, current + 1));
+      return true;
+    }
+
+    @Override
+    public void release() {
+      if (references.decrementAndGet() == 0) {
+        chunks().forEach(SlabContentStore.this::free);
+      }
+    }
+  }
+}
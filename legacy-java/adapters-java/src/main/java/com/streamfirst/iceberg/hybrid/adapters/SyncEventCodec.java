@@ -0,0 +1,92 @@
+package com.streamfirst.iceberg.hybrid.adapters;
+
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Binary encoding of sync events and dead-letter entries for the sync journal. */
+final class SyncEventCodec {
+
+  private SyncEventCodec() {}
+
+  static void writeEvent(DataOutput out, SyncEvent event) throws IOException {
+    out.writeUTF(event.getEventId().value());
+    out.writeUTF(event.getType().name());
+    out.writeUTF(event.getTableId().namespace());
+    out.writeUTF(event.getTableId().name());
+    out.writeUTF(event.getCommitId().value());
+    writeRegion(out, event.getSourceRegion());
+    writeRegion(out, event.getTargetRegion());
+    out.writeInt(event.getDataFiles().size());
+    for (StoragePath file : event.getDataFiles()) {
+      out.writeUTF(file.path());
+    }
+    out.writeUTF(event.getStatus().name());
+    out.writeInt(event.getAttempts());
+    writeInstant(out, event.getCreatedAt());
+    writeInstant(out, event.getUpdatedAt());
+  }
+
+  static SyncEvent readEvent(DataInput in) throws IOException {
+    EventId eventId = EventId.of(in.readUTF());
+    SyncEvent.Type type = SyncEvent.Type.valueOf(in.readUTF());
+    TableId tableId = new TableId(in.readUTF(), in.readUTF());
+    CommitId commitId = new CommitId(in.readUTF());
+    Region sourceRegion = readRegion(in);
+    Region targetRegion = readRegion(in);
+    int fileCount = in.readInt();
+    List<StoragePath> dataFiles = new ArrayList<>(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      dataFiles.add(StoragePath.of(in.readUTF()));
+    }
+    SyncEvent.Status status = SyncEvent.Status.valueOf(in.readUTF());
+    int attempts = in.readInt();
+    Instant createdAt = readInstant(in);
+    Instant updatedAt = readInstant(in);
+    return new SyncEvent(
+        eventId,
+        type,
+        tableId,
+        commitId,
+        sourceRegion,
+        targetRegion,
+        List.copyOf(dataFiles),
+        status,
+        attempts,
+        createdAt,
+        updatedAt);
+  }
+
+  static void writeDeadLetter(DataOutput out, DeadLetterEntry entry) throws IOException {
+    writeEvent(out, entry.event());
+    out.writeUTF(entry.reason());
+    writeInstant(out, entry.deadLetteredAt());
+  }
+
+  static DeadLetterEntry readDeadLetter(DataInput in) throws IOException {
+    SyncEvent event = readEvent(in);
+    return new DeadLetterEntry(event, in.readUTF(), readInstant(in));
+  }
+
+  private static void writeRegion(DataOutput out, Region region) throws IOException {
+    out.writeUTF(region.id());
+    out.writeUTF(region.displayName());
+  }
+
+  private static Region readRegion(DataInput in) throws IOException {
+    return new Region(in.readUTF(), in.readUTF());
+  }
+
+  private static void writeInstant(DataOutput out, Instant instant) throws IOException {
+    out.writeLong(instant.getEpochSecond());
+    out.writeInt(instant.getNano());
+  }
+
+  private static Instant readInstant(DataInput in) throws IOException {
+    return Instant.ofEpochSecond(in.readLong(), in.readInt());
+  }
+}
@@ -0,0 +1,320 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.Region;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Limits concurrent operations per (source, target) region pair, adjusting each limit from observed
+ * outcomes with an {@link AimdPolicy}. A pair whose copies succeed quickly gets more concurrency;
+ * failures or slow copies, which usually mean a saturated WAN link or an overloaded target store,
+ * cut it back.
+ *
+ * <p>Operators can pin a pair's limit for a maintenance window. While an override is active the
+ * limit does not adapt; a limit of zero pauses the pair. The override lapses on its own at the end
+ * of the window, and the adaptive limit resumes where it was.
+ *
+ * <p>When callers compete for a pair's slots, slots are granted by start-time fair queuing across
+ * {@link Flow flows} rather than first come, first served. Each flow is charged the bytes its
+ * operations actually moved, divided by its weight, so over time flows share the pair's throughput
+ * in proportion to their weights however many operations each has queued. A flow with nothing
+ * queued builds up no credit.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+  /** Cost charged up front for an operation on a pair before any sizes have been observed. */
+  private static final double INITIAL_BYTES_PER_OPERATION = 1024 * 1024;
+
+  /** Flows tracked per pair before idle ones are forgotten. */
+  private static final int MAX_IDLE_FLOWS = 1024;
+
+  /** Flow used by callers that do not ask for a share. */
+  public static final Flow DEFAULT_FLOW = new Flow("default", 1);
+
+  private final AimdPolicy policy;
+  private final Map<RegionPair, PairLimit> limits = new ConcurrentHashMap<>();
+
+  public AdaptiveConcurrencyLimiter(AimdPolicy policy) {
+    this.policy = policy;
+  }
+
+  /**
+   * Waits until the pair is below its limit and takes a slot for the default flow.
+   *
+   * @throws RuntimeException if interrupted while waiting
+   */
+  public Permit acquire(Region source, Region target) {
+    return acquire(source, target, DEFAULT_FLOW);
+  }
+
+  /**
+   * Waits until the pair is below its limit and it is the flow's turn, then takes a slot. The
+   * caller must report the outcome through the returned permit, which releases the slot.
+   *
+   * @throws RuntimeException if interrupted while waiting
+   */
+  public Permit acquire(Region source, Region target, Flow flow) {
+    return limit(source, target).acquire(flow);
+  }
+
+  /**
+   * Pins a pair's limit until the given time, e.g. to throttle or pause replication during
+   * maintenance on the target store.
+   *
+   * @param limit the fixed limit; zero pauses the pair
+   * @param until when the override lapses
+   */
+  public void overrideLimit(Region source, Region target, int limit, Instant until) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Override limit cannot be negative");
+    }
+    log.info("Overriding copy concurrency {} -> {} to {} until {}", source, target, limit, until);
+    limit(source, target).override(limit, until);
+  }
+
+  /** Ends a pair's override early and resumes adaptive limiting. */
+  public void clearOverride(Region source, Region target) {
+    log.info("Clearing copy concurrency override {} -> {}", source, target);
+    limit(source, target).override(null, null);
+  }
+
+  /** Gets the limit currently in force for a pair, including any override. */
+  public int getLimit(Region source, Region target) {
+    return limit(source, target).currentLimit();
+  }
+
+  /** Gets the number of operations in flight for a pair. */
+  public int getInFlight(Region source, Region target) {
+    return limit(source, target).inFlight();
+  }
+
+  /** Gets the limit in force for every pair that has been used. */
+  public Map<RegionPair, Integer> getLimits() {
+    Map<RegionPair, Integer> current = new HashMap<>();
+    limits.forEach((pair, limit) -> current.put(pair, limit.currentLimit()));
+    return current;
+  }
+
+  private PairLimit limit(Region source, Region target) {
+    return limits.computeIfAbsent(new RegionPair(source, target), PairLimit::new);
+  }
+
+  /**
+   * A stream of operations that shares a pair's slots with other flows, e.g. one table's copies.
+   *
+   * @param key identifies the flow; operations with equal keys are charged to the same flow
+   * @param weight relative share of the pair's throughput
+   */
+  public record Flow(@NonNull Object key, int weight) {
+    public Flow {
+      if (weight < 1) {
+        throw new IllegalArgumentException("Flow weight must be at least 1");
+      }
+    }
+  }
+
+  /**
+   * A slot taken from a pair's limit. Exactly one of the release methods should be called; later
+   * calls are ignored.
+   */
+  public static final class Permit {
+    private final PairLimit owner;
+    private final Flow flow;
+    private final double charge;
+    private final long acquiredNanos = System.nanoTime();
+    private boolean released;
+
+    private Permit(PairLimit owner, Flow flow, double charge) {
+      this.owner = owner;
+      this.flow = flow;
+      this.charge = charge;
+    }
+
+    /**
+     * Releases the slot after a successful operation, feeding its latency to the limit and
+     * charging the bytes it moved to its flow.
+     */
+    public void onSuccess(Duration latency, long bytes) {
+      release(Outcome.SUCCESS, latency, bytes);
+    }
+
+    /** Releases the slot after a failed operation, which counts as congestion. */
+    public void onFailure() {
+      release(Outcome.FAILURE, null, 0);
+    }
+
+    /**
+     * Releases the slot without adjusting the limit or charging the flow, e.g. when no data was
+     * moved.
+     */
+    public void onIgnore() {
+      release(Outcome.IGNORE, null, 0);
+    }
+
+    private void release(Outcome outcome, Duration latency, long bytes) {
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        released = true;
+      }
+      owner.release(this, outcome, latency, bytes);
+    }
+  }
+
+  private enum Outcome {
+    SUCCESS,
+    FAILURE,
+    IGNORE
+  }
+
+  /** An operation waiting for a slot, ordered by its flow's virtual start time. */
+  private record Waiter(double startTag, long sequence) {
+    static final Comparator<Waiter> ORDER =
+        Comparator.comparingDouble(Waiter::startTag).thenComparingLong(Waiter::sequence);
+  }
+
+  private final class PairLimit {
+    private final RegionPair pair;
+    private double limit = policy.initialLimit();
+    private int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+    private Integer overrideLimit;
+    private Instant overrideUntil;
+
+    // Fair queuing state: virtual time advances with the start tags of granted operations, and
+    // each flow's finish tag is where its next operation starts unless it has fallen behind
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Waiter.ORDER);
+    private final Map<Object, Double> finishTags = new HashMap<>();
+    private double virtualTime;
+    private long waiterSequence;
+    private double bytesPerOperation = INITIAL_BYTES_PER_OPERATION;
+
+    PairLimit(RegionPair pair) {
+      this.pair = pair;
+    }
+
+    synchronized Permit acquire(Flow flow) {
+      // Charge an estimate up front so a flow's queued operations interleave with other flows';
+      // the estimate is corrected with the actual size on release
+      double charge = bytesPerOperation;
+      double startTag = Math.max(virtualTime, finishTags.getOrDefault(flow.key(), 0.0));
+      finishTags.put(flow.key(), startTag + charge / flow.weight());
+      Waiter waiter = new Waiter(startTag, waiterSequence++);
+      waiters.add(waiter);
+
+      while (true) {
+        Instant now = Instant.now();
+        if (waiters.peek() == waiter && inFlight < effectiveLimit(now)) {
+          waiters.poll();
+          inFlight++;
+          virtualTime = Math.max(virtualTime, startTag);
+          forgetIdleFlows();
+          // The next waiter may fit under the limit too
+          notifyAll();
+          return new Permit(this, flow, charge);
+        }
+        try {
+          if (overrideUntil != null) {
+            // Wake up when the maintenance window ends, even if nothing is released
+            wait(Math.max(1, Duration.between(now, overrideUntil).toMillis()));
+          } else {
+            wait();
+          }
+        } catch (InterruptedException e) {
+          waiters.remove(waiter);
+          finishTags.computeIfPresent(flow.key(), (key, finish) -> finish - charge / flow.weight());
+          notifyAll();
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted waiting for copy slot " + pair, e);
+        }
+      }
+    }
+
+    synchronized void release(Permit permit, Outcome outcome, Duration latency, long bytes) {
+      int wasInFlight = inFlight--;
+      chargeFlow(permit, outcome, bytes);
+      if (!isOverridden(Instant.now())) {
+        boolean congested =
+            outcome == Outcome.FAILURE
+                || (outcome == Outcome.SUCCESS
+                    && latency.compareTo(policy.latencyThreshold()) > 0);
+        if (congested) {
+          // Only the first congestion signal from operations started before the last decrease
+          // counts, so one burst of errors backs off once rather than collapsing the limit
+          if (permit.acquiredNanos - lastDecreaseNanos >= 0) {
+            double previous = limit;
+            limit = policy.decrease(limit);
+            lastDecreaseNanos = System.nanoTime();
+            log.debug("Copy concurrency {} backed off {} -> {}", pair, previous, limit);
+          }
+        } else if (outcome == Outcome.SUCCESS && wasInFlight * 2 >= (int) limit) {
+          // Grow only while the limit is actually in use
+          limit = policy.increase(limit);
+        }
+      }
+      notifyAll();
+    }
+
+    /** Replaces a permit's estimated charge with what the operation actually cost. */
+    private void chargeFlow(Permit permit, Outcome outcome, long bytes) {
+      double actual;
+      if (outcome == Outcome.SUCCESS) {
+        actual = Math.max(bytes, 0);
+        bytesPerOperation = Math.max(1, bytesPerOperation * 0.9 + actual * 0.1);
+      } else if (outcome == Outcome.IGNORE) {
+        actual = 0;
+      } else {
+        // A failed attempt still used the link; keep the estimate
+        return;
+      }
+      double correction = (actual - permit.charge) / permit.flow.weight();
+      finishTags.computeIfPresent(permit.flow.key(), (key, finish) -> finish + correction);
+    }
+
+    /**
+     * Drops flows whose finish tag is not ahead of virtual time. Their next operation would start
+     * at the virtual time anyway, so forgetting them only bounds the map.
+     */
+    private void forgetIdleFlows() {
+      if (finishTags.size() > MAX_IDLE_FLOWS) {
+        finishTags.values().removeIf(finish -> finish <= virtualTime);
+      }
+    }
+
+    synchronized void override(Integer limit, Instant until) {
+      overrideLimit = limit;
+      overrideUntil = until;
+      notifyAll();
+    }
+
+    synchronized int currentLimit() {
+      return effectiveLimit(Instant.now());
+    }
+
+    synchronized int inFlight() {
+      return inFlight;
+    }
+
+    private int effectiveLimit(Instant now) {
+      return isOverridden(now) ? overrideLimit : (int) limit;
+    }
+
+    private boolean isOverridden(Instant now) {
+      if (overrideUntil != null && !now.isBefore(overrideUntil)) {
+        log.info("Copy concurrency override for {} expired", pair);
+        overrideLimit = null;
+        overrideUntil = null;
+      }
+      return overrideLimit != null;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Additive-increase, multiplicative-decrease tuning for an adaptive concurrency limit. Each
+ * successful operation that finishes within the latency threshold raises the limit by {@code
+ * 1/limit}, so the limit grows by about one per round of operations. A failure or a slow operation
+ * multiplies the limit by the backoff ratio, at most once per round.
+ *
+ * @param minLimit lowest limit the policy backs off to
+ * @param initialLimit limit a region pair starts with
+ * @param maxLimit highest limit the policy grows to
+ * @param backoffRatio factor applied to the limit on congestion, between 0 and 1
+ * @param latencyThreshold operations slower than this count as congestion
+ */
+public record AimdPolicy(
+    int minLimit, int initialLimit, int maxLimit, double backoffRatio, Duration latencyThreshold) {
+
+  public AimdPolicy {
+    Objects.requireNonNull(latencyThreshold, "Latency threshold cannot be null");
+    if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+      throw new IllegalArgumentException(
+          "Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+    }
+    if (!(backoffRatio > 0 && backoffRatio < 1)) {
+      throw new IllegalArgumentException("Backoff ratio must be between 0 and 1");
+    }
+  }
+
+  /**
+   * Starts at four (or {@code maxLimit} if lower), backs off by 30% and treats copies slower than
+   * thirty seconds as congestion.
+   */
+  public static AimdPolicy defaults(int maxLimit) {
+    return new AimdPolicy(1, Math.min(4, maxLimit), maxLimit, 0.7, Duration.ofSeconds(30));
+  }
+
+  /** Returns the limit after a successful operation within the latency threshold. */
+  public double increase(double limit) {
+    return Math.min(maxLimit, limit + 1 / limit);
+  }
+
+  /** Returns the limit after a failed or slow operation. */
+  public double decrease(double limit) {
+    return Math.max(minLimit, limit * backoffRatio);
+  }
+}
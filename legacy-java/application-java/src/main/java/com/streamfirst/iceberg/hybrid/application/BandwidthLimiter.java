@@ -0,0 +1,106 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.Region;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Token-bucket throughput limits per (source, target) region pair. A bucket refills at the pair's
+ * rate up to its burst size, and each copy takes its size in tokens before moving data. Pairs
+ * without a configured limit are not throttled.
+ *
+ * <p>Requests are served in arrival order. A copy larger than the tokens available takes them
+ * anyway, leaving the bucket in debt, and waits until the debt is repaid at the refill rate. Large
+ * files therefore neither starve behind small ones nor push the average rate over the limit.
+ *
+ * <p>A limit caps only the copies that take tokens from this instance. Every {@link FileCopyEngine}
+ * copying between the same regions must be given the same limiter, or each engine gets the full
+ * rate and their sum exceeds the cap.
+ */
+@Slf4j
+public class BandwidthLimiter {
+
+  private final Map<RegionPair, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+  /**
+   * Limits a pair's throughput, replacing any previous limit.
+   *
+   * @param bytesPerSecond sustained rate
+   * @param burstBytes tokens that can accumulate while the pair is idle
+   */
+  public void setLimit(Region source, Region target, long bytesPerSecond, long burstBytes) {
+    if (bytesPerSecond < 1) {
+      throw new IllegalArgumentException("Bandwidth limit must be positive");
+    }
+    if (burstBytes < 1) {
+      throw new IllegalArgumentException("Burst size must be positive");
+    }
+    log.info(
+        "Limiting replication {} -> {} to {} bytes/s (burst {})",
+        source,
+        target,
+        bytesPerSecond,
+        burstBytes);
+    buckets.put(new RegionPair(source, target), new TokenBucket(bytesPerSecond, burstBytes));
+  }
+
+  /** Removes a pair's limit. */
+  public void removeLimit(Region source, Region target) {
+    log.info("Removing replication bandwidth limit {} -> {}", source, target);
+    buckets.remove(new RegionPair(source, target));
+  }
+
+  /**
+   * Waits until the pair's bucket can pay for the given number of bytes.
+   *
+   * @throws RuntimeException if interrupted while waiting
+   */
+  public void acquire(Region source, Region target, long bytes) {
+    TokenBucket bucket = buckets.get(new RegionPair(source, target));
+    if (bucket == null || bytes <= 0) {
+      return;
+    }
+    long waitNanos = bucket.reserve(bytes);
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(
+            "Interrupted waiting for bandwidth " + source + " -> " + target, e);
+      }
+    }
+  }
+
+  /** Gets the rate limit of every limited pair, in bytes per second. */
+  public Map<RegionPair, Long> getLimits() {
+    Map<RegionPair, Long> limits = new HashMap<>();
+    buckets.forEach((pair, bucket) -> limits.put(pair, bucket.bytesPerSecond));
+    return limits;
+  }
+
+  private static final class TokenBucket {
+    private final long bytesPerSecond;
+    private final double burst;
+    private double tokens;
+    private long refilledNanos = System.nanoTime();
+
+    TokenBucket(long bytesPerSecond, long burstBytes) {
+      this.bytesPerSecond = bytesPerSecond;
+      this.burst = burstBytes;
+      this.tokens = burstBytes;
+    }
+
+    /** Takes tokens, possibly into debt, and returns how long to wait before using them. */
+    synchronized long reserve(long bytes) {
+      long now = System.nanoTime();
+      tokens = Math.min(burst, tokens + (now - refilledNanos) * bytesPerSecond / 1e9);
+      refilledNanos = now;
+      tokens -= bytes;
+      return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / bytesPerSecond);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+/**
+ * When and how to split a file copy into chunks. Files at or above the threshold are copied as a
+ * multipart upload of fixed-size chunks, which copy in parallel and are retried on their own; a
+ * failed or interrupted copy resumes with the chunks still missing at the target.
+ *
+ * @param thresholdBytes smallest file copied in chunks
+ * @param chunkBytes size of each chunk except the last
+ */
+public record ChunkingPolicy(long thresholdBytes, int chunkBytes) {
+
+  public ChunkingPolicy {
+    if (chunkBytes < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive");
+    }
+    if (thresholdBytes < chunkBytes) {
+      throw new IllegalArgumentException("Chunking threshold cannot be below the chunk size");
+    }
+  }
+
+  /** Copies files of 128 MiB or more in 32 MiB chunks. */
+  public static ChunkingPolicy defaults() {
+    return new ChunkingPolicy(128L * 1024 * 1024, 32 * 1024 * 1024);
+  }
+
+  /** Whether a file of the given size is copied in chunks. */
+  public boolean isChunked(long fileSize) {
+    return fileSize >= thresholdBytes;
+  }
+
+  /** Gets the number of chunks a file of the given size is split into. */
+  public int chunkCount(long fileSize) {
+    return (int) Math.max(1, (fileSize + chunkBytes - 1) / chunkBytes);
+  }
+}
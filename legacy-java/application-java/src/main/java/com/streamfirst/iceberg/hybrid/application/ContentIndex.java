@@ -0,0 +1,70 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.StorageLocation;
+import com.streamfirst.iceberg.hybrid.domain.StoragePath;
+import com.streamfirst.iceberg.hybrid.domain.StoredObject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded, process-local index of where content is known to be stored, by etag and storage
+ * location. Lets a copy find byte-identical content already at the target and copy it within the
+ * target store instead of across regions. Entries are hints: the file may have been deleted or
+ * replaced since it was indexed, so callers check it before relying on it. The least recently used
+ * entries are evicted first.
+ */
+public class ContentIndex {
+
+  private final int maxEntries;
+  private final Map<Key, StoredObject> entries;
+
+  /**
+   * Creates an empty index.
+   *
+   * @param maxEntries number of entries kept before the least recently used are evicted
+   */
+  public ContentIndex(int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Max entries must be at least 1");
+    }
+    this.maxEntries = maxEntries;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, StoredObject> eldest) {
+            return size() > ContentIndex.this.maxEntries;
+          }
+        };
+  }
+
+  /** Records that a location holds an object, replacing any other path for the same content. */
+  public synchronized void record(StorageLocation location, StoredObject object) {
+    entries.put(new Key(location.uri(), object.etag()), object);
+  }
+
+  /**
+   * Finds an object with the given content in a location.
+   *
+   * @return the last object indexed with the content, or empty if none is known
+   */
+  public synchronized Optional<StoredObject> find(StorageLocation location, String etag) {
+    return Optional.ofNullable(entries.get(new Key(location.uri(), etag)));
+  }
+
+  /** Forgets an entry found to be stale. */
+  public synchronized void forget(StorageLocation location, StoragePath path, String etag) {
+    Key key = new Key(location.uri(), etag);
+    StoredObject object = entries.get(key);
+    if (object != null && object.path().equals(path)) {
+      entries.remove(key);
+    }
+  }
+
+  /** Gets the number of indexed objects. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private record Key(String locationUri, String etag) {}
+}
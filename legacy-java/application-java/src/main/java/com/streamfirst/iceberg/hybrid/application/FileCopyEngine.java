@@ -0,0 +1,776 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.FileStat;
+import com.streamfirst.iceberg.hybrid.domain.StorageLocation;
+import com.streamfirst.iceberg.hybrid.domain.StoragePath;
+import com.streamfirst.iceberg.hybrid.domain.StoredObject;
+import com.streamfirst.iceberg.hybrid.ports.StoragePort;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Copies batches of files between storage locations concurrently, on a shared pool that bounds the
+ * number of files in flight. A second limit bounds the total size of files being copied at once,
+ * so a batch of large files cannot exhaust memory or bandwidth. Failed files are retried on their
+ * own with backoff, without holding up or failing the rest of the batch.
+ *
+ * <p>A file is skipped if the target path already has the same etag, and replaced if it has
+ * different content. Content found at another path of the target through the engine's {@link
+ * ContentIndex} is copied within the target store instead of across regions. Every copy is
+ * verified against the source etag without reading it back.
+ *
+ * <p>Files above the {@link ChunkingPolicy} threshold are copied as multipart uploads: their chunks
+ * are dispatched like files, so one large file can use many connections, and each chunk is retried
+ * on its own. Uploaded chunks stay at the target until the upload completes, so a copy that is
+ * cancelled or interrupted by a restart resumes from the chunks still missing rather than from the
+ * start, as long as the source is unchanged. The upload of a file that fails is aborted.
+ *
+ * <p>Within the pool, concurrency per (source, target) region pair is adapted by an {@link
+ * AdaptiveConcurrencyLimiter} from copy latency and errors, and throughput per pair can be capped
+ * with a {@link BandwidthLimiter}, which engines can share. Batches copied under different {@link
+ * AdaptiveConcurrencyLimiter.Flow flows} share a pair's slots in proportion to their weights, so a
+ * large backfill cannot crowd out real-time replication on the same link. One engine is meant to be
+ * shared by all data syncs in a process, so its limits apply to all of them together.
+ */
+@Slf4j
+public class FileCopyEngine implements AutoCloseable {
+
+  /** Objects remembered for deduplication. */
+  private static final int CONTENT_INDEX_ENTRIES = 100_000;
+
+  private final StoragePort storagePort;
+  private final RetryPolicy retryPolicy;
+  private final ChunkingPolicy chunkingPolicy;
+  private final ExecutorService executor;
+  private final ByteBudget inFlightBytes;
+  private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+  private final BandwidthLimiter bandwidthLimiter;
+  private final ContentIndex contentIndex = new ContentIndex(CONTENT_INDEX_ENTRIES);
+
+  /**
+   * Creates an engine with its own pool of daemon threads.
+   *
+   * @param storagePort storage to copy within
+   * @param maxConcurrentFiles maximum number of files checked or copied at once
+   * @param maxInFlightBytes maximum total size of files being copied at once; a single larger file
+   *     is copied on its own
+   * @param retryPolicy attempts and backoff for each file
+   */
+  public FileCopyEngine(
+      StoragePort storagePort,
+      int maxConcurrentFiles,
+      long maxInFlightBytes,
+      RetryPolicy retryPolicy) {
+    this(
+        storagePort,
+        maxConcurrentFiles,
+        maxInFlightBytes,
+        retryPolicy,
+        new AdaptiveConcurrencyLimiter(AimdPolicy.defaults(maxConcurrentFiles)));
+  }
+
+  /**
+   * Creates an engine with its own pool of daemon threads and the given per-region-pair limiter.
+   * The pool size caps concurrency across all pairs; the limiter adapts it for each pair.
+   */
+  public FileCopyEngine(
+      StoragePort storagePort,
+      int maxConcurrentFiles,
+      long maxInFlightBytes,
+      RetryPolicy retryPolicy,
+      AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    this(
+        storagePort,
+        maxConcurrentFiles,
+        maxInFlightBytes,
+        retryPolicy,
+        concurrencyLimiter,
+        ChunkingPolicy.defaults());
+  }
+
+  /**
+   * Creates an engine with its own pool of daemon threads, the given per-region-pair limiter and
+   * the given chunking of large files. Each chunk counts as a file towards the concurrency limits.
+   */
+  public FileCopyEngine(
+      StoragePort storagePort,
+      int maxConcurrentFiles,
+      long maxInFlightBytes,
+      RetryPolicy retryPolicy,
+      AdaptiveConcurrencyLimiter concurrencyLimiter,
+      ChunkingPolicy chunkingPolicy) {
+    this(
+        storagePort,
+        maxConcurrentFiles,
+        maxInFlightBytes,
+        retryPolicy,
+        concurrencyLimiter,
+        chunkingPolicy,
+        new BandwidthLimiter());
+  }
+
+  /**
+   * Creates an engine with its own pool of daemon threads that takes its throughput from the given
+   * bandwidth limiter. A pair's cap holds only across engines that share one limiter, so every
+   * engine copying between the same regions must be given the same instance.
+   */
+  public FileCopyEngine(
+      StoragePort storagePort,
+      int maxConcurrentFiles,
+      long maxInFlightBytes,
+      RetryPolicy retryPolicy,
+      AdaptiveConcurrencyLimiter concurrencyLimiter,
+      ChunkingPolicy chunkingPolicy,
+      @NonNull BandwidthLimiter bandwidthLimiter) {
+    if (maxConcurrentFiles < 1) {
+      throw new IllegalArgumentException("Max concurrent files must be at least 1");
+    }
+    if (maxInFlightBytes < 1) {
+      throw new IllegalArgumentException("Max in-flight bytes must be positive");
+    }
+    this.storagePort = storagePort;
+    this.retryPolicy = retryPolicy;
+    this.chunkingPolicy = chunkingPolicy;
+    this.inFlightBytes = new ByteBudget(maxInFlightBytes);
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.bandwidthLimiter = bandwidthLimiter;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            maxConcurrentFiles,
+            runnable -> {
+              Thread thread = new Thread(runnable, "file-copy-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Creates an engine copying up to 16 files and 256 MiB at once, with 3 attempts per file,
+   * adaptive concurrency per region pair and default chunking of large files.
+   */
+  public static FileCopyEngine withDefaults(StoragePort storagePort) {
+    return new FileCopyEngine(
+        storagePort,
+        16,
+        256L * 1024 * 1024,
+        new RetryPolicy(3, Duration.ofMillis(200), Duration.ofSeconds(5)));
+  }
+
+  /**
+   * Copies files that do not yet exist at the target and waits for the whole batch.
+   *
+   * @param source the storage to copy from
+   * @param target the storage to copy to
+   * @param files the files to copy
+   * @return what was copied, skipped and failed
+   */
+  public CopyReport copy(StorageLocation source, StorageLocation target, List<CopyRequest> files) {
+    return copy(source, target, files, () -> true);
+  }
+
+  /**
+   * Copies files that do not yet exist at the target and waits for the whole batch. The check is
+   * called on the calling thread before each file attempt; once it returns false, files that have
+   * not started are cancelled.
+   *
+   * @param source the storage to copy from
+   * @param target the storage to copy to
+   * @param files the files to copy
+   * @param shouldContinue check whether the batch is still wanted
+   * @return what was copied, skipped, failed and cancelled
+   */
+  public CopyReport copy(
+      StorageLocation source,
+      StorageLocation target,
+      List<CopyRequest> files,
+      BooleanSupplier shouldContinue) {
+    return copy(source, target, files, shouldContinue, AdaptiveConcurrencyLimiter.DEFAULT_FLOW);
+  }
+
+  /**
+   * Copies files that do not yet exist at the target as part of a flow and waits for the whole
+   * batch. The flow's weight sets its share of the region pair when other batches compete for it.
+   *
+   * @param source the storage to copy from
+   * @param target the storage to copy to
+   * @param files the files to copy
+   * @param shouldContinue check whether the batch is still wanted
+   * @param flow the flow to charge the copies to, e.g. the table being replicated
+   * @return what was copied, skipped, failed and cancelled
+   */
+  public CopyReport copy(
+      StorageLocation source,
+      StorageLocation target,
+      List<CopyRequest> files,
+      BooleanSupplier shouldContinue,
+      AdaptiveConcurrencyLimiter.Flow flow) {
+    CopyRun run = new CopyRun(source, target, files.size());
+    for (CopyRequest request : skipUpToDate(run, files)) {
+      run.ready.add(new Attempt(request, 1));
+    }
+
+    // Dispatch from the calling thread, so that waiting on one region pair's concurrency limit
+    // never ties up pool threads that copies for other pairs could use
+    Attempt attempt;
+    while ((attempt = run.nextAttempt()) != null) {
+      if (attempt.upload() != null && attempt.upload().isSettled()) {
+        // The rest of this file's chunks are moot once it has failed or been cancelled
+        continue;
+      }
+      if (!shouldContinue.getAsBoolean()) {
+        if (attempt.upload() == null || attempt.upload().settle()) {
+          run.filesCancelled.incrementAndGet();
+          run.finish();
+        }
+        continue;
+      }
+      AdaptiveConcurrencyLimiter.Permit permit =
+          concurrencyLimiter.acquire(source.region(), target.region(), flow);
+      Attempt dispatched = attempt;
+      try {
+        executor.execute(() -> runAttempt(run, dispatched, permit));
+      } catch (RejectedExecutionException e) {
+        permit.onIgnore();
+        throw new IllegalStateException("File copy engine is closed", e);
+      }
+    }
+
+    CopyReport report = run.report();
+    log.debug(
+        "Copied {} files ({} bytes), skipped {}, failed {} from {} to {} in {} ms",
+        report.filesCopied(),
+        report.bytesCopied(),
+        report.filesSkipped(),
+        report.failedFiles().size(),
+        source.region(),
+        target.region(),
+        report.elapsed().toMillis());
+    return report;
+  }
+
+  /**
+   * Skips files whose content is already at the target, found with one batch lookup per side
+   * rather than one per file, so they never wait for a copy slot. Returns the files still to copy;
+   * if the lookup fails, every file is left to the per-file check.
+   */
+  private List<CopyRequest> skipUpToDate(CopyRun run, List<CopyRequest> files) {
+    Map<StoragePath, FileStat> existing;
+    Map<StoragePath, FileStat> sources;
+    try {
+      existing = storagePort.statAll(run.target, files.stream().map(CopyRequest::target).toList());
+      // Only files already at the target can be skipped, so the source side is usually small
+      sources =
+          existing.isEmpty()
+              ? Map.of()
+              : storagePort.statAll(
+                  run.source,
+                  files.stream()
+                      .filter(request -> existing.containsKey(request.target()))
+                      .map(CopyRequest::source)
+                      .toList());
+    } catch (RuntimeException e) {
+      log.debug("Batch lookup failed, checking files one at a time: {}", e.getMessage());
+      return files;
+    }
+
+    List<CopyRequest> remaining = new ArrayList<>();
+    for (CopyRequest request : files) {
+      FileStat target = existing.get(request.target());
+      FileStat source = sources.get(request.source());
+      if (target != null && source != null && target.object().hasSameContent(source.object())) {
+        contentIndex.record(run.target, target.object());
+        run.filesSkipped.incrementAndGet();
+        run.finish();
+      } else {
+        remaining.add(request);
+      }
+    }
+    return remaining;
+  }
+
+  /**
+   * Runs one attempt at a file or chunk on a pool thread, reports its outcome to the concurrency
+   * limiter and queues the next attempt after a backoff if it failed. An error fails the file
+   * without a retry; either way the file is settled, so the dispatcher never waits on it.
+   */
+  private void runAttempt(CopyRun run, Attempt attempt, AdaptiveConcurrencyLimiter.Permit permit) {
+    try {
+      if (attempt.upload() == null) {
+        copyFile(run, attempt.request(), permit);
+      } else {
+        copyChunk(run, attempt, permit);
+      }
+    } catch (RuntimeException e) {
+      permit.onFailure();
+      retryOrFail(run, attempt, e);
+    } catch (Error e) {
+      permit.onFailure();
+      log.error("Copy of {} failed with an error, not retrying", attempt, e);
+      fail(run, attempt.upload(), attempt.request(), String.valueOf(e));
+      throw e;
+    }
+  }
+
+  private void retryOrFail(CopyRun run, Attempt attempt, RuntimeException e) {
+    CopyRequest request = attempt.request();
+    if (retryPolicy.isExhausted(attempt.number())) {
+      log.warn("Giving up on copying {} after {} attempts", attempt, attempt.number());
+      fail(run, attempt.upload(), request, String.valueOf(e.getMessage()));
+      return;
+    }
+    Duration delay = retryPolicy.backoff(attempt.number(), ThreadLocalRandom.current());
+    log.debug(
+        "Copy of {} failed (attempt {}), retrying in {} ms: {}",
+        attempt,
+        attempt.number(),
+        delay.toMillis(),
+        e.getMessage());
+    CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS)
+        .execute(() -> run.ready.add(attempt.next()));
+  }
+
+  /**
+   * Records a file as failed; for a chunked file, only the first failing chunk does, and aborts the
+   * file's upload so that its chunks are not left at the target.
+   */
+  private void fail(CopyRun run, ChunkedCopy upload, CopyRequest request, String error) {
+    if (upload == null || upload.settle()) {
+      if (upload != null) {
+        abortUpload(run, request, upload);
+      }
+      run.failedFiles.put(request.source(), error);
+      run.finish();
+    }
+  }
+
+  private void abortUpload(CopyRun run, CopyRequest request, ChunkedCopy upload) {
+    try {
+      storagePort.abortMultipartUpload(run.target, request.target(), upload.uploadId);
+      log.info("Aborted upload {} of {}", upload.uploadId, request.target());
+    } catch (RuntimeException e) {
+      log.warn("Failed to abort upload {} of {}", upload.uploadId, request.target(), e);
+    }
+  }
+
+  /**
+   * Copies a file unless identical content is already at the target path. Identical content
+   * elsewhere at the target is copied within the target store; a file large enough to be copied in
+   * chunks has its chunks queued.
+   */
+  private void copyFile(
+      CopyRun run, CopyRequest request, AdaptiveConcurrencyLimiter.Permit permit) {
+    StoredObject source =
+        storagePort
+            .getObjectInfo(run.source, request.source())
+            .orElseThrow(() -> new RuntimeException("File not found: " + request.source()));
+    Optional<StoredObject> existing = storagePort.getObjectInfo(run.target, request.target());
+    if (existing.isPresent()) {
+      if (existing.get().hasSameContent(source)) {
+        permit.onIgnore();
+        contentIndex.record(run.target, existing.get());
+        run.filesSkipped.incrementAndGet();
+        run.finish();
+        return;
+      }
+      // Most likely left behind by an interrupted or corrupted copy
+      log.warn("Replacing {} at target: content differs from source", request.target());
+    }
+
+    if (copyDuplicate(run, request, source)) {
+      permit.onIgnore();
+      run.filesDeduplicated.incrementAndGet();
+      run.finish();
+      return;
+    }
+
+    long size = source.size();
+    if (chunkingPolicy.isChunked(size)) {
+      permit.onIgnore();
+      startChunkedCopy(run, request, source);
+      return;
+    }
+
+    long reserved = inFlightBytes.acquire(size);
+    long started;
+    try {
+      bandwidthLimiter.acquire(run.source.region(), run.target.region(), size);
+      // Time only the copy itself, so throttling does not look like congestion
+      started = System.nanoTime();
+      storagePort.copyFile(run.source, request.source(), run.target, request.target());
+    } finally {
+      inFlightBytes.release(reserved);
+    }
+    permit.onSuccess(Duration.ofNanos(System.nanoTime() - started), size);
+    verifyCopy(run, request, source);
+    run.filesCopied.incrementAndGet();
+    run.bytesCopied.addAndGet(size);
+    run.finish();
+  }
+
+  /**
+   * Copies content already indexed at the target from there, if it is still in place. Returns
+   * false if no usable duplicate is known.
+   */
+  private boolean copyDuplicate(CopyRun run, CopyRequest request, StoredObject source) {
+    Optional<StoredObject> indexed = contentIndex.find(run.target, source.etag());
+    if (indexed.isEmpty() || indexed.get().path().equals(request.target())) {
+      return false;
+    }
+    StoragePath duplicate = indexed.get().path();
+    boolean stillThere =
+        storagePort
+            .getObjectInfo(run.target, duplicate)
+            .filter(object -> object.hasSameContent(source))
+            .isPresent();
+    if (!stillThere) {
+      contentIndex.forget(run.target, duplicate, source.etag());
+      return false;
+    }
+
+    log.debug("Copying {} from identical {} within target", request.target(), duplicate);
+    storagePort.copyFile(run.target, duplicate, run.target, request.target());
+    verifyCopy(run, request, source);
+    return true;
+  }
+
+  /**
+   * Checks a completed copy against the source by etag, without reading it back, and indexes it.
+   *
+   * @throws IllegalStateException if the target does not match the source
+   */
+  private void verifyCopy(CopyRun run, CopyRequest request, StoredObject source) {
+    StoredObject copied =
+        storagePort
+            .getObjectInfo(run.target, request.target())
+            .filter(object -> object.hasSameContent(source))
+            .orElseThrow(
+                () ->
+                    new IllegalStateException(
+                        "Copy of " + request.source() + " does not match the source"));
+    contentIndex.record(run.target, copied);
+  }
+
+  /**
+   * Resumes the target's unfinished upload of the file if there is one for the same source content,
+   * or starts a new upload tagged with the source etag, and queues the chunks it is missing.
+   * Uploads started for other content are aborted, since their chunks can never be used.
+   */
+  private void startChunkedCopy(CopyRun run, CopyRequest request, StoredObject source) {
+    String uploadId = null;
+    Map<Integer, Long> uploaded = Map.of();
+    for (String candidate : storagePort.listMultipartUploads(run.target, request.target())) {
+      Optional<String> tag =
+          storagePort.getMultipartUploadTag(run.target, request.target(), candidate);
+      if (tag.isPresent() && tag.get().equals(source.etag())) {
+        if (uploadId == null) {
+          uploadId = candidate;
+          uploaded = storagePort.listUploadedParts(run.target, request.target(), uploadId);
+        }
+      } else {
+        log.info(
+            "Aborting upload {} of {}: started for other content", candidate, request.target());
+        storagePort.abortMultipartUpload(run.target, request.target(), candidate);
+      }
+    }
+    if (uploadId == null) {
+      uploadId = storagePort.createMultipartUpload(run.target, request.target(), source.etag());
+    }
+
+    ChunkedCopy upload = new ChunkedCopy(uploadId, source, chunkingPolicy);
+    // A chunk of the wrong size was cut with a different chunk size; upload it again
+    List<Integer> missing = new ArrayList<>();
+    for (int part = 1; part <= upload.partCount; part++) {
+      Long uploadedSize = uploaded.get(part);
+      if (uploadedSize == null || uploadedSize != upload.partSize(part)) {
+        missing.add(part);
+      }
+    }
+    if (missing.size() < upload.partCount) {
+      log.info(
+          "Resuming upload {} of {}: {} of {} chunks already copied",
+          uploadId,
+          request.target(),
+          upload.partCount - missing.size(),
+          upload.partCount);
+    }
+
+    upload.remainingParts.set(missing.size());
+    if (missing.isEmpty()) {
+      completeChunkedCopy(run, request, upload);
+      return;
+    }
+    missing.forEach(part -> run.ready.add(new Attempt(request, 1, upload, part)));
+  }
+
+  /** Copies one chunk of a file and completes the file's upload after its last chunk. */
+  private void copyChunk(CopyRun run, Attempt attempt, AdaptiveConcurrencyLimiter.Permit permit) {
+    CopyRequest request = attempt.request();
+    ChunkedCopy upload = attempt.upload();
+    int length = upload.partSize(attempt.part());
+
+    long reserved = inFlightBytes.acquire(length);
+    long started;
+    try {
+      bandwidthLimiter.acquire(run.source.region(), run.target.region(), length);
+      started = System.nanoTime();
+      byte[] chunk =
+          storagePort.readRange(
+              run.source, request.source(), upload.partOffset(attempt.part()), length);
+      if (chunk.length != length) {
+        throw new IllegalStateException(
+            "Source file " + request.source() + " changed size during copy");
+      }
+      storagePort.uploadPart(run.target, request.target(), upload.uploadId, attempt.part(), chunk);
+    } finally {
+      inFlightBytes.release(reserved);
+    }
+    permit.onSuccess(Duration.ofNanos(System.nanoTime() - started), length);
+    run.bytesCopied.addAndGet(length);
+
+    if (upload.remainingParts.decrementAndGet() == 0) {
+      completeChunkedCopy(run, request, upload);
+    }
+  }
+
+  /**
+   * Joins a file's uploaded chunks and verifies the result. A failure here fails the file without
+   * retrying its chunks; the next copy of the file replaces a completed file that does not match.
+   */
+  private void completeChunkedCopy(CopyRun run, CopyRequest request, ChunkedCopy upload) {
+    try {
+      storagePort.completeMultipartUpload(
+          run.target, request.target(), upload.uploadId, upload.partCount);
+      verifyCopy(run, request, upload.source);
+    } catch (RuntimeException e) {
+      log.warn("Failed to complete upload {} of {}", upload.uploadId, request.target(), e);
+      fail(run, upload, request, String.valueOf(e.getMessage()));
+      return;
+    }
+    if (upload.settle()) {
+      run.filesCopied.incrementAndGet();
+      run.finish();
+    }
+  }
+
+  /** Gets the limiter that adapts copy concurrency per region pair. */
+  public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+    return concurrencyLimiter;
+  }
+
+  /** Gets the index of content known to be at each target, used to deduplicate copies. */
+  public ContentIndex getContentIndex() {
+    return contentIndex;
+  }
+
+  /** Gets the limiter that caps copy throughput per region pair. */
+  public BandwidthLimiter getBandwidthLimiter() {
+    return bandwidthLimiter;
+  }
+
+  /** Stops the engine's threads. Must not be called while a copy is running. */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /** A file to copy and where to put it. */
+  public record CopyRequest(@NonNull StoragePath source, @NonNull StoragePath target) {}
+
+  /**
+   * Outcome of a batch copy. Files whose content was already at the target path count as skipped,
+   * and files copied from identical content elsewhere at the target as deduplicated; failed files
+   * map to the error of their last attempt.
+   */
+  public record CopyReport(
+      int filesCopied,
+      int filesSkipped,
+      int filesDeduplicated,
+      int filesCancelled,
+      Map<StoragePath, String> failedFiles,
+      long bytesCopied,
+      Duration elapsed) {
+
+    /** Whether every file is now present at the target. */
+    public boolean isComplete() {
+      return failedFiles.isEmpty() && filesCancelled == 0;
+    }
+
+    /** Files copied or found already present, per second of wall time. */
+    public double filesPerSecond() {
+      return perSecond(filesCopied + filesSkipped + filesDeduplicated);
+    }
+
+    /** Bytes copied per second of wall time. */
+    public double bytesPerSecond() {
+      return perSecond(bytesCopied);
+    }
+
+    private double perSecond(long count) {
+      long nanos = elapsed.toNanos();
+      return nanos == 0 ? 0 : count * 1_000_000_000.0 / nanos;
+    }
+  }
+
+  /**
+   * One attempt at copying a file, or one of its chunks if {@code upload} is set; attempts are
+   * numbered from 1.
+   */
+  private record Attempt(CopyRequest request, int number, ChunkedCopy upload, int part) {
+    Attempt(CopyRequest request, int number) {
+      this(request, number, null, 0);
+    }
+
+    Attempt next() {
+      return new Attempt(request, number + 1, upload, part);
+    }
+
+    @Override
+    public String toString() {
+      String file = String.valueOf(request.source());
+      return upload == null ? file : file + " chunk " + part + "/" + upload.partCount;
+    }
+  }
+
+  /** Progress of a file copied in chunks. */
+  private static final class ChunkedCopy {
+    final String uploadId;
+    final StoredObject source;
+    final long size;
+    final int chunkBytes;
+    final int partCount;
+    final AtomicInteger remainingParts = new AtomicInteger();
+    private final AtomicBoolean settled = new AtomicBoolean();
+
+    ChunkedCopy(String uploadId, StoredObject source, ChunkingPolicy policy) {
+      this.uploadId = uploadId;
+      this.source = source;
+      this.size = source.size();
+      this.chunkBytes = policy.chunkBytes();
+      this.partCount = policy.chunkCount(size);
+    }
+
+    long partOffset(int part) {
+      return (long) (part - 1) * chunkBytes;
+    }
+
+    int partSize(int part) {
+      return (int) Math.min(chunkBytes, size - partOffset(part));
+    }
+
+    /** Marks the file as copied, failed or cancelled; returns true for the first caller only. */
+    boolean settle() {
+      return settled.compareAndSet(false, true);
+    }
+
+    boolean isSettled() {
+      return settled.get();
+    }
+  }
+
+  /** Progress of one call to {@link #copy}, updated from the pool threads. */
+  private static final class CopyRun {
+    private static final Attempt FINISHED = new Attempt(null, 0);
+
+    final StorageLocation source;
+    final StorageLocation target;
+    final BlockingQueue<Attempt> ready = new LinkedBlockingQueue<>();
+    final AtomicInteger unfinishedFiles;
+    final long startNanos = System.nanoTime();
+    final AtomicInteger filesCopied = new AtomicInteger();
+    final AtomicInteger filesSkipped = new AtomicInteger();
+    final AtomicInteger filesDeduplicated = new AtomicInteger();
+    final AtomicInteger filesCancelled = new AtomicInteger();
+    final AtomicLong bytesCopied = new AtomicLong();
+    final Map<StoragePath, String> failedFiles = new ConcurrentHashMap<>();
+
+    CopyRun(StorageLocation source, StorageLocation target, int fileCount) {
+      this.source = source;
+      this.target = target;
+      this.unfinishedFiles = new AtomicInteger(fileCount);
+      if (fileCount == 0) {
+        ready.add(FINISHED);
+      }
+    }
+
+    /** Waits for the next attempt to dispatch; returns null once every file is finished. */
+    Attempt nextAttempt() {
+      try {
+        Attempt attempt = ready.take();
+        return attempt == FINISHED ? null : attempt;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while copying files", e);
+      }
+    }
+
+    /** Marks a file as copied, skipped, failed or cancelled. */
+    void finish() {
+      if (unfinishedFiles.decrementAndGet() == 0) {
+        ready.add(FINISHED);
+      }
+    }
+
+    CopyReport report() {
+      return new CopyReport(
+          filesCopied.get(),
+          filesSkipped.get(),
+          filesDeduplicated.get(),
+          filesCancelled.get(),
+          Map.copyOf(failedFiles),
+          bytesCopied.get(),
+          Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+  }
+
+  /**
+   * Blocking budget of bytes in flight. A file larger than the whole budget waits until it can
+   * take all of it.
+   */
+  private static final class ByteBudget {
+    private final long capacity;
+    private long available;
+
+    ByteBudget(long capacity) {
+      this.capacity = capacity;
+      this.available = capacity;
+    }
+
+    synchronized long acquire(long bytes) {
+      long reserved = Math.min(Math.max(bytes, 0), capacity);
+      while (available < reserved) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted waiting to copy " + bytes + " bytes", e);
+        }
+      }
+      available -= reserved;
+      return reserved;
+    }
+
+    synchronized void release(long reserved) {
+      available += reserved;
+      notifyAll();
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.*;
+import com.streamfirst.iceberg.hybrid.ports.EventPort;
+import com.streamfirst.iceberg.hybrid.ports.SyncPort;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Predicate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sync port decorator that publishes a {@link SyncEventsPending} notice whenever an operation makes
+ * events pending: new events, retries, redrives and expired claims. {@link SyncDaemon}s listen for
+ * the notices to start replicating as soon as there is work.
+ *
+ * <p>Notices are best effort. A notice that cannot be published is logged and dropped, and the
+ * operation still succeeds; daemons pick the events up at their next idle poll.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class NotifyingSyncPort implements SyncPort {
+
+  private final SyncPort delegate;
+  private final EventPort eventPort;
+
+  @Override
+  public void publishSyncEvent(SyncEvent event) {
+    delegate.publishSyncEvent(event);
+    notifyPending(event.getTargetRegion());
+  }
+
+  @Override
+  public List<SyncEvent> getSyncEvents(Predicate<SyncEvent> predicate) {
+    return delegate.getSyncEvents(predicate);
+  }
+
+  @Override
+  public List<SyncEvent> getPendingEvents(Region targetRegion) {
+    return delegate.getPendingEvents(targetRegion);
+  }
+
+  @Override
+  public List<SyncEvent> getPendingEvents(Region targetRegion, int maxEvents) {
+    return delegate.getPendingEvents(targetRegion, maxEvents);
+  }
+
+  @Override
+  public List<SyncEvent> claimPendingEvents(
+      Region targetRegion, String workerId, int maxEvents, Duration visibilityTimeout) {
+    return delegate.claimPendingEvents(targetRegion, workerId, maxEvents, visibilityTimeout);
+  }
+
+  @Override
+  public boolean renewClaim(EventId eventId, String workerId, Duration visibilityTimeout) {
+    return delegate.renewClaim(eventId, workerId, visibilityTimeout);
+  }
+
+  @Override
+  public boolean completeClaim(EventId eventId, String workerId, SyncEvent.Status status) {
+    boolean completed = delegate.completeClaim(eventId, workerId, status);
+    if (completed && status == SyncEvent.Status.PENDING) {
+      notifyPending(null);
+    }
+    return completed;
+  }
+
+  @Override
+  public int releaseExpiredClaims(Region targetRegion) {
+    int released = delegate.releaseExpiredClaims(targetRegion);
+    if (released > 0) {
+      notifyPending(targetRegion);
+    }
+    return released;
+  }
+
+  @Override
+  public void updateEventStatus(EventId eventId, SyncEvent.Status status) {
+    delegate.updateEventStatus(eventId, status);
+    if (status == SyncEvent.Status.PENDING) {
+      notifyPending(null);
+    }
+  }
+
+  @Override
+  public SyncEvent createMetadataSyncEvent(TableMetadata metadata, Region targetRegion) {
+    return delegate.createMetadataSyncEvent(metadata, targetRegion);
+  }
+
+  @Override
+  public SyncEvent createDataSyncEvent(
+      TableMetadata metadata, List<StoragePath> dataFiles, Region targetRegion) {
+    return delegate.createDataSyncEvent(metadata, dataFiles, targetRegion);
+  }
+
+  @Override
+  public List<SyncEvent> getEventHistory(TableId tableId, Region region) {
+    return delegate.getEventHistory(tableId, region);
+  }
+
+  @Override
+  public List<SyncEvent> getFailedEvents(Region region) {
+    return delegate.getFailedEvents(region);
+  }
+
+  @Override
+  public List<SyncEvent> getEventsByStatus(
+      Region region, SyncEvent.Status status, int maxEvents) {
+    return delegate.getEventsByStatus(region, status, maxEvents);
+  }
+
+  @Override
+  public List<SyncEvent> getEventsCreatedBetween(Instant from, Instant to, int maxEvents) {
+    return delegate.getEventsCreatedBetween(from, to, maxEvents);
+  }
+
+  @Override
+  public int purgeCompletedEvents(Instant finishedBefore) {
+    return delegate.purgeCompletedEvents(finishedBefore);
+  }
+
+  @Override
+  public void retryFailedEvent(EventId eventId) {
+    delegate.retryFailedEvent(eventId);
+    // The port does not say which region the event belongs to
+    notifyPending(null);
+  }
+
+  @Override
+  public void deadLetterEvent(EventId eventId, String reason) {
+    delegate.deadLetterEvent(eventId, reason);
+  }
+
+  @Override
+  public List<DeadLetterEntry> getDeadLetterEvents(Region region) {
+    return delegate.getDeadLetterEvents(region);
+  }
+
+  @Override
+  public void redriveDeadLetterEvent(EventId eventId) {
+    delegate.redriveDeadLetterEvent(eventId);
+    notifyPending(null);
+  }
+
+  private void notifyPending(Region targetRegion) {
+    try {
+      eventPort.publishAsync(SyncEventsPending.TOPIC, new SyncEventsPending(targetRegion));
+    } catch (Exception e) {
+      log.warn("Failed to publish pending sync event notice for region {}", targetRegion, e);
+    }
+  }
+}
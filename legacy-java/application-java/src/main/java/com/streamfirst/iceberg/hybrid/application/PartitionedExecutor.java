@@ -0,0 +1,197 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs tasks on a fixed pool of threads while keeping tasks with the same key in submission order.
+ * Each key gets its own FIFO queue; at most one task per key runs at a time, and different keys run
+ * in parallel up to the configured concurrency. A key with a long queue gives up its thread after a
+ * few tasks so it cannot starve the others.
+ *
+ * @param <K> the partition key, e.g. a table ID
+ */
+@Slf4j
+public class PartitionedExecutor<K> implements AutoCloseable {
+
+  /** Tasks a partition runs before yielding its thread to other partitions. */
+  private static final int TASKS_PER_TURN = 16;
+
+  private final int concurrency;
+  private final ExecutorService executor;
+
+  // A partition is in the map exactly while a thread holds or awaits its turn
+  private final Map<K, Partition> partitions = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  /**
+   * Creates an executor with its own pool of daemon threads.
+   *
+   * @param name prefix for thread names
+   * @param concurrency maximum number of partitions running at once
+   */
+  public PartitionedExecutor(String name, int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be at least 1");
+    }
+    this.concurrency = concurrency;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            concurrency,
+            runnable -> {
+              Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Queues a task behind all earlier tasks with the same key.
+   *
+   * @param key the partition key
+   * @param task the task to run
+   * @return a future completed with the task's result, or exceptionally if it threw
+   * @throws IllegalStateException if the executor has been closed
+   */
+  public <T> CompletableFuture<T> submit(K key, Supplier<T> task) {
+    if (closed) {
+      throw new IllegalStateException("Partitioned executor is closed");
+    }
+
+    CompletableFuture<T> future = new CompletableFuture<>();
+    Runnable runnable =
+        () -> {
+          try {
+            future.complete(task.get());
+          } catch (Throwable t) {
+            future.completeExceptionally(t);
+          }
+        };
+
+    // A new partition needs a thread; an existing one is already being drained
+    boolean[] schedule = new boolean[1];
+    Partition partition =
+        partitions.compute(
+            key,
+            (k, existing) -> {
+              Partition target = existing;
+              if (target == null) {
+                target = new Partition();
+                schedule[0] = true;
+              }
+              target.tasks.add(runnable);
+              target.depth.incrementAndGet();
+              return target;
+            });
+    if (schedule[0]) {
+      try {
+        executor.execute(() -> drain(key, partition));
+      } catch (RejectedExecutionException e) {
+        // Closed since the check above; run the partition on this thread so its futures, and
+        // those of tasks queued behind it meanwhile, still complete
+        drain(key, partition);
+      }
+    }
+    return future;
+  }
+
+  /** Runs a partition's tasks on the current thread until it is empty or its turn is over. */
+  private void drain(K key, Partition partition) {
+    int ran = 0;
+    while (true) {
+      if (ran == TASKS_PER_TURN && !closed) {
+        try {
+          executor.execute(() -> drain(key, partition));
+          return;
+        } catch (RejectedExecutionException e) {
+          // Closing; finish the partition on this thread instead
+        }
+      }
+      // Only the thread holding the partition's turn polls its queue
+      Runnable task = partition.tasks.poll();
+      if (task == null) {
+        if (release(key)) {
+          return;
+        }
+        continue;
+      }
+      partition.depth.decrementAndGet();
+      task.run();
+      ran++;
+    }
+  }
+
+  /**
+   * Removes an idle partition. Returns false if a task was queued since the last poll, in which
+   * case the caller keeps the partition's turn.
+   */
+  private boolean release(K key) {
+    boolean[] released = new boolean[1];
+    partitions.computeIfPresent(
+        key,
+        (k, partition) -> {
+          if (!partition.tasks.isEmpty()) {
+            return partition;
+          }
+          released[0] = true;
+          return null;
+        });
+    return released[0];
+  }
+
+  /** Gets the number of tasks waiting for a key, not counting a task that is running. */
+  public int getQueueDepth(K key) {
+    Partition partition = partitions.get(key);
+    return partition == null ? 0 : partition.depth.get();
+  }
+
+  /** Gets the number of waiting tasks for every key that has queued or running tasks. */
+  public Map<K, Integer> getQueueDepths() {
+    Map<K, Integer> depths = new HashMap<>();
+    partitions.forEach((key, partition) -> depths.put(key, partition.depth.get()));
+    return depths;
+  }
+
+  /** Gets the number of keys that currently have queued or running tasks. */
+  public int getActivePartitionCount() {
+    return partitions.size();
+  }
+
+  /** Gets the maximum number of partitions that run at once. */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /** Stops accepting tasks and waits briefly for queued tasks to finish. */
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+        log.warn("Partitioned executor did not drain in time; {} left", partitions.size());
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Partition {
+    final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    final AtomicInteger depth = new AtomicInteger();
+  }
+}
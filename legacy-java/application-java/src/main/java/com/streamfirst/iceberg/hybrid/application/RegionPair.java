@@ -0,0 +1,7 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.Region;
+import lombok.NonNull;
+
+/** Direction of data movement between two regions, the unit of replication flow control. */
+public record RegionPair(@NonNull Region source, @NonNull Region target) {}
@@ -0,0 +1,26 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+/**
+ * Priority class of a table's replication traffic. When tables compete for copy slots on a region
+ * pair, each gets a share of the transferred bytes proportional to its class weight, so
+ * latency-sensitive tables keep moving during a large backfill without starving the backfill.
+ */
+public enum ReplicationPriority {
+  /** Tables whose replicas must stay close to real time. */
+  REALTIME(16),
+  /** The default class. */
+  STANDARD(4),
+  /** Bulk loads and catch-up replication that can tolerate lag. */
+  BACKFILL(1);
+
+  private final int weight;
+
+  ReplicationPriority(int weight) {
+    this.weight = weight;
+  }
+
+  /** Gets the relative share of a table in this class. */
+  public int weight() {
+    return weight;
+  }
+}
@@ -0,0 +1,59 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.random.RandomGenerator;
+
+/**
+ * Jittered exponential backoff for failed sync events. The retry after the n-th attempt waits
+ * between half and all of {@code min(maxDelay, baseDelay * 2^(n-1))}, so events that failed
+ * together (for example during a region outage) come back spread out rather than as one burst.
+ *
+ * @param maxAttempts number of attempts after which an event is dead-lettered instead of retried
+ * @param baseDelay delay before the first retry, before jitter
+ * @param maxDelay upper bound on any single delay
+ */
+public record RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+
+  public RetryPolicy {
+    Objects.requireNonNull(baseDelay, "Base delay cannot be null");
+    Objects.requireNonNull(maxDelay, "Max delay cannot be null");
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("Max attempts must be at least 1");
+    }
+    if (baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+      throw new IllegalArgumentException("Delays must satisfy 0 <= baseDelay <= maxDelay");
+    }
+  }
+
+  /** Five attempts with delays starting at one second and capped at five minutes. */
+  public static RetryPolicy defaults() {
+    return new RetryPolicy(5, Duration.ofSeconds(1), Duration.ofMinutes(5));
+  }
+
+  /** Returns true if an event with this many attempts should not be retried again. */
+  public boolean isExhausted(int attempts) {
+    return attempts >= maxAttempts;
+  }
+
+  /**
+   * Computes the delay before retrying an event that has failed {@code attempts} times.
+   *
+   * @param attempts the number of attempts made so far (at least 1 for a failed event)
+   * @param random source of jitter
+   * @return the jittered delay
+   */
+  public Duration backoff(int attempts, RandomGenerator random) {
+    long baseMillis = baseDelay.toMillis();
+    long maxMillis = maxDelay.toMillis();
+    int exponent = Math.min(Math.max(attempts - 1, 0), 62);
+
+    // Saturate instead of overflowing when the shift would exceed the cap
+    long ceiling =
+        baseMillis > (maxMillis >> exponent)
+            ? maxMillis
+            : Math.min(maxMillis, baseMillis << exponent);
+    long floor = ceiling / 2;
+    return Duration.ofMillis(floor + random.nextLong(ceiling - floor + 1));
+  }
+}
@@ -0,0 +1,162 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.Region;
+import com.streamfirst.iceberg.hybrid.ports.EventPort;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Long-running replication loop for one region. The daemon processes pending events until the
+ * region's queue is empty, then parks until a {@link SyncEventsPending} notice for the region
+ * arrives on the event port, so replication starts as soon as an event is published rather than at
+ * the next poll. As a safety net for notices that are lost or never sent, such as for claims that
+ * expire, it also wakes up after an idle poll interval.
+ *
+ * <p>Stopping the daemon drains it: it claims no more events, finishes the ones it has claimed and
+ * then exits.
+ */
+@Slf4j
+public class SyncDaemon implements AutoCloseable {
+
+  private static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+  private final SyncOrchestrator orchestrator;
+  private final EventPort eventPort;
+  private final Region region;
+  private final Duration idlePollInterval;
+
+  private final AtomicBoolean wakeRequested = new AtomicBoolean();
+  private final AtomicLong passCount = new AtomicLong();
+  private final AtomicLong processedCount = new AtomicLong();
+  private volatile boolean running;
+  private volatile Thread thread;
+  private String subscriptionId;
+
+  /**
+   * Creates a daemon that is not yet running.
+   *
+   * @param orchestrator orchestrator to process events with
+   * @param eventPort event port carrying {@link SyncEventsPending} notices
+   * @param region region to replicate into
+   * @param idlePollInterval longest time to park without a notice before checking for events
+   */
+  public SyncDaemon(
+      SyncOrchestrator orchestrator,
+      EventPort eventPort,
+      Region region,
+      Duration idlePollInterval) {
+    if (idlePollInterval.isNegative() || idlePollInterval.isZero()) {
+      throw new IllegalArgumentException("Idle poll interval must be positive");
+    }
+    this.orchestrator = orchestrator;
+    this.eventPort = eventPort;
+    this.region = region;
+    this.idlePollInterval = idlePollInterval;
+  }
+
+  /**
+   * Subscribes to notices and starts the loop on its own thread.
+   *
+   * @throws IllegalStateException if the daemon has already been started
+   */
+  public synchronized void start() {
+    if (thread != null) {
+      throw new IllegalStateException("Sync daemon for " + region + " already started");
+    }
+    log.info("Starting sync daemon for region {}", region);
+
+    running = true;
+    subscriptionId =
+        eventPort.subscribe(
+            SyncEventsPending.TOPIC,
+            SyncEventsPending.class,
+            notice -> {
+              if (((SyncEventsPending) notice).concerns(region)) {
+                wake();
+              }
+            });
+    thread = new Thread(this::run, "sync-daemon-" + region.id());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Makes the daemon check for events now, or again right after its current pass. */
+  public void wake() {
+    wakeRequested.set(true);
+    Thread current = thread;
+    if (current != null) {
+      LockSupport.unpark(current);
+    }
+  }
+
+  private void run() {
+    while (running) {
+      // Clear the request before the pass, so a notice that arrives during it triggers another
+      wakeRequested.set(false);
+      try {
+        processedCount.addAndGet(orchestrator.processPendingEvents(region, () -> running));
+      } catch (Exception e) {
+        log.error("Sync pass for region {} failed", region, e);
+      }
+      passCount.incrementAndGet();
+
+      if (running && !wakeRequested.get()) {
+        LockSupport.parkNanos(this, idlePollInterval.toNanos());
+      }
+    }
+    log.info("Sync daemon for region {} stopped after {} passes", region, passCount.get());
+  }
+
+  /**
+   * Stops the daemon and waits for it to finish the events it has claimed.
+   *
+   * @param drainTimeout how long to wait for in-flight events
+   * @return true if the daemon drained in time; false if its thread was interrupted instead
+   */
+  public synchronized boolean stop(Duration drainTimeout) {
+    if (thread == null || !running) {
+      return true;
+    }
+    log.info("Draining sync daemon for region {}", region);
+
+    running = false;
+    eventPort.unsubscribe(subscriptionId);
+    LockSupport.unpark(thread);
+    try {
+      thread.join(TimeUnit.NANOSECONDS.toMillis(drainTimeout.toNanos()) + 1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (thread.isAlive()) {
+      log.warn("Sync daemon for region {} did not drain within {}", region, drainTimeout);
+      thread.interrupt();
+      return false;
+    }
+    return true;
+  }
+
+  /** Gets the number of completed passes over the region's queue. */
+  public long getPassCount() {
+    return passCount.get();
+  }
+
+  /** Gets the number of events processed successfully since the daemon started. */
+  public long getProcessedEventCount() {
+    return processedCount.get();
+  }
+
+  /** Whether the daemon is running and has not been asked to stop. */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /** Stops the daemon, waiting up to 30 seconds for it to drain. */
+  @Override
+  public void close() {
+    stop(DEFAULT_DRAIN_TIMEOUT);
+  }
+}
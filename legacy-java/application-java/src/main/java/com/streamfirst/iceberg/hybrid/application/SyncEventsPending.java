@@ -0,0 +1,21 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.Region;
+
+/**
+ * Notice that sync events have become pending, published on {@link #TOPIC} so that idle workers
+ * can start on them at once instead of at their next poll. A notice carries no event data; workers
+ * still claim events from the sync port.
+ *
+ * @param targetRegion region the events replicate to, or null if any region may have work
+ */
+public record SyncEventsPending(Region targetRegion) {
+
+  /** Topic on which notices are published. */
+  public static final String TOPIC = "sync-events-pending";
+
+  /** Whether a worker for the given region should wake up. */
+  public boolean concerns(Region region) {
+    return targetRegion == null || targetRegion.equals(region);
+  }
+}
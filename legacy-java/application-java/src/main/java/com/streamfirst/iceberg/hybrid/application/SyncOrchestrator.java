@@ -2,86 +2,366 @@ package com.streamfirst.iceberg.hybrid.application;
 
 import com.streamfirst.iceberg.hybrid.domain.*;
 import com.streamfirst.iceberg.hybrid.ports.*;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
-import lombok.RequiredArgsConstructor;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Orchestrates synchronization operations between regions. Processes sync events and coordinates
  * data/metadata replication. Handles both metadata synchronization and data file copying.
+ *
+ * <p>Events are claimed from the SyncPort under a lease rather than read, so several orchestrator
+ * instances can safely share a region: each event is processed by one worker at a time, and events
+ * held by a worker that dies become visible again once the lease expires.
+ *
+ * <p>By default a region's events are processed one at a time on the caller's thread. Given a
+ * {@link PartitionedExecutor}, events are instead partitioned by table: each table's events still
+ * run in claim order, but different tables run in parallel, so one large data sync no longer holds
+ * up every other table. Within a data sync, files are copied concurrently by a {@link
+ * FileCopyEngine}. An orchestrator created without an engine makes its own and closes it in
+ * {@link #close}.
  */
 @Slf4j
-@RequiredArgsConstructor
-public class SyncOrchestrator {
+public class SyncOrchestrator implements AutoCloseable {
+
+  /** Maximum number of events claimed per round trip to the SyncPort. */
+  private static final int CLAIM_BATCH_SIZE = 100;
+
+  /** How long a claimed event stays invisible to other workers without a renewal. */
+  private static final Duration CLAIM_VISIBILITY_TIMEOUT = Duration.ofMinutes(5);
+
+  /**
+   * Maximum number of claimed events queued or running at once in concurrent mode. Bounds how long
+   * an event can wait behind others for its table while its lease is running.
+   */
+  private static final int MAX_IN_FLIGHT_EVENTS = CLAIM_BATCH_SIZE;
 
   private final SyncPort syncPort;
   private final StoragePort storagePort;
   private final CatalogPort catalogPort;
   private final RegistryPort registryPort;
+  private final PartitionedExecutor<TableId> tableExecutor;
+  private final FileCopyEngine copyEngine;
+  private final boolean ownsCopyEngine;
+  private final FreshnessPort freshnessPort;
+  private final Map<TableId, ReplicationPriority> tablePriorities = new ConcurrentHashMap<>();
+  private final ScheduledThreadPoolExecutor claimRenewals;
+
+  private final String workerId = "sync-worker-" + UUID.randomUUID();
+
+  public SyncOrchestrator(
+      SyncPort syncPort,
+      StoragePort storagePort,
+      CatalogPort catalogPort,
+      RegistryPort registryPort) {
+    this(syncPort, storagePort, catalogPort, registryPort, null);
+  }
+
+  public SyncOrchestrator(
+      SyncPort syncPort,
+      StoragePort storagePort,
+      CatalogPort catalogPort,
+      RegistryPort registryPort,
+      PartitionedExecutor<TableId> tableExecutor) {
+    this(
+        syncPort,
+        storagePort,
+        catalogPort,
+        registryPort,
+        tableExecutor,
+        FileCopyEngine.withDefaults(storagePort),
+        null,
+        true);
+  }
+
+  /**
+   * Creates an orchestrator that processes events on the given executor, partitioned by table, and
+   * copies data files with the given engine.
+   *
+   * @param tableExecutor executor to run events on, or null to process them on the caller's thread
+   * @param copyEngine engine for data file copies, usually shared across orchestrators
+   */
+  public SyncOrchestrator(
+      SyncPort syncPort,
+      StoragePort storagePort,
+      CatalogPort catalogPort,
+      RegistryPort registryPort,
+      PartitionedExecutor<TableId> tableExecutor,
+      FileCopyEngine copyEngine) {
+    this(syncPort, storagePort, catalogPort, registryPort, tableExecutor, copyEngine, null);
+  }
 
   /**
-   * Processes all pending sync events for a specific region. This method is typically called by a
-   * scheduled worker process.
+   * Creates an orchestrator that also reports each completed replication to a freshness tracker.
+   *
+   * @param tableExecutor executor to run events on, or null to process them on the caller's thread
+   * @param copyEngine engine for data file copies, usually shared across orchestrators
+   * @param freshnessPort tracker to report replications to, or null to not track freshness
+   */
+  public SyncOrchestrator(
+      SyncPort syncPort,
+      StoragePort storagePort,
+      CatalogPort catalogPort,
+      RegistryPort registryPort,
+      PartitionedExecutor<TableId> tableExecutor,
+      FileCopyEngine copyEngine,
+      FreshnessPort freshnessPort) {
+    this(
+        syncPort,
+        storagePort,
+        catalogPort,
+        registryPort,
+        tableExecutor,
+        copyEngine,
+        freshnessPort,
+        false);
+  }
+
+  private SyncOrchestrator(
+      SyncPort syncPort,
+      StoragePort storagePort,
+      CatalogPort catalogPort,
+      RegistryPort registryPort,
+      PartitionedExecutor<TableId> tableExecutor,
+      FileCopyEngine copyEngine,
+      FreshnessPort freshnessPort,
+      boolean ownsCopyEngine) {
+    this.syncPort = syncPort;
+    this.storagePort = storagePort;
+    this.catalogPort = catalogPort;
+    this.registryPort = registryPort;
+    this.tableExecutor = tableExecutor;
+    this.copyEngine = copyEngine;
+    this.ownsCopyEngine = ownsCopyEngine;
+    this.freshnessPort = freshnessPort;
+    this.claimRenewals =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "sync-claim-renewal");
+              thread.setDaemon(true);
+              return thread;
+            });
+    // Most renewals are cancelled when their event finishes; don't keep them queued until due
+    this.claimRenewals.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * Processes all pending sync events for a specific region. Events are claimed in batches until
+   * the region's queue is empty. This method is typically called by a scheduled worker process. In
+   * concurrent mode it returns once every claimed event has finished.
    *
    * @param region the region to process events for
    * @return number of events processed successfully
    */
   public int processPendingEvents(Region region) {
+    return processPendingEvents(region, () -> true);
+  }
+
+  /**
+   * Processes pending sync events for a region until its queue is empty or the check returns
+   * false. The check is made before each claim; events already claimed are always finished, so a
+   * false check drains the work in hand without taking more.
+   *
+   * @param region the region to process events for
+   * @param shouldContinue check whether to keep claiming events
+   * @return number of events processed successfully
+   */
+  public int processPendingEvents(Region region, BooleanSupplier shouldContinue) {
     log.debug("Processing pending sync events for region {}", region);
+    if (tableExecutor != null) {
+      return processPendingEventsConcurrently(region, shouldContinue);
+    }
 
-    List<SyncEvent> pendingEvents = syncPort.getPendingEvents(region);
+    int claimedCount = 0;
     int successCount = 0;
 
-    for (SyncEvent event : pendingEvents) {
-      try {
-        boolean success = processSyncEvent(event);
-        if (success) {
+    List<SyncEvent> claimedEvents;
+    while (shouldContinue.getAsBoolean()
+        && !(claimedEvents = claimEvents(region, CLAIM_BATCH_SIZE)).isEmpty()) {
+      claimedCount += claimedEvents.size();
+      for (SyncEvent event : claimedEvents) {
+        if (processClaimedEvent(event)) {
           successCount++;
         }
-      } catch (Exception e) {
-        log.error("Failed to process sync event {}", event.getEventId(), e);
-        updateEventStatus(event.getEventId(), SyncEvent.Status.FAILED);
       }
     }
 
     log.info(
-        "Processed {} out of {} pending events for region {}",
-        successCount,
-        pendingEvents.size(),
-        region);
+        "Processed {} out of {} pending events for region {}", successCount, claimedCount, region);
     return successCount;
   }
 
-  /** Processes a single synchronization event based on its type. */
-  private boolean processSyncEvent(SyncEvent event) {
-    log.debug("Processing sync event: {}", event);
+  /**
+   * Claims events as capacity frees up and hands them to the table executor, keeping at most
+   * {@link #MAX_IN_FLIGHT_EVENTS} claimed events queued or running.
+   */
+  private int processPendingEventsConcurrently(Region region, BooleanSupplier shouldContinue) {
+    Semaphore capacity = new Semaphore(MAX_IN_FLIGHT_EVENTS);
+    AtomicInteger successCount = new AtomicInteger();
+    int claimedCount = 0;
+
+    while (true) {
+      // Wait for at least one free slot, then claim as many events as there are free slots
+      capacity.acquireUninterruptibly();
+      if (!shouldContinue.getAsBoolean()) {
+        capacity.release();
+        break;
+      }
+      int slots = 1 + capacity.drainPermits();
+      List<SyncEvent> claimedEvents = claimEvents(region, slots);
+      capacity.release(slots - claimedEvents.size());
+      if (claimedEvents.isEmpty()) {
+        break;
+      }
+
+      claimedCount += claimedEvents.size();
+      int submitted = 0;
+      try {
+        for (SyncEvent event : claimedEvents) {
+          tableExecutor
+              .submit(event.getTableId(), () -> processQueuedEvent(event))
+              .whenComplete(
+                  (success, error) -> {
+                    if (Boolean.TRUE.equals(success)) {
+                      successCount.incrementAndGet();
+                    }
+                    capacity.release();
+                  });
+          submitted++;
+        }
+      } catch (IllegalStateException e) {
+        // The executor was closed; fail the events it did not take so they are retried later
+        List<SyncEvent> unsubmitted = claimedEvents.subList(submitted, claimedEvents.size());
+        log.warn(
+            "Table executor closed with {} claimed events for region {} - failing them",
+            unsubmitted.size(),
+            region,
+            e);
+        unsubmitted.forEach(event -> completeEvent(event.getEventId(), SyncEvent.Status.FAILED));
+        capacity.release(unsubmitted.size());
+        break;
+      }
+    }
+
+    // All slots free again means every claimed event has finished
+    capacity.acquireUninterruptibly(MAX_IN_FLIGHT_EVENTS);
+    capacity.release(MAX_IN_FLIGHT_EVENTS);
+
+    log.info(
+        "Processed {} out of {} pending events for region {} across tables",
+        successCount.get(),
+        claimedCount,
+        region);
+    return successCount.get();
+  }
+
+  /** Claims up to {@code maxEvents} pending events for this worker. */
+  private List<SyncEvent> claimEvents(Region region, int maxEvents) {
+    return syncPort.claimPendingEvents(region, workerId, maxEvents, CLAIM_VISIBILITY_TIMEOUT);
+  }
+
+  /** Processes an event that may have waited in its table's queue since it was claimed. */
+  private boolean processQueuedEvent(SyncEvent event) {
+    if (!syncPort.renewClaim(event.getEventId(), workerId, CLAIM_VISIBILITY_TIMEOUT)) {
+      log.warn("Claim on event {} expired while queued - skipping", event.getEventId());
+      return false;
+    }
+    return processClaimedEvent(event);
+  }
 
-    updateEventStatus(event.getEventId(), SyncEvent.Status.IN_PROGRESS);
+  /**
+   * Processes a claimed event, marking it FAILED if processing throws. The claim is renewed in the
+   * background for as long as the event is being processed.
+   */
+  private boolean processClaimedEvent(SyncEvent event) {
+    ClaimRenewal claim = new ClaimRenewal(event.getEventId());
+    try {
+      return processSyncEvent(event, claim);
+    } catch (Exception e) {
+      log.error("Failed to process sync event {}", event.getEventId(), e);
+      completeEvent(event.getEventId(), SyncEvent.Status.FAILED);
+      return false;
+    } finally {
+      claim.stop();
+    }
+  }
+
+  /** Processes a single claimed synchronization event based on its type. */
+  private boolean processSyncEvent(SyncEvent event, ClaimRenewal claim) {
+    log.debug("Processing sync event: {}", event);
 
     try {
       boolean success =
           switch (event.getType()) {
             case METADATA_SYNC -> processMetadataSync(event);
-            case DATA_SYNC -> processDataSync(event);
+            case DATA_SYNC -> processDataSync(event, claim);
             case COMMIT_COMPLETED -> processCommitCompleted(event);
           };
 
       if (success) {
-        updateEventStatus(event.getEventId(), SyncEvent.Status.COMPLETED);
+        completeEvent(event.getEventId(), SyncEvent.Status.COMPLETED);
+        recordReplicated(event);
         log.debug("Successfully processed sync event {}", event.getEventId());
       } else {
-        updateEventStatus(event.getEventId(), SyncEvent.Status.FAILED);
+        completeEvent(event.getEventId(), SyncEvent.Status.FAILED);
         log.warn("Failed to process sync event {}", event.getEventId());
       }
 
       return success;
     } catch (Exception e) {
-      updateEventStatus(event.getEventId(), SyncEvent.Status.FAILED);
+      completeEvent(event.getEventId(), SyncEvent.Status.FAILED);
       log.error("Exception while processing sync event {}", event.getEventId(), e);
       return false;
     }
   }
 
+  /**
+   * Reports a commit to the freshness tracker once the region can serve it: when its data sync
+   * completes, or its metadata sync if the commit has no data files. A commit whose metadata has
+   * arrived ahead of its files is not yet readable there. Lag is measured from the event's
+   * creation, which for a coalesced event is that of the oldest event it absorbed.
+   */
+  private void recordReplicated(SyncEvent event) {
+    if (freshnessPort == null) {
+      return;
+    }
+    try {
+      boolean readable =
+          switch (event.getType()) {
+            case DATA_SYNC -> true;
+            case METADATA_SYNC ->
+                catalogPort
+                    .getMetadata(event.getTableId(), event.getCommitId())
+                    .map(metadata -> metadata.getDataFiles().isEmpty())
+                    .orElse(false);
+            case COMMIT_COMPLETED -> false;
+          };
+      if (!readable) {
+        return;
+      }
+      freshnessPort.recordReplicated(
+          event.getTableId(),
+          event.getTargetRegion(),
+          event.getCommitId(),
+          event.getCreatedAt(),
+          Instant.now());
+    } catch (Exception e) {
+      log.warn("Failed to record replication of event {} for freshness", event.getEventId(), e);
+    }
+  }
+
   /** Processes metadata synchronization by fetching and storing metadata locally. */
   private boolean processMetadataSync(SyncEvent event) {
     log.debug(
@@ -117,8 +397,14 @@ public class SyncOrchestrator {
     }
   }
 
-  /** Processes data synchronization by copying files between regions. */
-  private boolean processDataSync(SyncEvent event) {
+  /**
+   * Processes data synchronization by copying the files listed on the event between regions. Only
+   * events published without a file manifest fall back to the commit's catalog metadata. Files are
+   * copied concurrently, large files in chunks; the event fails if any file still fails after its
+   * retries, and copying stops early if the claim on the event is lost. A retried event resumes
+   * chunked files from the chunks already at the target.
+   */
+  private boolean processDataSync(SyncEvent event, ClaimRenewal claim) {
     log.debug(
         "Processing data sync for table {} from {} to {}",
         event.getTableId(),
@@ -130,45 +416,66 @@ public class SyncOrchestrator {
       StorageLocation sourceStorage = storagePort.getStorageLocation(event.getSourceRegion());
       StorageLocation targetStorage = storagePort.getStorageLocation(event.getTargetRegion());
 
-      // Get the table metadata to know which files to copy
-      var metadataOpt = catalogPort.getMetadata(event.getTableId(), event.getCommitId());
-      if (metadataOpt.isEmpty()) {
-        log.warn(
-            "Metadata not found for table {} commit {}", event.getTableId(), event.getCommitId());
-        return false;
+      List<StoragePath> dataFiles = event.getDataFiles();
+      if (dataFiles.isEmpty()) {
+        var metadataOpt = catalogPort.getMetadata(event.getTableId(), event.getCommitId());
+        if (metadataOpt.isEmpty()) {
+          log.warn(
+              "Metadata not found for table {} commit {}", event.getTableId(), event.getCommitId());
+          return false;
+        }
+        dataFiles = metadataOpt.get().getDataFiles();
       }
 
-      TableMetadata metadata = metadataOpt.get();
       String targetBasePath =
           registryPort
               .getTableDataPath(event.getTableId(), event.getTargetRegion())
               .orElseThrow(() -> new IllegalStateException("No data path registered for table"));
 
-      // Copy each data file
-      int copiedFiles = 0;
-      for (StoragePath dataFile : metadata.getDataFiles()) {
-        try {
-          StoragePath targetPath =
-              StoragePath.of(targetBasePath + "/" + extractFileName(dataFile.path()));
-
-          // Only copy if file doesn't already exist
-          if (!storagePort.fileExists(targetStorage, targetPath)) {
-            storagePort.copyFile(sourceStorage, dataFile, targetStorage, targetPath);
-            copiedFiles++;
-            log.debug("Copied file {} to {}", dataFile, targetPath);
-          }
-        } catch (Exception e) {
-          log.error("Failed to copy file {} for table {}", dataFile, event.getTableId(), e);
-          return false;
-        }
+      List<FileCopyEngine.CopyRequest> copies =
+          dataFiles.stream()
+              .map(
+                  dataFile ->
+                      new FileCopyEngine.CopyRequest(
+                          dataFile,
+                          StoragePath.of(targetBasePath + "/" + extractFileName(dataFile.path()))))
+              .toList();
+
+      // Existing files are skipped, so a retried event only copies what is still missing
+      FileCopyEngine.CopyReport report =
+          copyEngine.copy(
+              sourceStorage,
+              targetStorage,
+              copies,
+              claim::isHeld,
+              copyFlow(event.getTableId()));
+
+      if (!report.isComplete()) {
+        report
+            .failedFiles()
+            .forEach(
+                (file, error) ->
+                    log.error("Failed to copy {} for {}: {}", file, event.getTableId(), error));
+        log.warn(
+            "Data sync for table {} incomplete: {} failed, {} cancelled of {} files",
+            event.getTableId(),
+            report.failedFiles().size(),
+            report.filesCancelled(),
+            copies.size());
+        return false;
       }
 
       log.info(
-          "Copied {} files for table {} from {} to {}",
-          copiedFiles,
+          "Copied {} files ({} bytes, {} already present) for table {} from {} to {} "
+              + "at {} files/s, {} bytes/s",
+          report.filesCopied(),
+          report.bytesCopied(),
+          report.filesSkipped(),
           event.getTableId(),
           event.getSourceRegion(),
-          event.getTargetRegion());
+          event.getTargetRegion(),
+          String.format("%.1f", report.filesPerSecond()),
+          String.format("%.0f", report.bytesPerSecond()));
       return true;
 
     } catch (Exception e) {
@@ -183,7 +490,10 @@ public class SyncOrchestrator {
     return true;
   }
 
-  /** Retries all failed events for a region. */
+  /**
+   * Retries all failed events for a region immediately. This bypasses backoff and is meant for
+   * manual intervention; {@link SyncRetryScheduler} handles routine retries.
+   */
   public int retryFailedEvents(Region region) {
     log.info("Retrying failed sync events for region {}", region);
 
@@ -204,15 +514,67 @@ public class SyncOrchestrator {
     return retriedCount;
   }
 
-  /** Updates the status of a sync event with current timestamp. */
-  private void updateEventStatus(EventId eventId, SyncEvent.Status status) {
+  /** Records the final status of an event claimed by this worker and releases the claim. */
+  private void completeEvent(EventId eventId, SyncEvent.Status status) {
     try {
-      syncPort.updateEventStatus(eventId, status);
+      syncPort.completeClaim(eventId, workerId, status);
     } catch (Exception e) {
       log.error("Failed to update status for event {} to {}", eventId, status, e);
     }
   }
 
+  /**
+   * Sets a table's replication priority class, which weights its share of each region pair's copy
+   * slots against other tables. Tables default to {@link ReplicationPriority#STANDARD}.
+   */
+  public void setTablePriority(TableId tableId, ReplicationPriority priority) {
+    log.info("Setting replication priority of table {} to {}", tableId, priority);
+    tablePriorities.put(tableId, priority);
+  }
+
+  /** Gets a table's replication priority class. */
+  public ReplicationPriority getTablePriority(TableId tableId) {
+    return tablePriorities.getOrDefault(tableId, ReplicationPriority.STANDARD);
+  }
+
+  /** Each table is its own flow, weighted by its priority class. */
+  private AdaptiveConcurrencyLimiter.Flow copyFlow(TableId tableId) {
+    return new AdaptiveConcurrencyLimiter.Flow(tableId, getTablePriority(tableId).weight());
+  }
+
+  /**
+   * Gets the number of events waiting per table in concurrent mode, not counting events that are
+   * running. Empty when events are processed on the caller's thread.
+   */
+  public Map<TableId, Integer> getTableQueueDepths() {
+    return tableExecutor == null ? Map.of() : tableExecutor.getQueueDepths();
+  }
+
+  /**
+   * Gets the engine used for data file copies, e.g. to override its concurrency limits for a
+   * maintenance window.
+   */
+  public FileCopyEngine getCopyEngine() {
+    return copyEngine;
+  }
+
+  /** Gets the identifier this orchestrator uses when claiming events. */
+  public String getWorkerId() {
+    return workerId;
+  }
+
+  /**
+   * Stops renewing claims and closes the copy engine if this orchestrator created it; an engine
+   * passed in is left to its owner. Must not be called while events are being processed.
+   */
+  @Override
+  public void close() {
+    claimRenewals.shutdownNow();
+    if (ownsCopyEngine) {
+      copyEngine.close();
+    }
+  }
+
   /** Generates a standard data path for table data in a region. */
   private String generateTableDataPath(TableId tableId) {
     return String.format("tables/%s/%s", tableId.namespace(), tableId.name());
@@ -223,4 +585,67 @@ public class SyncOrchestrator {
     int lastSlash = filePath.lastIndexOf('/');
     return lastSlash >= 0 ? filePath.substring(lastSlash + 1) : filePath;
   }
+
+  /**
+   * Renews the claim on an event every fifth of the visibility timeout until stopped, whatever the
+   * event's processing is waiting on, and remembers if the claim was lost.
+   */
+  private final class ClaimRenewal {
+    private final EventId eventId;
+    private volatile boolean held = true;
+    private volatile boolean stopped;
+    private ScheduledFuture<?> nextRenewal;
+
+    ClaimRenewal(EventId eventId) {
+      this.eventId = eventId;
+      scheduleNext();
+    }
+
+    /** Whether the claim is still held; false once a renewal has been rejected. */
+    boolean isHeld() {
+      return held;
+    }
+
+    /** Cancels the next renewal. A renewal already running finishes but schedules no other. */
+    synchronized void stop() {
+      stopped = true;
+      if (nextRenewal != null) {
+        nextRenewal.cancel(false);
+      }
+    }
+
+    private synchronized void scheduleNext() {
+      if (stopped) {
+        return;
+      }
+      try {
+        nextRenewal =
+            claimRenewals.schedule(
+                this::renew, CLAIM_VISIBILITY_TIMEOUT.toMillis() / 5, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // The orchestrator is closed; the lease runs out on its own
+        log.debug("Not renewing claim on event {} after close", eventId);
+      }
+    }
+
+    private void renew() {
+      if (stopped) {
+        return;
+      }
+      try {
+        if (!syncPort.renewClaim(eventId, workerId, CLAIM_VISIBILITY_TIMEOUT)) {
+          // A renewal racing with the event's completion finds the claim already released
+          if (!stopped) {
+            log.warn("Lost claim on event {} - abandoning its processing", eventId);
+          }
+          held = false;
+          return;
+        }
+      } catch (Exception e) {
+        // Keep trying; the lease outlasts several failed renewals
+        log.warn("Failed to renew claim on event {}", eventId, e);
+      }
+      scheduleNext();
+    }
+  }
 }
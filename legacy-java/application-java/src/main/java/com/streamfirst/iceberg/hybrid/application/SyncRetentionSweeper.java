@@ -0,0 +1,87 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.ports.SyncPort;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Periodically purges finished sync events once they are older than a retention period, so the
+ * event store and its indexes stay proportional to recent activity rather than to everything ever
+ * replicated. Failed and dead-lettered events are never purged.
+ */
+@Slf4j
+public class SyncRetentionSweeper implements AutoCloseable {
+
+  private final SyncPort syncPort;
+  private final Duration retention;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicLong purgedCount = new AtomicLong();
+
+  public SyncRetentionSweeper(SyncPort syncPort, Duration retention) {
+    this(
+        syncPort,
+        retention,
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "sync-retention-sweeper");
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  public SyncRetentionSweeper(
+      SyncPort syncPort, Duration retention, ScheduledExecutorService scheduler) {
+    if (retention.isNegative()) {
+      throw new IllegalArgumentException("Retention cannot be negative");
+    }
+    this.syncPort = syncPort;
+    this.retention = retention;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Starts sweeping at a fixed interval.
+   *
+   * @param sweepInterval delay between sweeps
+   */
+  public void start(Duration sweepInterval) {
+    log.info("Starting retention sweeper every {} with retention {}", sweepInterval, retention);
+
+    scheduler.scheduleWithFixedDelay(
+        this::sweep, sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Purges finished events last updated before the retention period.
+   *
+   * @return number of events purged
+   */
+  public int sweep() {
+    Instant cutoff = Instant.now().minus(retention);
+    try {
+      int purged = syncPort.purgeCompletedEvents(cutoff);
+      purgedCount.addAndGet(purged);
+      return purged;
+    } catch (Exception e) {
+      log.error("Failed to purge sync events finished before {}", cutoff, e);
+      return 0;
+    }
+  }
+
+  /** Gets the total number of events purged since this sweeper was created. */
+  public long getPurgedEventCount() {
+    return purgedCount.get();
+  }
+
+  /** Stops sweeping. */
+  @Override
+  public void close() {
+    log.info("Stopping retention sweeper after purging {} events", purgedCount.get());
+    scheduler.shutdownNow();
+  }
+}
@@ -0,0 +1,145 @@
+package com.streamfirst.iceberg.hybrid.application;
+
+import com.streamfirst.iceberg.hybrid.domain.*;
+import com.streamfirst.iceberg.hybrid.ports.SyncPort;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Retries failed sync events on a jittered exponential backoff and dead-letters events that have
+ * used up their attempts. Each failed event gets its own timer, so events that failed together are
+ * returned to PENDING spread out over time instead of all at once.
+ */
+@Slf4j
+public class SyncRetryScheduler implements AutoCloseable {
+
+  private final SyncPort syncPort;
+  private final RetryPolicy retryPolicy;
+  private final ScheduledExecutorService scheduler;
+
+  // Failed events that already have a retry timer, so repeated scans don't schedule twice
+  private final Set<EventId> scheduledRetries = ConcurrentHashMap.newKeySet();
+
+  public SyncRetryScheduler(SyncPort syncPort, RetryPolicy retryPolicy) {
+    this(
+        syncPort,
+        retryPolicy,
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "sync-retry-scheduler");
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  public SyncRetryScheduler(
+      SyncPort syncPort, RetryPolicy retryPolicy, ScheduledExecutorService scheduler) {
+    this.syncPort = syncPort;
+    this.retryPolicy = retryPolicy;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Starts scanning the given regions for failed events at a fixed interval.
+   *
+   * @param regions the regions to watch
+   * @param scanInterval delay between scans
+   */
+  public void start(Collection<Region> regions, Duration scanInterval) {
+    log.info("Starting retry scheduler for {} regions every {}", regions.size(), scanInterval);
+
+    List<Region> watched = List.copyOf(regions);
+    scheduler.scheduleWithFixedDelay(
+        () -> watched.forEach(this::scheduleRetries),
+        0,
+        scanInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Schedules a backoff timer for every failed event in a region that does not have one yet, and
+   * dead-letters events that have exhausted their attempts.
+   *
+   * @param region the region to scan
+   * @return number of retries newly scheduled
+   */
+  public int scheduleRetries(Region region) {
+    int scheduled = 0;
+
+    try {
+      for (SyncEvent event : syncPort.getFailedEvents(region)) {
+        if (retryPolicy.isExhausted(event.getAttempts())) {
+          deadLetter(event);
+        } else if (scheduledRetries.add(event.getEventId())) {
+          scheduleRetry(event);
+          scheduled++;
+        }
+      }
+    } catch (Exception e) {
+      log.error("Failed to scan failed sync events for region {}", region, e);
+    }
+
+    if (scheduled > 0) {
+      log.debug("Scheduled {} retries for region {}", scheduled, region);
+    }
+    return scheduled;
+  }
+
+  private void scheduleRetry(SyncEvent event) {
+    Duration backoff = retryPolicy.backoff(event.getAttempts(), ThreadLocalRandom.current());
+    Instant due = event.getUpdatedAt().plus(backoff);
+    long delayMillis = Math.max(0, Duration.between(Instant.now(), due).toMillis());
+
+    log.debug(
+        "Retrying event {} (attempt {}) in {} ms",
+        event.getEventId(),
+        event.getAttempts() + 1,
+        delayMillis);
+    scheduler.schedule(() -> retry(event.getEventId()), delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void retry(EventId eventId) {
+    try {
+      syncPort.retryFailedEvent(eventId);
+    } catch (IllegalArgumentException e) {
+      // Retried manually or dead-lettered while the timer was pending
+      log.debug("Skipping scheduled retry of event {}: {}", eventId, e.getMessage());
+    } catch (Exception e) {
+      log.error("Failed to retry event {}", eventId, e);
+    } finally {
+      scheduledRetries.remove(eventId);
+    }
+  }
+
+  private void deadLetter(SyncEvent event) {
+    String reason =
+        "Gave up after " + event.getAttempts() + " of " + retryPolicy.maxAttempts() + " attempts";
+    try {
+      syncPort.deadLetterEvent(event.getEventId(), reason);
+    } catch (IllegalArgumentException e) {
+      log.debug("Event {} left FAILED before it could be dead-lettered", event.getEventId());
+    }
+  }
+
+  /** Gets the number of failed events currently waiting on a retry timer. */
+  public int getScheduledRetryCount() {
+    return scheduledRetries.size();
+  }
+
+  /** Stops scanning and cancels pending retry timers. Cancelled events stay FAILED. */
+  @Override
+  public void close() {
+    log.info("Stopping retry scheduler with {} pending retries", scheduledRetries.size());
+    scheduler.shutdownNow();
+    scheduledRetries.clear();
+  }
+}
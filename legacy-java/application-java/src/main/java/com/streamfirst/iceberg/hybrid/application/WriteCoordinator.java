@@ -2,10 +2,10 @@ package com.streamfirst.iceberg.hybrid.application;
 
 import com.streamfirst.iceberg.hybrid.domain.*;
 import com.streamfirst.iceberg.hybrid.ports.*;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -14,13 +14,40 @@ import lombok.extern.slf4j.Slf4j;
  * request to global replication.
  */
 @Slf4j
-@RequiredArgsConstructor
 public class WriteCoordinator {
 
   private final CatalogPort catalogPort;
   private final CommitGatePort commitGatePort;
   private final SyncPort syncPort;
   private final RegistryPort registryPort;
+  private final FreshnessPort freshnessPort;
+
+  public WriteCoordinator(
+      CatalogPort catalogPort,
+      CommitGatePort commitGatePort,
+      SyncPort syncPort,
+      RegistryPort registryPort) {
+    this(catalogPort, commitGatePort, syncPort, registryPort, null);
+  }
+
+  /**
+   * Creates a coordinator that records each commit with the given freshness tracker, so replica
+   * lag can be measured against it.
+   *
+   * @param freshnessPort tracker to record commits with, or null to not track freshness
+   */
+  public WriteCoordinator(
+      CatalogPort catalogPort,
+      CommitGatePort commitGatePort,
+      SyncPort syncPort,
+      RegistryPort registryPort,
+      FreshnessPort freshnessPort) {
+    this.catalogPort = catalogPort;
+    this.commitGatePort = commitGatePort;
+    this.syncPort = syncPort;
+    this.registryPort = registryPort;
+    this.freshnessPort = freshnessPort;
+  }
 
   /**
    * Executes a write operation with geo-distributed consistency.
@@ -73,6 +100,7 @@ public class WriteCoordinator {
     try {
       CommitId commitId = catalogPort.commitMetadata(request);
       log.debug("Successfully committed metadata to global catalog: {}", commitId);
+      recordCommit(request, commitId);
       return CompletableFuture.completedFuture(commitId);
     } catch (Exception e) {
       log.error("Failed to commit metadata to global catalog for {}", request, e);
@@ -80,6 +108,26 @@ public class WriteCoordinator {
     }
   }
 
+  /**
+   * Records a commit and the regions it will be replicated to for freshness tracking; a tracking
+   * failure does not fail the write.
+   */
+  private void recordCommit(CommitRequest request, CommitId commitId) {
+    if (freshnessPort == null) {
+      return;
+    }
+    TableId tableId = request.getTableId();
+    try {
+      List<Region> replicaRegions =
+          registryPort.getTableRegions(tableId).stream()
+              .filter(region -> !region.equals(request.getSourceRegion()))
+              .toList();
+      freshnessPort.recordCommit(tableId, commitId, Instant.now(), replicaRegions);
+    } catch (Exception e) {
+      log.warn("Failed to record commit {} of table {} for freshness", commitId, tableId, e);
+    }
+  }
+
   /** Triggers replication of the committed changes to all regions. */
   private CompletableFuture<CommitId> triggerReplication(CommitRequest request, CommitId commitId) {
     List<Region> targetRegions = registryPort.getTableRegions(request.getTableId());
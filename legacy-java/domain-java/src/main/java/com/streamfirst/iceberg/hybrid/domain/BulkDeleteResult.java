@@ -0,0 +1,26 @@
+package com.streamfirst.iceberg.hybrid.domain;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-file outcome of a bulk delete. Files that did not exist are reported separately from those
+ * deleted, although both are gone afterwards.
+ *
+ * @param deleted files that were deleted
+ * @param notFound files that did not exist
+ * @param failed files that could not be deleted, with the reason
+ */
+public record BulkDeleteResult(
+    List<StoragePath> deleted, List<StoragePath> notFound, Map<StoragePath, String> failed) {
+  public BulkDeleteResult {
+    deleted = List.copyOf(deleted);
+    notFound = List.copyOf(notFound);
+    failed = Map.copyOf(failed);
+  }
+
+  /** Checks whether every file is gone. */
+  public boolean isComplete() {
+    return failed.isEmpty();
+  }
+}
@@ -0,0 +1,18 @@
+package com.streamfirst.iceberg.hybrid.domain;
+
+import java.time.Instant;
+import lombok.NonNull;
+
+/**
+ * A sync event that exhausted its retry attempts, together with why it was given up on. Entries
+ * stay in the dead-letter store until an operator redrives or discards them, so permanently failing
+ * events stop consuming worker capacity.
+ */
+public record DeadLetterEntry(
+    @NonNull SyncEvent event, @NonNull String reason, @NonNull Instant deadLetteredAt) {
+
+  /** The identifier of the dead-lettered event. */
+  public EventId eventId() {
+    return event.getEventId();
+  }
+}
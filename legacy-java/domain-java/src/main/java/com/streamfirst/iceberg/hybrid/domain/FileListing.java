@@ -0,0 +1,21 @@
+package com.streamfirst.iceberg.hybrid.domain;
+
+import java.util.List;
+
+/**
+ * One page of a file listing, in path order.
+ *
+ * @param paths the files on this page
+ * @param nextStartAfter where the next page starts, to pass as the start-after key of the next
+ *     request; null if this is the last page
+ */
+public record FileListing(List<StoragePath> paths, String nextStartAfter) {
+  public FileListing {
+    paths = List.copyOf(paths);
+  }
+
+  /** Checks whether more files follow this page. */
+  public boolean isTruncated() {
+    return nextStartAfter != null;
+  }
+}
@@ -0,0 +1,26 @@
+package com.streamfirst.iceberg.hybrid.domain;
+
+import java.time.Instant;
+import lombok.NonNull;
+
+/**
+ * Metadata of a stored file, as returned by batch lookups.
+ *
+ * @param path the file path within its storage location
+ * @param size file size in bytes
+ * @param etag hex-encoded SHA-256 hash of the content
+ * @param lastModified when the file was last written, or null if the backend does not report it
+ */
+public record FileStat(
+    @NonNull StoragePath path, long size, @NonNull String etag, Instant lastModified) {
+
+  /** Creates the stat of an object whose modification time is unknown. */
+  public static FileStat of(StoredObject object) {
+    return new FileStat(object.path(), object.size(), object.etag(), null);
+  }
+
+  /** Gets the file's size and etag. */
+  public StoredObject object() {
+    return new StoredObject(path, size, etag);
+  }
+}
@@ -0,0 +1,83 @@
+package com.streamfirst.iceberg.hybrid.domain;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Distribution of replication lags, counted in fixed buckets. Bucket {@code i} counts lags up to
+ * {@code bucketBounds[i]}; the final extra bucket counts lags above the last bound.
+ *
+ * @param bucketBounds upper bounds of the buckets, ascending
+ * @param bucketCounts observations per bucket, one more than there are bounds
+ * @param totalLag sum of all observed lags
+ * @param maxLag largest observed lag
+ */
+public record LagHistogram(
+    List<Duration> bucketBounds, List<Long> bucketCounts, Duration totalLag, Duration maxLag) {
+
+  /** Bucket bounds from 100 milliseconds to one hour. */
+  public static final List<Duration> DEFAULT_BOUNDS =
+      List.of(
+          Duration.ofMillis(100),
+          Duration.ofMillis(250),
+          Duration.ofMillis(500),
+          Duration.ofSeconds(1),
+          Duration.ofMillis(2500),
+          Duration.ofSeconds(5),
+          Duration.ofSeconds(10),
+          Duration.ofSeconds(30),
+          Duration.ofMinutes(1),
+          Duration.ofMinutes(2),
+          Duration.ofMinutes(5),
+          Duration.ofMinutes(10),
+          Duration.ofMinutes(30),
+          Duration.ofHours(1));
+
+  public LagHistogram {
+    bucketBounds = List.copyOf(bucketBounds);
+    bucketCounts = List.copyOf(bucketCounts);
+    Objects.requireNonNull(totalLag, "Total lag cannot be null");
+    Objects.requireNonNull(maxLag, "Max lag cannot be null");
+    if (bucketCounts.size() != bucketBounds.size() + 1) {
+      throw new IllegalArgumentException("Expected one more bucket count than bucket bounds");
+    }
+  }
+
+  /** Gets the number of observed lags. */
+  public long count() {
+    return bucketCounts.stream().mapToLong(Long::longValue).sum();
+  }
+
+  /** Gets the mean observed lag, zero if there are no observations. */
+  public Duration mean() {
+    long count = count();
+    return count == 0 ? Duration.ZERO : totalLag.dividedBy(count);
+  }
+
+  /**
+   * Estimates a percentile as the upper bound of the bucket it falls in, or the largest observed
+   * lag for the overflow bucket.
+   *
+   * @param percentile between 0 and 100
+   * @return the estimated lag, zero if there are no observations
+   */
+  public Duration percentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100");
+    }
+    long count = count();
+    if (count == 0) {
+      return Duration.ZERO;
+    }
+    long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < bucketBounds.size(); i++) {
+      seen += bucketCounts.get(i);
+      if (seen >= rank) {
+        return bucketBounds.get(i).compareTo(maxLag) < 0 ? bucketBounds.get(i) : maxLag;
+      }
+    }
+    return maxLag;
+  }
+}
@@ -0,0 +1,34 @@
+package com.streamfirst.iceberg.hybrid.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+import lombok.NonNull;
+
+/**
+ * How far a table's replica in one region trails the table's latest commit. Lag in time is
+ * measured from the oldest commit the region has not yet received, so a region that is caught up
+ * has zero lag however long ago its last replication was.
+ *
+ * @param tableId the table
+ * @param region the region holding the replica
+ * @param lastReplicatedCommit newest commit whose replication to the region has completed, or null
+ *     if none has yet
+ * @param lastReplicatedAt when that replication completed, or null if none has yet
+ * @param commitsBehind number of commits made since the last replicated one
+ * @param lag time since the oldest commit not yet replicated, zero if caught up
+ * @param asOf when this snapshot was taken
+ */
+public record ReplicationFreshness(
+    @NonNull TableId tableId,
+    @NonNull Region region,
+    CommitId lastReplicatedCommit,
+    Instant lastReplicatedAt,
+    long commitsBehind,
+    @NonNull Duration lag,
+    @NonNull Instant asOf) {
+
+  /** Whether the region has every commit of the table. */
+  public boolean isCaughtUp() {
+    return commitsBehind == 0;
+  }
+}
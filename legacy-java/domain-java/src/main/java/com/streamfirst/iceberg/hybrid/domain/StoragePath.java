@@ -3,27 +3,93 @@ package com.streamfirst.iceberg.hybrid.domain;
 /**
  * Value object representing a storage path with validation and operations. Ensures path consistency
  * across different storage backends and operating systems.
+ *
+ * <p>Paths are created by the million when listing and syncing, so a path is validated in one scan
+ * that also records where its file name and extension start, and paths that are already normalized
+ * are not copied. {@link #of(String)} returns a shared instance for a recently created path where
+ * it can; paths are still compared by value, so sharing is only a saving.
  */
-public record StoragePath(String path) {
+public final class StoragePath {
 
-  public StoragePath {
-    if (path == null || path.trim().isEmpty()) {
+  // Recently created paths by hash, overwritten on collision so the cache stays bounded. Reads and
+  // writes race harmlessly, since all fields of a path are final.
+  private static final int INTERNED_SLOTS = 1 << 14;
+  private static final StoragePath[] interned = new StoragePath[INTERNED_SLOTS];
+
+  private final String path;
+  private final int hash;
+  // Index of the last slash, or -1 if there is none
+  private final int lastSlash;
+  // Index of the dot before the extension in the last component, or -1 if it has none
+  private final int extensionDot;
+
+  public StoragePath(String path) {
+    if (path == null) {
       throw new IllegalArgumentException("Storage path cannot be null or empty");
     }
-    if (path.contains("..")) {
-      throw new IllegalArgumentException("Storage path cannot contain '..' for security");
+    String normalized = path;
+    int lastSlash = -1;
+    int extensionDot = -1;
+    boolean blank = true;
+    boolean backslash = false;
+    char previous = 0;
+    for (int i = 0; i < path.length(); i++) {
+      char c = path.charAt(i);
+      if (c == '.' && previous == '.') {
+        throw new IllegalArgumentException("Storage path cannot contain '..' for security");
+      }
+      if (c == '/' || c == '\\') {
+        backslash |= c == '\\';
+        lastSlash = i;
+        extensionDot = -1;
+      } else if (c == '.') {
+        extensionDot = i;
+      }
+      // Blank as String.trim() sees it
+      blank &= c <= ' ';
+      previous = c;
+    }
+    if (blank) {
+      throw new IllegalArgumentException("Storage path cannot be null or empty");
     }
     // Normalize path separators to forward slash for consistency
-    path = path.replace('\\', '/');
+    if (backslash) {
+      normalized = normalized.replace('\\', '/');
+    }
     // Remove trailing slash except for root
-    if (path.length() > 1 && path.endsWith("/")) {
-      path = path.substring(0, path.length() - 1);
+    if (normalized.length() > 1 && normalized.endsWith("/")) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+      lastSlash = normalized.lastIndexOf('/');
+      extensionDot = normalized.lastIndexOf('.');
+      if (extensionDot < lastSlash) {
+        extensionDot = -1;
+      }
     }
+    this.path = normalized;
+    this.hash = normalized.hashCode();
+    this.lastSlash = lastSlash;
+    this.extensionDot = extensionDot;
   }
 
-  /** Creates a storage path from string. */
+  /** Creates a storage path from string, reusing a recently created instance if there is one. */
   public static StoragePath of(String path) {
-    return new StoragePath(path);
+    if (path != null) {
+      StoragePath cached = interned[slot(path.hashCode())];
+      if (cached != null && cached.path.equals(path)) {
+        return cached;
+      }
+    }
+    StoragePath created = new StoragePath(path);
+    // Only a path given in normal form is shared, so a cache hit never skips the validation that
+    // its string would fail, as a bare " " made from " /" would
+    if (created.path.equals(path)) {
+      interned[slot(created.hash)] = created;
+    }
+    return created;
+  }
+
+  private static int slot(int hash) {
+    return (hash ^ (hash >>> 16)) & (INTERNED_SLOTS - 1);
   }
 
   /** Creates a storage path by joining components. */
@@ -31,7 +97,12 @@ public record StoragePath(String path) {
     if (components.length == 0) {
       throw new IllegalArgumentException("At least one path component required");
     }
-    return new StoragePath(String.join("/", components));
+    return of(String.join("/", components));
+  }
+
+  /** Returns the path string. */
+  public String path() {
+    return path;
   }
 
   /** Resolves a child path relative to this path. */
@@ -39,7 +110,7 @@ public record StoragePath(String path) {
     if (childPath.startsWith("/")) {
       throw new IllegalArgumentException("Child path must be relative: " + childPath);
     }
-    return new StoragePath(this.path + "/" + childPath);
+    return of(this.path + "/" + childPath);
   }
 
   /** Resolves a child path relative to this path. */
@@ -49,24 +120,20 @@ public record StoragePath(String path) {
 
   /** Gets the parent directory path. */
   public StoragePath getParent() {
-    int lastSlash = path.lastIndexOf('/');
     if (lastSlash <= 0) {
       return StoragePath.of("/");
     }
-    return new StoragePath(path.substring(0, lastSlash));
+    return of(path.substring(0, lastSlash));
   }
 
   /** Gets the file/directory name (last component). */
   public String getFileName() {
-    int lastSlash = path.lastIndexOf('/');
     return lastSlash == -1 ? path : path.substring(lastSlash + 1);
   }
 
   /** Gets the file extension without the dot. */
   public String getExtension() {
-    String fileName = getFileName();
-    int lastDot = fileName.lastIndexOf('.');
-    return lastDot == -1 ? "" : fileName.substring(lastDot + 1);
+    return extensionDot == -1 ? "" : path.substring(extensionDot + 1);
   }
 
   /** Checks if this path starts with the given prefix. */
@@ -84,6 +151,17 @@ public record StoragePath(String path) {
     return this.path.endsWith(suffix);
   }
 
+  @Override
+  public boolean equals(Object other) {
+    return this == other
+        || other instanceof StoragePath that && hash == that.hash && path.equals(that.path);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
   /** Returns the raw path string. */
   @Override
   public String toString() {
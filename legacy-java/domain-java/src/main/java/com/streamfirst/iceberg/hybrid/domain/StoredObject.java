@@ -0,0 +1,69 @@
+package com.streamfirst.iceberg.hybrid.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import lombok.NonNull;
+
+/**
+ * Size and content hash of a stored file. The etag is a SHA-256 hash of the file's bytes, so
+ * byte-identical files have equal etags wherever they are stored, and a copy can be verified by
+ * comparing etags instead of reading it back.
+ *
+ * @param path the file path within its storage location
+ * @param size file size in bytes
+ * @param etag hex-encoded SHA-256 hash of the content
+ */
+public record StoredObject(@NonNull StoragePath path, long size, @NonNull String etag) {
+
+  /** Whether another object has the same content. */
+  public boolean hasSameContent(StoredObject other) {
+    return size == other.size && etag.equals(other.etag);
+  }
+
+  /** Computes the etag of in-memory content. */
+  public static String computeEtag(byte[] content) {
+    MessageDigest digest = sha256();
+    digest.update(content);
+    return etagOf(digest);
+  }
+
+  /**
+   * Computes the etag of streamed content, reading the stream to its end.
+   *
+   * @throws RuntimeException if reading fails
+   */
+  public static String computeEtag(InputStream content) {
+    MessageDigest digest = sha256();
+    byte[] buffer = new byte[64 * 1024];
+    try {
+      int read;
+      while ((read = content.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read content for hashing", e);
+    }
+    return etagOf(digest);
+  }
+
+  /** Creates a digest that computes an etag incrementally, e.g. while content is streamed. */
+  public static MessageDigest newEtagDigest() {
+    return sha256();
+  }
+
+  /** Completes an etag computed with a digest from {@link #newEtagDigest}. */
+  public static String etagOf(MessageDigest digest) {
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.streamfirst.iceberg.hybrid.domain;
 
 import java.time.Instant;
+import java.util.List;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.Value;
@@ -32,11 +33,20 @@ public class SyncEvent {
   /** The region that needs to receive the synchronized data */
   @NonNull Region targetRegion;
 
+  /** Data files to replicate for DATA_SYNC events; empty for other event types */
+  @NonNull @With List<StoragePath> dataFiles;
+
   /** Current processing status of this event */
   @NonNull @With Status status;
 
-  /** When this event was originally created */
-  @NonNull Instant createdAt;
+  /** Number of times this event has been claimed for processing */
+  @With int attempts;
+
+  /**
+   * When this event was originally created. An event that supersedes pending ones inherits the
+   * oldest creation time among them, so it reflects the oldest work it covers.
+   */
+  @NonNull @With Instant createdAt;
 
   /** When this event was last updated */
   @NonNull @With Instant updatedAt;
@@ -63,8 +73,12 @@ public class SyncEvent {
         + sourceRegion
         + ", targetRegion="
         + targetRegion
+        + ", dataFileCount="
+        + dataFiles.size()
         + ", status="
         + status
+        + ", attempts="
+        + attempts
         + '}';
   }
 
@@ -87,6 +101,10 @@ public class SyncEvent {
     /** Event completed successfully */
     COMPLETED,
     /** Event failed and requires intervention */
-    FAILED
+    FAILED,
+    /** Event was replaced by a newer event for the same table and region before processing */
+    SUPERSEDED,
+    /** Event exhausted its retry attempts and was moved to the dead-letter store */
+    DEAD_LETTERED
   }
 }
@@ -0,0 +1,126 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.application.AdaptiveConcurrencyLimiter;
+import com.streamfirst.iceberg.hybrid.application.AimdPolicy;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the adaptive concurrency limiter backs a region pair's limit off on failures and slow
+ * operations, once per round of operations, and grows it back while operations succeed; and that
+ * competing flows get the pair's slots in proportion to their weights.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+  private static final Region SOURCE = new Region("us-east-1", "US East (Virginia)");
+  private static final Region TARGET = new Region("eu-west-1", "EU West (Ireland)");
+  private static final Duration FAST = Duration.ofMillis(1);
+  private static final AimdPolicy POLICY = new AimdPolicy(1, 8, 16, 0.5, Duration.ofSeconds(1));
+
+  @Test
+  void testLimitBacksOffOncePerRound() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(POLICY);
+    List<AdaptiveConcurrencyLimiter.Permit> round = acquire(limiter, 3);
+
+    round.get(0).onFailure();
+    assertEquals(4, limiter.getLimit(SOURCE, TARGET));
+    // Started before the back-off, so part of the same burst
+    round.get(1).onFailure();
+    round.get(2).onSuccess(Duration.ofSeconds(2), 1024);
+    assertEquals(4, limiter.getLimit(SOURCE, TARGET));
+
+    // A slow operation started after the back-off is congestion again
+    acquire(limiter, 1).get(0).onSuccess(Duration.ofSeconds(2), 1024);
+    assertEquals(2, limiter.getLimit(SOURCE, TARGET));
+    acquire(limiter, 1).get(0).onFailure();
+    acquire(limiter, 1).get(0).onFailure();
+    assertEquals(POLICY.minLimit(), limiter.getLimit(SOURCE, TARGET), "Never below the minimum");
+    assertEquals(0, limiter.getInFlight(SOURCE, TARGET));
+  }
+
+  @Test
+  void testLimitGrowsBackWhileOperationsSucceed() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(POLICY);
+    acquire(limiter, 1).get(0).onFailure();
+    acquire(limiter, 1).get(0).onFailure();
+    assertEquals(2, limiter.getLimit(SOURCE, TARGET));
+
+    int previous = limiter.getLimit(SOURCE, TARGET);
+    for (int round = 0; round < 200; round++) {
+      // Rounds that fill the limit, as the copy engine does under load
+      for (AdaptiveConcurrencyLimiter.Permit permit :
+          acquire(limiter, limiter.getLimit(SOURCE, TARGET))) {
+        permit.onSuccess(FAST, 1024);
+      }
+      int limit = limiter.getLimit(SOURCE, TARGET);
+      assertTrue(limit >= previous, "The limit only grows while operations succeed");
+      previous = limit;
+    }
+    assertEquals(POLICY.maxLimit(), limiter.getLimit(SOURCE, TARGET), "Grows up to the maximum");
+  }
+
+  @Test
+  void testIdleLimitDoesNotGrow() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(POLICY);
+    for (int i = 0; i < 100; i++) {
+      // One operation at a time uses too little of the limit to justify more
+      acquire(limiter, 1).get(0).onSuccess(FAST, 1024);
+    }
+    assertEquals(POLICY.initialLimit(), limiter.getLimit(SOURCE, TARGET));
+  }
+
+  @Test
+  void testFlowsShareSlotsByWeight() throws InterruptedException {
+    AdaptiveConcurrencyLimiter limiter =
+        new AdaptiveConcurrencyLimiter(new AimdPolicy(1, 1, 1, 0.5, Duration.ofSeconds(1)));
+    AdaptiveConcurrencyLimiter.Flow heavy = new AdaptiveConcurrencyLimiter.Flow("heavy", 3);
+    AdaptiveConcurrencyLimiter.Flow light = new AdaptiveConcurrencyLimiter.Flow("light", 1);
+    AdaptiveConcurrencyLimiter.Permit blocker = limiter.acquire(SOURCE, TARGET);
+
+    // Both flows queue more operations than they will get slots for in the first round
+    List<Object> granted = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (AdaptiveConcurrencyLimiter.Flow flow : List.of(heavy, light)) {
+      for (int i = 0; i < 8; i++) {
+        Thread thread =
+            new Thread(
+                () -> {
+                  AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(SOURCE, TARGET, flow);
+                  granted.add(flow.key());
+                  // Exactly the charge estimated up front, so no flow is credited or charged more
+                  permit.onSuccess(FAST, 1024 * 1024);
+                });
+        thread.start();
+        threads.add(thread);
+      }
+    }
+    while (!threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+      Thread.sleep(1);
+    }
+    blocker.onIgnore();
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    List<Object> firstRound = granted.subList(0, 8);
+    assertEquals(6, Collections.frequency(firstRound, "heavy"), "Three slots per light one");
+    assertEquals(2, Collections.frequency(firstRound, "light"));
+    assertEquals(16, granted.size());
+  }
+
+  private static List<AdaptiveConcurrencyLimiter.Permit> acquire(
+      AdaptiveConcurrencyLimiter limiter, int count) {
+    List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      permits.add(limiter.acquire(SOURCE, TARGET));
+    }
+    return permits;
+  }
+}
@@ -0,0 +1,49 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.application.BandwidthLimiter;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the bandwidth limiter lets a pair's burst through at once, makes copies beyond it wait
+ * until their bytes are paid for at the pair's rate, and leaves pairs without a limit alone.
+ */
+public class BandwidthLimiterTest {
+
+  private static final Region US_EAST = new Region("us-east-1", "US East (Virginia)");
+  private static final Region EU_WEST = new Region("eu-west-1", "EU West (Ireland)");
+  private static final long BYTES_PER_SECOND = 1_000_000;
+
+  @Test
+  void testCopiesBeyondBurstWaitForRate() {
+    BandwidthLimiter limiter = new BandwidthLimiter();
+    limiter.setLimit(US_EAST, EU_WEST, BYTES_PER_SECOND, 100_000);
+
+    assertTrue(elapsed(() -> limiter.acquire(US_EAST, EU_WEST, 100_000)).toMillis() < 50);
+    // Larger than the bucket holds, so it goes into debt and waits for 200ms of refill
+    Duration waited = elapsed(() -> limiter.acquire(US_EAST, EU_WEST, 200_000));
+    assertTrue(waited.toMillis() >= 150, "Waited only " + waited);
+    assertTrue(waited.toMillis() < 2_000, "Waited " + waited);
+  }
+
+  @Test
+  void testPairsWithoutLimitAreNotThrottled() {
+    BandwidthLimiter limiter = new BandwidthLimiter();
+    limiter.setLimit(US_EAST, EU_WEST, BYTES_PER_SECOND, 1);
+
+    // Limits are per direction
+    assertTrue(elapsed(() -> limiter.acquire(EU_WEST, US_EAST, 10_000_000)).toMillis() < 50);
+    limiter.removeLimit(US_EAST, EU_WEST);
+    assertTrue(elapsed(() -> limiter.acquire(US_EAST, EU_WEST, 10_000_000)).toMillis() < 50);
+    assertTrue(limiter.getLimits().isEmpty());
+  }
+
+  private static Duration elapsed(Runnable action) {
+    long start = System.nanoTime();
+    action.run();
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+}
@@ -0,0 +1,190 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.adapters.CachingStoragePort;
+import com.streamfirst.iceberg.hybrid.adapters.InMemoryStorageAdapter;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the read-through cache in front of a storage port: hits after a miss, dropping copies on
+ * writes and deletes, eviction of the least recently read files, reads of files too large to cache,
+ * concurrent misses sharing one fetch, and revalidation of cached copies against the delegate.
+ */
+public class CachingStoragePortTest {
+
+  private static final Region REGION = new Region("eu-west-1", "EU West (Ireland)");
+  private static final StorageLocation LOCATION = new StorageLocation(REGION, "mem://eu", "mem");
+  private static final StoragePath FIRST = StoragePath.of("data/first.parquet");
+  private static final StoragePath SECOND = StoragePath.of("data/second.parquet");
+  private static final StoragePath THIRD = StoragePath.of("data/third.parquet");
+  private static final long CACHE_BYTES = 250;
+
+  @TempDir Path cacheDirectory;
+
+  private final CountingStorage storage = new CountingStorage();
+
+  CachingStoragePortTest() {
+    storage.registerStorageLocation(REGION, LOCATION);
+  }
+
+  @Test
+  void testReadAfterMissIsServedFromCache() {
+    CachingStoragePort cache = open(CachingStoragePort.DEFAULT_REVALIDATION_INTERVAL);
+    storage.writeFile(LOCATION, FIRST, filled(100, (byte) 1));
+
+    assertArrayEquals(filled(100, (byte) 1), cache.readFile(LOCATION, FIRST));
+    assertArrayEquals(filled(10, (byte) 1), cache.readRange(LOCATION, FIRST, 20, 10));
+
+    CachingStoragePort.CacheStats stats = cache.getStats();
+    assertEquals(1, stats.misses());
+    assertEquals(1, stats.hits());
+    assertEquals(1, storage.fetches.get());
+    assertEquals(1, storage.inspections.get(), "A recently validated copy is not checked again");
+  }
+
+  @Test
+  void testWritesAndDeletesDropCachedCopy() {
+    CachingStoragePort cache = open(CachingStoragePort.DEFAULT_REVALIDATION_INTERVAL);
+    cache.writeFile(LOCATION, FIRST, filled(100, (byte) 1));
+    cache.readFile(LOCATION, FIRST);
+
+    cache.writeFile(LOCATION, FIRST, filled(100, (byte) 2));
+    assertArrayEquals(filled(100, (byte) 2), cache.readFile(LOCATION, FIRST));
+    assertEquals(2, cache.getStats().misses());
+
+    cache.deleteFile(LOCATION, FIRST);
+    assertEquals(0, cache.getStats().cachedFiles());
+    assertThrows(RuntimeException.class, () -> cache.readFile(LOCATION, FIRST));
+  }
+
+  @Test
+  void testLeastRecentlyReadFileIsEvicted() {
+    CachingStoragePort cache = open(CachingStoragePort.DEFAULT_REVALIDATION_INTERVAL);
+    for (StoragePath path : List.of(FIRST, SECOND, THIRD)) {
+      storage.writeFile(LOCATION, path, filled(100, (byte) 1));
+    }
+    cache.readFile(LOCATION, FIRST);
+    cache.readFile(LOCATION, SECOND);
+    cache.readFile(LOCATION, FIRST);
+    cache.readFile(LOCATION, THIRD);
+
+    CachingStoragePort.CacheStats stats = cache.getStats();
+    assertEquals(1, stats.evictions());
+    assertEquals(2, stats.cachedFiles());
+    assertEquals(200, stats.cachedBytes());
+
+    cache.readFile(LOCATION, FIRST);
+    assertEquals(3, cache.getStats().misses(), "The more recently read file stayed cached");
+    cache.readFile(LOCATION, SECOND);
+    assertEquals(4, cache.getStats().misses(), "The least recently read file was evicted");
+  }
+
+  @Test
+  void testFileLargerThanCacheIsReadDirectly() {
+    CachingStoragePort cache = open(CachingStoragePort.DEFAULT_REVALIDATION_INTERVAL);
+    storage.writeFile(LOCATION, FIRST, filled((int) CACHE_BYTES + 1, (byte) 1));
+
+    assertArrayEquals(filled((int) CACHE_BYTES + 1, (byte) 1), cache.readFile(LOCATION, FIRST));
+
+    CachingStoragePort.CacheStats stats = cache.getStats();
+    assertEquals(1, stats.bypassed());
+    assertEquals(0, stats.misses());
+    assertEquals(0, stats.cachedFiles());
+    assertEquals(0, storage.fetches.get(), "Nothing is fetched into the cache");
+  }
+
+  @Test
+  void testConcurrentMissesShareOneFetch() throws Exception {
+    CachingStoragePort cache = open(CachingStoragePort.DEFAULT_REVALIDATION_INTERVAL);
+    storage.writeFile(LOCATION, FIRST, filled(100, (byte) 1));
+    storage.fetchGate = new CountDownLatch(1);
+
+    int readers = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(readers);
+    try {
+      List<Future<byte[]>> reads = new ArrayList<>();
+      for (int i = 0; i < readers; i++) {
+        reads.add(executor.submit(() -> cache.readFile(LOCATION, FIRST)));
+      }
+      // Hold the fetch until every other reader is waiting for it
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (cache.getStats().coalescedMisses() < readers - 1 && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      storage.fetchGate.countDown();
+      for (Future<byte[]> read : reads) {
+        assertArrayEquals(filled(100, (byte) 1), read.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    CachingStoragePort.CacheStats stats = cache.getStats();
+    assertEquals(1, stats.misses());
+    assertEquals(readers - 1, stats.coalescedMisses());
+    assertEquals(1, storage.fetches.get());
+  }
+
+  @Test
+  void testCopyReplacedElsewhereIsNotServedOnceRevalidated() {
+    CachingStoragePort cache = open(Duration.ZERO);
+    storage.writeFile(LOCATION, FIRST, filled(100, (byte) 1));
+    cache.readFile(LOCATION, FIRST);
+
+    // Replaced in the delegate, behind the cache's back
+    storage.writeFile(LOCATION, FIRST, filled(100, (byte) 2));
+    assertArrayEquals(filled(100, (byte) 2), cache.readFile(LOCATION, FIRST));
+    assertEquals(2, cache.getStats().misses());
+    assertEquals(2, storage.inspections.get(), "Every read is validated with a zero interval");
+  }
+
+  private CachingStoragePort open(Duration revalidationInterval) {
+    return new CachingStoragePort(storage, cacheDirectory, CACHE_BYTES, revalidationInterval);
+  }
+
+  private static byte[] filled(int length, byte value) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, value);
+    return bytes;
+  }
+
+  /** In-memory storage counting etag lookups and whole-file reads, which can be held back. */
+  private static class CountingStorage extends InMemoryStorageAdapter {
+    final AtomicInteger inspections = new AtomicInteger();
+    final AtomicInteger fetches = new AtomicInteger();
+    volatile CountDownLatch fetchGate = new CountDownLatch(0);
+
+    @Override
+    public Optional<StoredObject> getObjectInfo(StorageLocation location, StoragePath path) {
+      inspections.incrementAndGet();
+      return super.getObjectInfo(location, path);
+    }
+
+    @Override
+    public InputStream readFileStream(StorageLocation location, StoragePath path) {
+      fetches.incrementAndGet();
+      try {
+        fetchGate.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return super.readFileStream(location, path);
+    }
+  }
+}
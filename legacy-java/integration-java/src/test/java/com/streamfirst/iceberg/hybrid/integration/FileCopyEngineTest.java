@@ -0,0 +1,117 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.adapters.InMemoryStorageAdapter;
+import com.streamfirst.iceberg.hybrid.application.*;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests chunked copies in the file copy engine: an interrupted upload of the same content resumes
+ * with only the chunks still missing at the target, and uploads started for other content are
+ * aborted rather than completed.
+ */
+public class FileCopyEngineTest {
+
+  private static final Region US_EAST = new Region("us-east-1", "US East (Virginia)");
+  private static final Region EU_WEST = new Region("eu-west-1", "EU West (Ireland)");
+  private static final StorageLocation SOURCE = new StorageLocation(US_EAST, "mem://us", "mem");
+  private static final StorageLocation TARGET = new StorageLocation(EU_WEST, "mem://eu", "mem");
+  private static final StoragePath FILE = StoragePath.of("data/part-0.parquet");
+  // Ten bytes in chunks of four: parts of 4, 4 and 2 bytes
+  private static final byte[] CONTENT = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+  private final RecordingStorage storage = new RecordingStorage();
+  private final FileCopyEngine copyEngine =
+      new FileCopyEngine(
+          storage,
+          4,
+          1024,
+          new RetryPolicy(1, Duration.ofMillis(1), Duration.ofMillis(1)),
+          new AdaptiveConcurrencyLimiter(AimdPolicy.defaults(4)),
+          new ChunkingPolicy(8, 4));
+
+  FileCopyEngineTest() {
+    storage.registerStorageLocation(US_EAST, SOURCE);
+    storage.registerStorageLocation(EU_WEST, TARGET);
+    storage.writeFile(SOURCE, FILE, CONTENT);
+  }
+
+  @AfterEach
+  void tearDown() {
+    copyEngine.close();
+  }
+
+  @Test
+  void testInterruptedUploadResumesWithMissingChunks() {
+    String uploadId = storage.createMultipartUpload(TARGET, FILE, sourceEtag());
+    storage.uploadPart(TARGET, FILE, uploadId, 1, new byte[] {0, 1, 2, 3});
+    // Cut with a different chunk size, so it cannot be kept
+    storage.uploadPart(TARGET, FILE, uploadId, 2, new byte[] {4, 5, 6});
+    storage.uploadedParts.clear();
+
+    FileCopyEngine.CopyReport report = copy();
+
+    assertTrue(report.isComplete(), "Failed: " + report.failedFiles());
+    assertEquals(1, report.filesCopied());
+    assertEquals(List.of(2, 3), sorted(storage.uploadedParts), "Only the unusable chunks copied");
+    assertArrayEquals(CONTENT, storage.readFile(TARGET, FILE));
+    assertEquals(List.of(), storage.aborted, "The resumed upload is completed, not aborted");
+    assertEquals(List.of(), storage.listMultipartUploads(TARGET, FILE));
+  }
+
+  @Test
+  void testUploadForOtherContentIsAborted() {
+    String staleId = storage.createMultipartUpload(TARGET, FILE, "etag-of-older-content");
+    storage.uploadPart(TARGET, FILE, staleId, 1, new byte[] {9, 9, 9, 9});
+    storage.uploadPart(TARGET, FILE, staleId, 2, new byte[] {9, 9, 9, 9});
+    storage.uploadedParts.clear();
+
+    FileCopyEngine.CopyReport report = copy();
+
+    assertTrue(report.isComplete(), "Failed: " + report.failedFiles());
+    assertEquals(List.of(staleId), storage.aborted);
+    assertEquals(List.of(1, 2, 3), sorted(storage.uploadedParts), "No stale chunk is reused");
+    assertArrayEquals(CONTENT, storage.readFile(TARGET, FILE));
+    assertEquals(List.of(), storage.listMultipartUploads(TARGET, FILE));
+  }
+
+  private FileCopyEngine.CopyReport copy() {
+    return copyEngine.copy(SOURCE, TARGET, List.of(new FileCopyEngine.CopyRequest(FILE, FILE)));
+  }
+
+  private String sourceEtag() {
+    return storage.getObjectInfo(SOURCE, FILE).orElseThrow().etag();
+  }
+
+  private static List<Integer> sorted(List<Integer> parts) {
+    List<Integer> ordered = new ArrayList<>(parts);
+    Collections.sort(ordered);
+    return ordered;
+  }
+
+  /** In-memory storage recording the parts uploaded and the uploads aborted. */
+  private static class RecordingStorage extends InMemoryStorageAdapter {
+    final List<Integer> uploadedParts = Collections.synchronizedList(new ArrayList<>());
+    final List<String> aborted = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void uploadPart(
+        StorageLocation location, StoragePath path, String uploadId, int partNumber, byte[] data) {
+      uploadedParts.add(partNumber);
+      super.uploadPart(location, path, uploadId, partNumber, data);
+    }
+
+    @Override
+    public void abortMultipartUpload(StorageLocation location, StoragePath path, String uploadId) {
+      aborted.add(uploadId);
+      super.abortMultipartUpload(location, path, uploadId);
+    }
+  }
+}
@@ -13,6 +13,7 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -101,6 +102,12 @@ public class HybridSystemEndToEndTest {
         "Hybrid system setup completed with {} regions", registryAdapter.getAllRegions().size());
   }
 
+  /** Releases the copy threads of the orchestrator created in setup. */
+  @AfterEach
+  void closeHybridSystem() {
+    syncOrchestrator.close();
+  }
+
   /**
    * Tests the complete write-to-read flow across multiple regions.
    *
@@ -267,6 +274,44 @@ public class HybridSystemEndToEndTest {
     log.info("Synchronization retry test completed successfully");
   }
 
+  /**
+   * Tests that data sync copies exactly the files carried on the DATA_SYNC event to the target
+   * region.
+   */
+  @Test
+  void testDataSyncCopiesManifestFiles() throws Exception {
+    log.info("Testing data sync from event manifest");
+
+    writeCoordinator.createTable(TEST_TABLE, TEST_SCHEMA, US_EAST);
+    registryAdapter.registerTableLocation(TEST_TABLE, EU_WEST, "tables/test_namespace/test_table");
+
+    StorageLocation usStorage = storageAdapter.getStorageLocation(US_EAST);
+    StorageLocation euStorage = storageAdapter.getStorageLocation(EU_WEST);
+    List<StoragePath> newFiles =
+        List.of(StoragePath.of("data/file1.parquet"), StoragePath.of("data/file2.parquet"));
+    for (StoragePath file : newFiles) {
+      storageAdapter.writeFile(usStorage, file, new byte[] {1, 2, 3});
+    }
+
+    CommitRequest commitRequest =
+        new CommitRequest(TEST_TABLE, US_EAST, Instant.now(), newFiles, TEST_SCHEMA, "INSERT");
+    writeCoordinator.executeWrite(commitRequest).get(5, TimeUnit.SECONDS);
+
+    List<SyncEvent> dataEvents =
+        syncAdapter.getSyncEvents(event -> event.getType() == SyncEvent.Type.DATA_SYNC);
+    assertEquals(1, dataEvents.size(), "Should publish one data sync event");
+    assertEquals(newFiles, dataEvents.get(0).getDataFiles(), "Event should carry the new files");
+
+    int processed = syncOrchestrator.processPendingEvents(EU_WEST);
+    assertEquals(2, processed, "Metadata and data events should both succeed");
+
+    for (StoragePath file : newFiles) {
+      StoragePath replica = StoragePath.of("tables/test_namespace/test_table", file.getFileName());
+      assertTrue(storageAdapter.fileExists(euStorage, replica), "File should be replicated");
+    }
+    assertTrue(syncAdapter.getPendingEvents(EU_WEST).isEmpty(), "No events should remain");
+  }
+
   /** Tests system statistics and monitoring capabilities. */
   @Test
   void testSystemMonitoring() {
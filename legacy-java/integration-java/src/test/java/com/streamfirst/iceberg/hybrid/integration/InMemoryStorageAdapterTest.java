@@ -0,0 +1,117 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.adapters.InMemoryStorageAdapter;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests paged listing in the in-memory storage adapter: pages stop at the end of the prefix, a
+ * full last page is not reported as truncated, and a start-after key below, inside or above the
+ * prefix's range resumes where the same filter over every path would.
+ */
+public class InMemoryStorageAdapterTest {
+
+  private static final Region REGION = new Region("eu-west-1", "EU West (Ireland)");
+  private static final StorageLocation LOCATION = new StorageLocation(REGION, "mem://eu", "mem");
+  // Around the "data/a/" prefix: a sibling sharing its characters, and keys on either side
+  private static final List<String> FILES =
+      List.of("aa", "data/a/1", "data/a/2", "data/a/3", "data/ab", "data/b/1", "meta/x");
+
+  private final InMemoryStorageAdapter storage = new InMemoryStorageAdapter();
+
+  InMemoryStorageAdapterTest() {
+    storage.registerStorageLocation(REGION, LOCATION);
+    for (String file : FILES) {
+      storage.writeFile(LOCATION, StoragePath.of(file), new byte[] {1});
+    }
+  }
+
+  @Test
+  void testPagesStopAtEndOfPrefix() {
+    FileListing first = storage.listFiles(LOCATION, "data/a/", null, 2);
+    assertEquals(paths("data/a/1", "data/a/2"), first.paths());
+    assertEquals("data/a/2", first.nextStartAfter());
+
+    FileListing last = storage.listFiles(LOCATION, "data/a/", first.nextStartAfter(), 2);
+    assertEquals(paths("data/a/3"), last.paths(), "Nothing past the prefix");
+    assertFalse(last.isTruncated());
+
+    FileListing exact = storage.listFiles(LOCATION, "data/a/", null, 3);
+    assertEquals(paths("data/a/1", "data/a/2", "data/a/3"), exact.paths());
+    assertFalse(exact.isTruncated(), "A page ending with the prefix's last file is the last page");
+
+    FileListing sibling = storage.listFiles(LOCATION, "data/a", null, 3);
+    assertTrue(sibling.isTruncated(), "The prefix is matched by characters, not by directory");
+    assertEquals(paths("data/ab"), storage.listFiles(LOCATION, "data/a", "data/a/3", 3).paths());
+  }
+
+  @Test
+  void testStartAfterOutsidePrefix() {
+    assertEquals(
+        paths("data/a/1", "data/a/2"),
+        storage.listFiles(LOCATION, "data/a/", "aa", 2).paths(),
+        "Below the prefix, listing starts at its first file");
+    assertEquals(
+        paths("data/a/1", "data/a/2"), storage.listFiles(LOCATION, "data/a/", "data/", 2).paths());
+
+    FileListing above = storage.listFiles(LOCATION, "data/a/", "data/ab", 2);
+    assertEquals(List.of(), above.paths(), "Above the prefix, nothing is left");
+    assertFalse(above.isTruncated());
+    assertEquals(List.of(), storage.listFiles(LOCATION, "data/a/", "zz", 2).paths());
+
+    assertEquals(
+        paths("data/a/2", "data/a/3"),
+        storage.listFiles(LOCATION, "data/a/", "data/a/15", 2).paths(),
+        "A start-after key that is not a file resumes at the next one");
+  }
+
+  @Test
+  void testPagingMatchesFilterOverAllPaths() {
+    List<String> prefixes = List.of("", "a", "data/", "data/a", "data/a/", "data/b", "none");
+    List<String> startKeys = new ArrayList<>(FILES);
+    startKeys.addAll(Arrays.asList(null, "", "data/a/", "data/a/0", "data/a/4", "m", "zz"));
+
+    for (String prefix : prefixes) {
+      for (String startAfter : startKeys) {
+        List<StoragePath> expected =
+            FILES.stream()
+                .filter(file -> file.startsWith(prefix))
+                .filter(file -> startAfter == null || file.compareTo(startAfter) > 0)
+                .map(StoragePath::of)
+                .toList();
+        for (int limit = 1; limit <= FILES.size() + 1; limit++) {
+          assertEquals(
+              expected,
+              listAll(prefix, startAfter, limit),
+              "prefix '" + prefix + "' after '" + startAfter + "' in pages of " + limit);
+        }
+      }
+    }
+  }
+
+  /** Lists every page from the start-after key on, checking each page against its request. */
+  private List<StoragePath> listAll(String prefix, String startAfter, int limit) {
+    List<StoragePath> listed = new ArrayList<>();
+    String next = startAfter;
+    do {
+      FileListing page = storage.listFiles(LOCATION, prefix, next, limit);
+      assertTrue(page.paths().size() <= limit);
+      assertTrue(!page.isTruncated() || page.paths().size() == limit, "Only full pages continue");
+      for (StoragePath path : page.paths()) {
+        assertTrue(next == null || path.toString().compareTo(next) > 0, "Listed after " + next);
+      }
+      listed.addAll(page.paths());
+      next = page.nextStartAfter();
+    } while (next != null);
+    return listed;
+  }
+
+  private static List<StoragePath> paths(String... paths) {
+    return Arrays.stream(paths).map(StoragePath::of).toList();
+  }
+}
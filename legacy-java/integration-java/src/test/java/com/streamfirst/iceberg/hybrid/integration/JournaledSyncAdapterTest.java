@@ -0,0 +1,234 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.adapters.JournaledSyncAdapter;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that the journaled sync adapter restores its events after a restart: from segments alone,
+ * from a checkpoint plus the segments written after it, and with a torn record at the end of the
+ * journal. Each test closes the adapter and opens a new one on the same directory. Also tests
+ * that a journal whose writes have failed rejects further changes instead of blocking.
+ */
+public class JournaledSyncAdapterTest {
+
+  private static final Region SOURCE = new Region("us-east-1", "US East (Virginia)");
+  private static final Region TARGET = new Region("eu-west-1", "EU West (Ireland)");
+  private static final Duration CHECKPOINT_INTERVAL = Duration.ofHours(1);
+
+  @TempDir Path journalDirectory;
+
+  @Test
+  void testRecoveryIgnoresTornTail() throws IOException {
+    List<EventId> published;
+    try (JournaledSyncAdapter journal = open()) {
+      published = List.of(publish(journal, "a"), publish(journal, "b"), publish(journal, "c"));
+    }
+
+    // A record cut short by a crash: a length and checksum, then fewer bytes than the length
+    Path lastSegment = segments().get(segments().size() - 1);
+    Files.write(
+        lastSegment,
+        ByteBuffer.allocate(12).putInt(100).putInt(0).putInt(42).array(),
+        StandardOpenOption.APPEND);
+
+    try (JournaledSyncAdapter journal = open()) {
+      assertEquals(published, pendingIds(journal));
+      publish(journal, "d");
+    }
+    try (JournaledSyncAdapter journal = open()) {
+      assertEquals(4, journal.getPendingEvents(TARGET).size(), "Writes resume after a torn tail");
+    }
+  }
+
+  @Test
+  void testRecoveryReplaysSegmentsAfterCheckpoint() {
+    EventId completed;
+    EventId failed;
+    EventId late;
+    long checkpointSegment;
+    try (JournaledSyncAdapter journal = open()) {
+      completed = publish(journal, "a");
+      failed = publish(journal, "b");
+      publish(journal, "c");
+      journal.checkpoint();
+      checkpointSegment = journal.getCurrentSegment();
+
+      List<SyncEvent> claimed =
+          journal.claimPendingEvents(TARGET, "worker", 2, Duration.ofHours(1));
+      assertEquals(
+          List.of(completed, failed), claimed.stream().map(SyncEvent::getEventId).toList());
+      journal.completeClaim(completed, "worker", SyncEvent.Status.COMPLETED);
+      journal.completeClaim(failed, "worker", SyncEvent.Status.FAILED);
+      late = publish(journal, "d");
+    }
+
+    try (JournaledSyncAdapter journal = open()) {
+      assertEquals(SyncEvent.Status.COMPLETED, status(journal, completed));
+      assertEquals(SyncEvent.Status.FAILED, status(journal, failed));
+      assertEquals(SyncEvent.Status.PENDING, status(journal, late));
+      assertEquals(4, journal.getTotalEventCount());
+    }
+    assertTrue(
+        segments().stream().allMatch(segment -> segmentNumber(segment) >= checkpointSegment),
+        "Segments covered by the checkpoint are deleted");
+  }
+
+  @Test
+  void testRecoveredClaimDoesNotTakeOverCoalescing() {
+    assertRecoveredClaimKeepsNewestCoalescible(false);
+  }
+
+  @Test
+  void testRecoveredClaimDoesNotTakeOverCoalescingFromCheckpoint() {
+    assertRecoveredClaimKeepsNewestCoalescible(true);
+  }
+
+  @Test
+  void testRecoveryKeepsWorkOfEventSupersededAtCrash() throws IOException {
+    EventId superseded;
+    EventId successor;
+    try (JournaledSyncAdapter journal = open()) {
+      superseded = publish(journal, "a");
+      successor = publish(journal, "a");
+      assertEquals(SyncEvent.Status.SUPERSEDED, status(journal, superseded));
+    }
+
+    // A crash between the two records of the supersession loses the second of them
+    Path lastSegment = segments().get(segments().size() - 1);
+    ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(lastSegment));
+    int lastRecord = 0;
+    while (records.hasRemaining()) {
+      lastRecord = records.position();
+      records.position(lastRecord + 8 + records.getInt(lastRecord));
+    }
+    try (FileChannel channel = FileChannel.open(lastSegment, StandardOpenOption.WRITE)) {
+      channel.truncate(lastRecord);
+    }
+
+    try (JournaledSyncAdapter journal = open()) {
+      // Both are pending, so the superseded event's work is done twice rather than lost
+      assertEquals(List.of(superseded, successor), pendingIds(journal));
+    }
+  }
+
+  @Test
+  void testClosedJournalRejectsChanges() {
+    JournaledSyncAdapter journal = open();
+    journal.close();
+    SyncEvent event = journal.createMetadataSyncEvent(metadata("a"), TARGET);
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(5),
+        () -> assertThrows(IllegalStateException.class, () -> journal.publishSyncEvent(event)));
+  }
+
+  @Test
+  void testFailedWriteRejectsChangesAndCheckpoints() throws IOException {
+    try (JournaledSyncAdapter journal = open()) {
+      publish(journal, "a");
+      // Taking the next segment's name makes the roll to it fail
+      Files.createFile(segmentFile(journal.getCurrentSegment() + 1));
+      assertThrows(RuntimeException.class, journal::checkpoint);
+
+      SyncEvent event = journal.createMetadataSyncEvent(metadata("b"), TARGET);
+      assertTimeoutPreemptively(
+          Duration.ofSeconds(5),
+          () -> {
+            assertThrows(UncheckedIOException.class, journal::checkpoint);
+            assertThrows(UncheckedIOException.class, () -> journal.publishSyncEvent(event));
+          });
+    }
+  }
+
+  /**
+   * An event claimed before a restart comes back PENDING alongside the newer event published while
+   * it was claimed. A later event for the same table must supersede the newer one, not the event
+   * that was handed back.
+   */
+  private void assertRecoveredClaimKeepsNewestCoalescible(boolean checkpoint) {
+    EventId claimed;
+    EventId newer;
+    try (JournaledSyncAdapter journal = open()) {
+      claimed = publish(journal, "a");
+      journal.claimPendingEvents(TARGET, "worker", 1, Duration.ofHours(1));
+      newer = publish(journal, "a");
+      if (checkpoint) {
+        journal.checkpoint();
+      }
+    }
+
+    try (JournaledSyncAdapter journal = open()) {
+      assertEquals(List.of(claimed, newer), pendingIds(journal));
+      EventId latest = publish(journal, "a");
+      assertEquals(SyncEvent.Status.PENDING, status(journal, claimed));
+      assertEquals(SyncEvent.Status.SUPERSEDED, status(journal, newer));
+      assertEquals(SyncEvent.Status.PENDING, status(journal, latest));
+    }
+  }
+
+  private JournaledSyncAdapter open() {
+    return new JournaledSyncAdapter(journalDirectory, CHECKPOINT_INTERVAL);
+  }
+
+  private static EventId publish(JournaledSyncAdapter journal, String table) {
+    SyncEvent event = journal.createMetadataSyncEvent(metadata(table), TARGET);
+    journal.publishSyncEvent(event);
+    return event.getEventId();
+  }
+
+  private static TableMetadata metadata(String table) {
+    return new TableMetadata(
+        new TableId("test_namespace", table),
+        new CommitId("commit-" + table),
+        SOURCE,
+        Instant.now(),
+        List.of(),
+        "{}");
+  }
+
+  private static List<EventId> pendingIds(JournaledSyncAdapter journal) {
+    return journal.getPendingEvents(TARGET).stream().map(SyncEvent::getEventId).toList();
+  }
+
+  private static SyncEvent.Status status(JournaledSyncAdapter journal, EventId eventId) {
+    return journal.getAllEvents().stream()
+        .filter(event -> event.getEventId().equals(eventId))
+        .findFirst()
+        .orElseThrow()
+        .getStatus();
+  }
+
+  private List<Path> segments() {
+    try (Stream<Path> files = Files.list(journalDirectory)) {
+      return files
+          .filter(file -> file.getFileName().toString().startsWith("segment-"))
+          .sorted()
+          .toList();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private Path segmentFile(long number) {
+    return journalDirectory.resolve(String.format("segment-%012d.log", number));
+  }
+
+  private static long segmentNumber(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+  }
+}
@@ -0,0 +1,209 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.streamfirst.iceberg.hybrid.adapters.LocalFileSystemStorageAdapter;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the local file system storage adapter: atomic replacement of files, multipart uploads that
+ * outlive the adapter, the internal directory staying out of reach of storage paths, and the etags
+ * it caches and stores for files it writes.
+ */
+public class LocalFileSystemStorageAdapterTest {
+
+  private static final Region REGION = new Region("us-east-1", "US East (Virginia)");
+  private static final StorageLocation LOCATION =
+      new StorageLocation(REGION, "s3://us-east-bucket", "s3");
+  private static final StoragePath PATH = StoragePath.of("data/table.parquet");
+
+  @TempDir Path rootDirectory;
+
+  private LocalFileSystemStorageAdapter storage;
+
+  @BeforeEach
+  void setUp() {
+    storage = open();
+  }
+
+  @Test
+  void testWriteReplacesFileAtomically() throws IOException {
+    byte[] original = filled(100_000, (byte) 1);
+    byte[] replacement = filled(50_000, (byte) 2);
+    storage.writeFile(LOCATION, PATH, original);
+
+    try (InputStream reader = storage.readFileStream(LOCATION, PATH)) {
+      storage.writeFile(LOCATION, PATH, replacement);
+      // A reader of the old file sees all of it, never a mix or a truncated file
+      assertArrayEquals(original, reader.readAllBytes());
+    }
+    assertArrayEquals(replacement, storage.readFile(LOCATION, PATH));
+    assertEquals(List.of(), internalFiles("staging"), "No staging files are left after a write");
+  }
+
+  @Test
+  void testMultipartUploadResumesAcrossInstances() {
+    byte[] first = filled(1000, (byte) 1);
+    byte[] second = filled(500, (byte) 2);
+    String uploadId = storage.createMultipartUpload(LOCATION, PATH, "source-etag");
+    storage.uploadPart(LOCATION, PATH, uploadId, 1, first);
+
+    LocalFileSystemStorageAdapter restarted = open();
+    assertEquals(List.of(uploadId), restarted.listMultipartUploads(LOCATION, PATH));
+    assertEquals(
+        Optional.of("source-etag"), restarted.getMultipartUploadTag(LOCATION, PATH, uploadId));
+    assertEquals(Map.of(1, 1000L), restarted.listUploadedParts(LOCATION, PATH, uploadId));
+    assertFalse(restarted.fileExists(LOCATION, PATH), "Parts are invisible until completion");
+
+    restarted.uploadPart(LOCATION, PATH, uploadId, 2, second);
+    restarted.completeMultipartUpload(LOCATION, PATH, uploadId, 2);
+
+    byte[] joined = new byte[first.length + second.length];
+    System.arraycopy(first, 0, joined, 0, first.length);
+    System.arraycopy(second, 0, joined, first.length, second.length);
+    assertArrayEquals(joined, restarted.readFile(LOCATION, PATH));
+    assertEquals(
+        StoredObject.computeEtag(joined),
+        restarted.getObjectInfo(LOCATION, PATH).orElseThrow().etag());
+    assertEquals(List.of(), restarted.listMultipartUploads(LOCATION, PATH));
+  }
+
+  @Test
+  void testInternalDirectoryIsHidden() {
+    storage.writeFile(LOCATION, PATH, filled(10, (byte) 1));
+    storage.createMultipartUpload(LOCATION, StoragePath.of("data/pending.parquet"));
+
+    assertEquals(List.of(PATH), storage.listFiles(LOCATION, path -> true));
+    assertEquals(
+        List.of(), storage.listFiles(LOCATION, LocalFileSystemStorageAdapter.INTERNAL_DIRECTORY));
+    StoragePath internal =
+        StoragePath.of(LocalFileSystemStorageAdapter.INTERNAL_DIRECTORY, "staging", "file.tmp");
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> storage.writeFile(LOCATION, internal, filled(10, (byte) 1)));
+    assertThrows(IllegalArgumentException.class, () -> storage.readFile(LOCATION, internal));
+  }
+
+  @Test
+  void testPathTraversalIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> StoragePath.of("data/../../outside"));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> storage.writeFile(LOCATION, StoragePath.of("."), filled(10, (byte) 1)));
+
+    String uploadId = storage.createMultipartUpload(LOCATION, PATH);
+    String escaping = "../../" + uploadId;
+    assertThrows(RuntimeException.class, () -> storage.listUploadedParts(LOCATION, PATH, escaping));
+    assertThrows(
+        RuntimeException.class,
+        () -> storage.uploadPart(LOCATION, PATH, escaping, 1, filled(10, (byte) 1)));
+    storage.abortMultipartUpload(LOCATION, PATH, escaping);
+    assertEquals(List.of(uploadId), storage.listMultipartUploads(LOCATION, PATH));
+  }
+
+  @Test
+  void testCopiesAndCompletedUploadsKeepTheirEtags() throws IOException {
+    byte[] content = filled(10_000, (byte) 1);
+    storage.writeFile(LOCATION, PATH, content);
+    // Hashed while copied, since the source has not been hashed yet
+    StoragePath hashed = StoragePath.of("data/hashed.parquet");
+    storage.copyFile(LOCATION, PATH, LOCATION, hashed);
+    String etag = storage.getObjectInfo(LOCATION, PATH).orElseThrow().etag();
+
+    // Given the source's etag, now that it is cached
+    StoragePath copied = StoragePath.of("data/copy.parquet");
+    storage.copyFile(LOCATION, PATH, LOCATION, copied);
+    StoragePath uploaded = StoragePath.of("data/upload.parquet");
+    String uploadId = storage.createMultipartUpload(LOCATION, uploaded);
+    storage.uploadPart(LOCATION, uploaded, uploadId, 1, content);
+    storage.completeMultipartUpload(LOCATION, uploaded, uploadId, 1);
+
+    // Rewritten in place with the same size and time, which only a cached etag would miss
+    for (StoragePath path : List.of(hashed, copied, uploaded)) {
+      overwriteInPlace(storage.getLocationDirectory(LOCATION).resolve(path.toString()));
+      assertEquals(
+          etag,
+          storage.getObjectInfo(LOCATION, path).orElseThrow().etag(),
+          "Etag of " + path + " is cached when written");
+    }
+  }
+
+  @Test
+  void testEtagsSurviveRestart() throws IOException {
+    assumeTrue(
+        Files.getFileStore(rootDirectory)
+            .supportsFileAttributeView(UserDefinedFileAttributeView.class),
+        "File system cannot store etags with files");
+    storage.writeFile(LOCATION, PATH, filled(10_000, (byte) 1));
+    StoragePath copied = StoragePath.of("data/copy.parquet");
+    // The copy is hashed as it is written, the source when it is first inspected
+    storage.copyFile(LOCATION, PATH, LOCATION, copied);
+    String etag = storage.getObjectInfo(LOCATION, PATH).orElseThrow().etag();
+
+    // Rewritten in place with the same size and time, which only a stored etag would miss
+    Path file = storage.getLocationDirectory(LOCATION).resolve(PATH.toString());
+    overwriteInPlace(file);
+    overwriteInPlace(storage.getLocationDirectory(LOCATION).resolve(copied.toString()));
+    LocalFileSystemStorageAdapter restarted = open();
+    assertEquals(etag, restarted.getObjectInfo(LOCATION, PATH).orElseThrow().etag());
+    assertEquals(etag, restarted.getObjectInfo(LOCATION, copied).orElseThrow().etag());
+
+    // A later change is still noticed
+    Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+    assertEquals(
+        StoredObject.computeEtag(Files.readAllBytes(file)),
+        open().getObjectInfo(LOCATION, PATH).orElseThrow().etag());
+  }
+
+  private LocalFileSystemStorageAdapter open() {
+    LocalFileSystemStorageAdapter adapter = new LocalFileSystemStorageAdapter(rootDirectory);
+    adapter.registerStorageLocation(REGION, LOCATION);
+    return adapter;
+  }
+
+  private List<Path> internalFiles(String directory) throws IOException {
+    Path internal =
+        storage
+            .getLocationDirectory(LOCATION)
+            .resolve(LocalFileSystemStorageAdapter.INTERNAL_DIRECTORY)
+            .resolve(directory);
+    if (!Files.isDirectory(internal)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(internal)) {
+      return files.toList();
+    }
+  }
+
+  private static void overwriteInPlace(Path file) throws IOException {
+    FileTime modified = Files.getLastModifiedTime(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {9}), 0);
+    }
+    Files.setLastModifiedTime(file, modified);
+  }
+
+  private static byte[] filled(int length, byte value) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, value);
+    return bytes;
+  }
+}
@@ -0,0 +1,92 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.adapters.OffHeapStorageAdapter;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that reads from the off-heap storage adapter keep returning a file's content after the file
+ * is deleted or overwritten and its freed memory is reused for another file.
+ */
+public class OffHeapStorageAdapterTest {
+
+  private static final Region REGION = new Region("us-east-1", "US East (Virginia)");
+  private static final StorageLocation LOCATION = new StorageLocation(REGION, "mem://us", "mem");
+  private static final int SLAB_BYTES = 4096;
+
+  private OffHeapStorageAdapter storage;
+
+  @BeforeEach
+  void setUp() {
+    storage = new OffHeapStorageAdapter(SLAB_BYTES, 4L * SLAB_BYTES);
+    storage.registerStorageLocation(REGION, LOCATION);
+  }
+
+  @Test
+  void testBuffersSurviveDeleteAndReuse() {
+    // Spans two chunks, so one range lies within a chunk and the whole buffer does not
+    byte[] original = filled(SLAB_BYTES + 100, (byte) 1);
+    StoragePath path = StoragePath.of("data/original.parquet");
+    storage.writeFile(LOCATION, path, original);
+
+    ByteBuffer whole = storage.readBuffer(LOCATION, path);
+    ByteBuffer range = storage.readRangeBuffer(LOCATION, path, 10, 100);
+    storage.deleteFile(LOCATION, path);
+    storage.writeFile(
+        LOCATION, StoragePath.of("data/other.parquet"), filled(original.length, (byte) 2));
+
+    assertArrayEquals(original, bytes(whole));
+    assertArrayEquals(Arrays.copyOfRange(original, 10, 110), bytes(range));
+  }
+
+  @Test
+  void testStreamKeepsContentUntilClosed() throws IOException {
+    byte[] original = filled(SLAB_BYTES + 100, (byte) 1);
+    StoragePath path = StoragePath.of("data/original.parquet");
+    storage.writeFile(LOCATION, path, original);
+    long used = storage.getUsedBytes();
+
+    try (InputStream stream = storage.readFileStream(LOCATION, path)) {
+      storage.deleteFile(LOCATION, path);
+      storage.writeFile(
+          LOCATION, StoragePath.of("data/other.parquet"), filled(original.length, (byte) 2));
+      assertArrayEquals(original, stream.readAllBytes());
+      assertEquals(2 * used, storage.getUsedBytes(), "An open stream keeps its content");
+    }
+    assertEquals(used, storage.getUsedBytes(), "Closing the stream frees the deleted content");
+  }
+
+  @Test
+  void testOverwriteDoesNotChangeBuffers() {
+    // A whole slab per file, so the only free chunk is the one an overwrite gives back
+    byte[] original = filled(SLAB_BYTES, (byte) 1);
+    StoragePath path = StoragePath.of("data/table.parquet");
+    storage.writeFile(LOCATION, path, original);
+
+    ByteBuffer buffer = storage.readBuffer(LOCATION, path);
+    storage.writeFile(LOCATION, path, filled(SLAB_BYTES, (byte) 2));
+    storage.writeFile(LOCATION, StoragePath.of("data/next.parquet"), filled(SLAB_BYTES, (byte) 3));
+
+    assertArrayEquals(original, bytes(buffer));
+    assertArrayEquals(filled(SLAB_BYTES, (byte) 2), storage.readFile(LOCATION, path));
+  }
+
+  private static byte[] filled(int length, byte value) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, value);
+    return bytes;
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,111 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.application.PartitionedExecutor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the partitioned executor: tasks with the same key run one at a time in submission order,
+ * tasks with different keys run in parallel, and tasks queued before the executor is closed still
+ * run once its pool stops taking them.
+ */
+public class PartitionedExecutorTest {
+
+  private static final int TASKS = 100;
+
+  @Test
+  void testTasksWithSameKeyRunInOrder() throws Exception {
+    List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger overlapping = new AtomicInteger();
+    try (PartitionedExecutor<String> executor = new PartitionedExecutor<>("test", 4)) {
+      List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < TASKS; i++) {
+        int task = i;
+        futures.add(
+            executor.submit(
+                "table",
+                () -> {
+                  if (running.incrementAndGet() > 1) {
+                    overlapping.incrementAndGet();
+                  }
+                  ran.add(task);
+                  running.decrementAndGet();
+                  return task;
+                }));
+      }
+      CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+    }
+
+    // More tasks than one turn, so the key also changes threads on the way
+    assertEquals(IntStream.range(0, TASKS).boxed().toList(), ran);
+    assertEquals(0, overlapping.get(), "Tasks with the same key never overlap");
+  }
+
+  @Test
+  void testTasksWithDifferentKeysRunInParallel() throws Exception {
+    CountDownLatch otherKeyRan = new CountDownLatch(1);
+    try (PartitionedExecutor<String> executor = new PartitionedExecutor<>("test", 2)) {
+      CompletableFuture<Boolean> waiting = executor.submit("first", () -> await(otherKeyRan));
+      // Queued behind the waiting task if the keys shared a thread, which would never finish
+      executor.submit("second", () -> 0).thenRun(otherKeyRan::countDown);
+
+      assertTrue(waiting.get(5, TimeUnit.SECONDS), "The second key ran while the first waited");
+    }
+  }
+
+  @Test
+  void testQueuedTasksRunAfterClose() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+    PartitionedExecutor<String> executor = new PartitionedExecutor<>("test", 2);
+    List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+    futures.add(executor.submit("table", () -> await(release)));
+    for (int i = 0; i < TASKS; i++) {
+      int task = i;
+      futures.add(executor.submit("table", () -> ran.add(task)));
+    }
+
+    Thread closer = new Thread(executor::close);
+    closer.start();
+    while (!isClosed(executor)) {
+      Thread.sleep(1);
+    }
+    // The pool no longer takes the key's next turns, so its thread drains the queue inline
+    release.countDown();
+    closer.join(TimeUnit.SECONDS.toMillis(5));
+
+    assertFalse(closer.isAlive(), "Close waits for the queued tasks");
+    for (CompletableFuture<Boolean> future : futures) {
+      assertTrue(future.isDone());
+    }
+    assertEquals(IntStream.range(0, TASKS).boxed().toList(), ran);
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static boolean isClosed(PartitionedExecutor<String> executor) {
+    try {
+      executor.submit("probe", () -> 0);
+      return false;
+    } catch (IllegalStateException e) {
+      return true;
+    }
+  }
+}
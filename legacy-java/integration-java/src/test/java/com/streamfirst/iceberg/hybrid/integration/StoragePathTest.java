@@ -0,0 +1,118 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that storage paths validate and normalize exactly as the plain record they replaced did,
+ * for backslashes, trailing slashes and blank input, and that a shared instance from {@link
+ * StoragePath#of(String)} is never handed out for a string that would fail validation.
+ */
+public class StoragePathTest {
+
+  private static final String REJECTED = "<rejected>";
+
+  @Test
+  void testNormalizesSeparatorsAndTrailingSlash() {
+    assertEquals("a/b/c.txt", StoragePath.of("a\\b\\c.txt").path());
+    assertEquals("a/b", StoragePath.of("a\\b\\").path());
+    assertEquals("/", StoragePath.of("/").path());
+    assertEquals("/", StoragePath.of("\\").path());
+    assertEquals("data", StoragePath.of("data/").path());
+    assertEquals("data/", StoragePath.of("data//").path(), "Only one trailing slash is removed");
+
+    StoragePath trimmed = StoragePath.of("dir.d/file.tar.gz/");
+    assertEquals("file.tar.gz", trimmed.getFileName());
+    assertEquals("gz", trimmed.getExtension());
+    StoragePath directory = StoragePath.of("dir.d/sub/");
+    assertEquals("sub", directory.getFileName());
+    assertEquals("", directory.getExtension(), "A dot in a parent is not an extension");
+    assertEquals(StoragePath.of("dir.d"), directory.getParent());
+  }
+
+  @Test
+  void testRejectsBlankAndParentReferences() {
+    for (String path : List.of("", " ", "\t", " \n ", "..", "a/../b", "a\\..\\b", "a..b")) {
+      assertThrows(IllegalArgumentException.class, () -> StoragePath.of(path), path);
+    }
+    assertThrows(IllegalArgumentException.class, () -> StoragePath.of((String) null));
+  }
+
+  @Test
+  void testSharedInstanceNeverSkipsValidation() {
+    // Normalizes to a blank path, which the old record allowed since it checked the input
+    assertEquals(" ", StoragePath.of(" /").path());
+    assertThrows(IllegalArgumentException.class, () -> StoragePath.of(" "));
+
+    StoragePath normalized = StoragePath.of("data/x");
+    assertSame(normalized, StoragePath.of("data/x"), "A normalized path is shared");
+    assertEquals(normalized, StoragePath.of("data/x/"));
+    assertEquals(normalized, StoragePath.of("data\\x"));
+    assertEquals("data/x", StoragePath.of("data/x").path());
+  }
+
+  @Test
+  void testMatchesPreviousRecordForShortPaths() {
+    List<String> inputs = new ArrayList<>();
+    inputs.add("");
+    for (int length = 1; length <= 5; length++) {
+      List<String> longer = new ArrayList<>();
+      for (String shorter : inputs) {
+        if (shorter.length() == length - 1) {
+          for (char c : new char[] {'a', '.', '/', '\\', ' '}) {
+            longer.add(shorter + c);
+          }
+        }
+      }
+      inputs.addAll(longer);
+    }
+
+    // Twice over, so the second pass is served from shared instances where there are any
+    for (int pass = 0; pass < 2; pass++) {
+      for (String input : inputs) {
+        String expected = previousNormalization(input);
+        assertEquals(expected, outcome(() -> StoragePath.of(input).path()), "'" + input + "'");
+        if (!expected.equals(REJECTED)) {
+          StoragePath path = StoragePath.of(input);
+          assertEquals(previousFileName(expected), path.getFileName(), "'" + input + "'");
+          assertEquals(previousExtension(expected), path.getExtension(), "'" + input + "'");
+        }
+      }
+    }
+  }
+
+  private static String outcome(Supplier<String> path) {
+    try {
+      return path.get();
+    } catch (IllegalArgumentException e) {
+      return REJECTED;
+    }
+  }
+
+  /** The path the record before {@link StoragePath} normalized the input to. */
+  private static String previousNormalization(String path) {
+    if (path.trim().isEmpty() || path.contains("..")) {
+      return REJECTED;
+    }
+    path = path.replace('\\', '/');
+    if (path.length() > 1 && path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }
+    return path;
+  }
+
+  private static String previousFileName(String path) {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  private static String previousExtension(String path) {
+    String fileName = previousFileName(path);
+    int lastDot = fileName.lastIndexOf('.');
+    return lastDot == -1 ? "" : fileName.substring(lastDot + 1);
+  }
+}
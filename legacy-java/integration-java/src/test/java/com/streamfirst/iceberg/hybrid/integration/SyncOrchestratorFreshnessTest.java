@@ -0,0 +1,120 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.adapters.*;
+import com.streamfirst.iceberg.hybrid.application.*;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the sync orchestrator reports a commit as replicated to a region only once the region
+ * can serve it, which for a commit with data files is when its files have been copied.
+ */
+public class SyncOrchestratorFreshnessTest {
+
+  private static final Region US_EAST = new Region("us-east-1", "US East (Virginia)");
+  private static final Region EU_WEST = new Region("eu-west-1", "EU West (Ireland)");
+  private static final TableId TABLE = new TableId("test_namespace", "test_table");
+  private static final String SCHEMA =
+      "{\"type\":\"struct\",\"fields\":[{\"id\":1,\"name\":\"id\",\"type\":\"long\"}]}";
+
+  private InMemoryCatalogAdapter catalogAdapter;
+  private InMemoryStorageAdapter storageAdapter;
+  private InMemorySyncAdapter syncAdapter;
+  private InMemoryFreshnessAdapter freshnessAdapter;
+  private StorageLocation usStorage;
+  private FileCopyEngine copyEngine;
+  private SyncOrchestrator syncOrchestrator;
+
+  @BeforeEach
+  void setUp() {
+    catalogAdapter = new InMemoryCatalogAdapter();
+    storageAdapter = new InMemoryStorageAdapter();
+    syncAdapter = new InMemorySyncAdapter();
+    freshnessAdapter = new InMemoryFreshnessAdapter();
+    InMemoryRegistryAdapter registryAdapter = new InMemoryRegistryAdapter();
+
+    usStorage = new StorageLocation(US_EAST, "s3://iceberg-us-east", "s3");
+    StorageLocation euStorage = new StorageLocation(EU_WEST, "s3://iceberg-eu-west", "s3");
+    for (StorageLocation location : List.of(usStorage, euStorage)) {
+      registryAdapter.registerRegion(location.region());
+      registryAdapter.registerStorageLocation(location);
+      storageAdapter.registerStorageLocation(location.region(), location);
+    }
+
+    new WriteCoordinator(
+            catalogAdapter, new InMemoryCommitGateAdapter(), syncAdapter, registryAdapter)
+        .createTable(TABLE, SCHEMA, US_EAST);
+
+    copyEngine = FileCopyEngine.withDefaults(storageAdapter);
+    syncOrchestrator =
+        new SyncOrchestrator(
+            syncAdapter,
+            storageAdapter,
+            catalogAdapter,
+            registryAdapter,
+            null,
+            copyEngine,
+            freshnessAdapter);
+  }
+
+  @AfterEach
+  void tearDown() {
+    syncOrchestrator.close();
+    copyEngine.close();
+  }
+
+  @Test
+  void testMetadataAloneDoesNotReplicateCommitWithData() {
+    StoragePath dataFile = StoragePath.of("/data/test_namespace/test_table/part-0.parquet");
+    TableMetadata metadata = commit(List.of(dataFile));
+
+    syncAdapter.publishSyncEvent(syncAdapter.createMetadataSyncEvent(metadata, EU_WEST));
+    assertEquals(1, syncOrchestrator.processPendingEvents(EU_WEST));
+
+    ReplicationFreshness freshness = freshnessAdapter.getFreshness(TABLE, EU_WEST).orElseThrow();
+    assertEquals(1, freshness.commitsBehind(), "The commit's data has not been copied yet");
+    assertNull(freshness.lastReplicatedCommit());
+    assertEquals(
+        0L, freshnessAdapter.getLagHistogram(TABLE, EU_WEST).map(LagHistogram::count).orElse(0L));
+
+    storageAdapter.writeFile(usStorage, dataFile, new byte[] {1, 2, 3});
+    syncAdapter.publishSyncEvent(
+        syncAdapter.createDataSyncEvent(metadata, List.of(dataFile), EU_WEST));
+    assertEquals(1, syncOrchestrator.processPendingEvents(EU_WEST));
+
+    freshness = freshnessAdapter.getFreshness(TABLE, EU_WEST).orElseThrow();
+    assertTrue(freshness.isCaughtUp());
+    assertEquals(metadata.getCommitId(), freshness.lastReplicatedCommit());
+    assertEquals(
+        1,
+        freshnessAdapter.getLagHistogram(TABLE, EU_WEST).orElseThrow().count(),
+        "Each commit is measured once");
+  }
+
+  @Test
+  void testMetadataReplicatesCommitWithoutData() {
+    TableMetadata metadata = commit(List.of());
+
+    syncAdapter.publishSyncEvent(syncAdapter.createMetadataSyncEvent(metadata, EU_WEST));
+    assertEquals(1, syncOrchestrator.processPendingEvents(EU_WEST));
+
+    ReplicationFreshness freshness = freshnessAdapter.getFreshness(TABLE, EU_WEST).orElseThrow();
+    assertTrue(freshness.isCaughtUp());
+    assertEquals(metadata.getCommitId(), freshness.lastReplicatedCommit());
+  }
+
+  /** Commits to the catalog and records the commit as due for replication to the EU region. */
+  private TableMetadata commit(List<StoragePath> dataFiles) {
+    CommitId commitId =
+        catalogAdapter.commitMetadata(
+            new CommitRequest(TABLE, US_EAST, Instant.now(), dataFiles, SCHEMA, "INSERT"));
+    freshnessAdapter.recordCommit(TABLE, commitId, Instant.now(), List.of(EU_WEST));
+    return catalogAdapter.getMetadata(TABLE, commitId).orElseThrow();
+  }
+}
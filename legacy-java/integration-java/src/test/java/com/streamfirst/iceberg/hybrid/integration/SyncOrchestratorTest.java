@@ -0,0 +1,69 @@
+package com.streamfirst.iceberg.hybrid.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.streamfirst.iceberg.hybrid.adapters.*;
+import com.streamfirst.iceberg.hybrid.application.*;
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests how the sync orchestrator hands claimed events to its table executor. */
+public class SyncOrchestratorTest {
+
+  private static final Region US_EAST = new Region("us-east-1", "US East (Virginia)");
+  private static final Region EU_WEST = new Region("eu-west-1", "EU West (Ireland)");
+
+  private InMemoryCatalogAdapter catalogAdapter;
+  private InMemoryStorageAdapter storageAdapter;
+  private InMemorySyncAdapter syncAdapter;
+  private InMemoryRegistryAdapter registryAdapter;
+
+  @BeforeEach
+  void setUp() {
+    catalogAdapter = new InMemoryCatalogAdapter();
+    storageAdapter = new InMemoryStorageAdapter();
+    syncAdapter = new InMemorySyncAdapter();
+    registryAdapter = new InMemoryRegistryAdapter();
+    for (Region region : List.of(US_EAST, EU_WEST)) {
+      StorageLocation location = new StorageLocation(region, "s3://iceberg-" + region.id(), "s3");
+      registryAdapter.registerRegion(region);
+      registryAdapter.registerStorageLocation(location);
+      storageAdapter.registerStorageLocation(region, location);
+    }
+  }
+
+  @Test
+  void testClaimedEventsFailWhenExecutorIsClosed() {
+    for (String table : List.of("a", "b", "c")) {
+      syncAdapter.publishSyncEvent(syncAdapter.createMetadataSyncEvent(metadata(table), EU_WEST));
+    }
+    PartitionedExecutor<TableId> tableExecutor = new PartitionedExecutor<>("sync", 2);
+    tableExecutor.close();
+
+    try (SyncOrchestrator syncOrchestrator =
+        new SyncOrchestrator(
+            syncAdapter, storageAdapter, catalogAdapter, registryAdapter, tableExecutor)) {
+      int processed =
+          assertTimeoutPreemptively(
+              Duration.ofSeconds(5), () -> syncOrchestrator.processPendingEvents(EU_WEST));
+      assertEquals(0, processed);
+    }
+    // Failed rather than left claimed, so they are retried without waiting out their leases
+    assertEquals(3, syncAdapter.getFailedEvents(EU_WEST).size());
+    assertEquals(0, syncAdapter.getActiveClaimCount());
+  }
+
+  private static TableMetadata metadata(String table) {
+    return new TableMetadata(
+        new TableId("test_namespace", table),
+        new CommitId("commit-" + table),
+        US_EAST,
+        Instant.now(),
+        List.of(),
+        "{}");
+  }
+}
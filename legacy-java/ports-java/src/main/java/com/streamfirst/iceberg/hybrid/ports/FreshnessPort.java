@@ -0,0 +1,98 @@
+package com.streamfirst.iceberg.hybrid.ports;
+
+import com.streamfirst.iceberg.hybrid.domain.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Port for tracking how fresh each region's replica of each table is. Fed with commits as they are
+ * made and with replications as they complete, and queried by read routing and alerting without
+ * scanning sync events.
+ */
+public interface FreshnessPort {
+
+  /**
+   * Records a commit to a table. Commits are expected in commit order per table.
+   *
+   * @param tableId the table
+   * @param commitId the new commit
+   * @param committedAt when the commit was made
+   */
+  default void recordCommit(TableId tableId, CommitId commitId, Instant committedAt) {
+    recordCommit(tableId, commitId, committedAt, List.of());
+  }
+
+  /**
+   * Records a commit to a table and the regions it is to be replicated to. A region not seen before
+   * is tracked from this commit on, so it counts as lagging until its first replication completes.
+   *
+   * @param tableId the table
+   * @param commitId the new commit
+   * @param committedAt when the commit was made
+   * @param replicaRegions the regions the commit is replicated to
+   */
+  void recordCommit(
+      TableId tableId, CommitId commitId, Instant committedAt, Collection<Region> replicaRegions);
+
+  /**
+   * Records that a commit has been replicated to a region. A commit older than the region's last
+   * replicated commit, or one that was never recorded, only adds to the lag histogram.
+   *
+   * @param tableId the table
+   * @param region the region replicated to
+   * @param commitId the replicated commit
+   * @param publishedAt when replication of the oldest change included was requested
+   * @param replicatedAt when replication completed
+   */
+  void recordReplicated(
+      TableId tableId, Region region, CommitId commitId, Instant publishedAt, Instant replicatedAt);
+
+  /**
+   * Gets the freshness of a table's replica in a region.
+   *
+   * @param tableId the table
+   * @param region the region
+   * @return the freshness, or empty if the region is not known to hold a replica
+   */
+  Optional<ReplicationFreshness> getFreshness(TableId tableId, Region region);
+
+  /**
+   * Gets the freshness of every replica of a table.
+   *
+   * @param tableId the table
+   * @return freshness per region that commits have been recorded for or replicated to
+   */
+  List<ReplicationFreshness> getFreshness(TableId tableId);
+
+  /**
+   * Gets the freshness of every replica of every table.
+   *
+   * @return freshness per table and region
+   */
+  List<ReplicationFreshness> getAllFreshness();
+
+  /**
+   * Gets replicas lagging more than a threshold, e.g. for alerting.
+   *
+   * @param threshold the largest acceptable lag
+   * @return replicas whose lag exceeds the threshold
+   */
+  default List<ReplicationFreshness> getStaleReplicas(Duration threshold) {
+    return getAllFreshness().stream()
+        .filter(freshness -> freshness.lag().compareTo(threshold) > 0)
+        .toList();
+  }
+
+  /**
+   * Gets the distribution of replication lags observed for a table in a region, measured from
+   * when replication was requested to when it completed.
+   *
+   * @param tableId the table
+   * @param region the region
+   * @return the lag histogram, empty if nothing has been replicated to the region yet
+   */
+  Optional<LagHistogram> getLagHistogram(TableId tableId, Region region);
+}
@@ -0,0 +1,98 @@
+package com.streamfirst.iceberg.hybrid.ports;
+
+import com.streamfirst.iceberg.hybrid.domain.StorageLocation;
+import com.streamfirst.iceberg.hybrid.domain.StoragePath;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only channel that serves each read with one ranged read of the file. The size is taken when
+ * the channel is opened; if the file is replaced meanwhile, later reads see the new content.
+ */
+final class RangeReadChannel implements SeekableByteChannel {
+  private final StoragePort storage;
+  private final StorageLocation location;
+  private final StoragePath path;
+  private final long size;
+  private long position;
+  private boolean open = true;
+
+  RangeReadChannel(StoragePort storage, StorageLocation location, StoragePath path, long size) {
+    this.storage = storage;
+    this.location = location;
+    this.path = path;
+    this.size = size;
+  }
+
+  @Override
+  public int read(ByteBuffer target) throws IOException {
+    ensureOpen();
+    if (position >= size) {
+      return -1;
+    }
+    int length = (int) Math.min(target.remaining(), size - position);
+    if (length == 0) {
+      return 0;
+    }
+    ByteBuffer range = storage.readRangeBuffer(location, path, position, length);
+    if (!range.hasRemaining()) {
+      // The file has shrunk since the channel was opened
+      return -1;
+    }
+    int count = range.remaining();
+    target.put(range);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int write(ByteBuffer source) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public long position() throws IOException {
+    ensureOpen();
+    return position;
+  }
+
+  @Override
+  public SeekableByteChannel position(long newPosition) throws IOException {
+    ensureOpen();
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Position cannot be negative");
+    }
+    position = newPosition;
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    ensureOpen();
+    return size;
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long newSize) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() {
+    open = false;
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+}
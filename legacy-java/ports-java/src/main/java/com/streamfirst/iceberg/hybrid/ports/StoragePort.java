@@ -1,10 +1,25 @@
 package com.streamfirst.iceberg.hybrid.ports;
 
+import com.streamfirst.iceberg.hybrid.domain.BulkDeleteResult;
+import com.streamfirst.iceberg.hybrid.domain.FileListing;
+import com.streamfirst.iceberg.hybrid.domain.FileStat;
 import com.streamfirst.iceberg.hybrid.domain.Region;
 import com.streamfirst.iceberg.hybrid.domain.StorageLocation;
 import com.streamfirst.iceberg.hybrid.domain.StoragePath;
+import com.streamfirst.iceberg.hybrid.domain.StoredObject;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 
 /**
@@ -13,6 +28,12 @@ import java.util.function.Predicate;
  */
 public interface StoragePort {
 
+  /**
+   * Most keys an object store accepts in one bulk delete request, as in S3's DeleteObjects.
+   * Adapters for such stores split {@link #deleteAll} into requests of this many keys.
+   */
+  int MAX_DELETE_BATCH = 1000;
+
   /**
    * Writes data to a file at the specified location.
    *
@@ -23,6 +44,22 @@ public interface StoragePort {
    */
   void writeFile(StorageLocation location, StoragePath path, byte[] data);
 
+  /**
+   * Writes the remaining bytes of a buffer to a file. The buffer's position is not changed. The
+   * default implementation copies the bytes into an array for {@link #writeFile(StorageLocation,
+   * StoragePath, byte[])}.
+   *
+   * @param location the storage location
+   * @param path the file path within the storage location
+   * @param data the data to write, from its position to its limit
+   * @throws RuntimeException if write operation fails
+   */
+  default void writeBuffer(StorageLocation location, StoragePath path, ByteBuffer data) {
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    writeFile(location, path, bytes);
+  }
+
   /**
    * Writes streaming data to a file at the specified location.
    *
@@ -33,6 +70,56 @@ public interface StoragePort {
    */
   void writeFile(StorageLocation location, StoragePath path, InputStream data);
 
+  /**
+   * Writes a stream as a multipart upload, holding at most one part in memory, so content too
+   * large to buffer can be written with a bounded heap. The etag is computed as the stream is read.
+   * A stream that ends within the first part is written with {@link #writeFile(StorageLocation,
+   * StoragePath, byte[])} instead. If writing fails, the upload is aborted and any existing file is
+   * left unchanged.
+   *
+   * @param location the storage location
+   * @param path the file path within the storage location
+   * @param data the input stream containing data to write
+   * @param partBytes size of each part but the last
+   * @return the size and etag of the written file
+   * @throws RuntimeException if write operation fails
+   */
+  default StoredObject writeFileInParts(
+      StorageLocation location, StoragePath path, InputStream data, int partBytes) {
+    if (partBytes < 1) {
+      throw new IllegalArgumentException("Part size must be at least 1 byte");
+    }
+    String uploadId = null;
+    boolean completed = false;
+    try {
+      byte[] part = data.readNBytes(partBytes);
+      if (part.length < partBytes) {
+        writeFile(location, path, part);
+        return new StoredObject(path, part.length, StoredObject.computeEtag(part));
+      }
+
+      MessageDigest digest = StoredObject.newEtagDigest();
+      long size = 0;
+      int partCount = 0;
+      uploadId = createMultipartUpload(location, path);
+      do {
+        digest.update(part);
+        size += part.length;
+        uploadPart(location, path, uploadId, ++partCount, part);
+        part = data.readNBytes(partBytes);
+      } while (part.length > 0);
+      completeMultipartUpload(location, path, uploadId, partCount);
+      completed = true;
+      return new StoredObject(path, size, StoredObject.etagOf(digest));
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to write file: " + path, e);
+    } finally {
+      if (uploadId != null && !completed) {
+        abortMultipartUpload(location, path, uploadId);
+      }
+    }
+  }
+
   /**
    * Reads entire file content into memory. Use with caution for large files.
    *
@@ -53,6 +140,170 @@ public interface StoragePort {
    */
   InputStream readFileStream(StorageLocation location, StoragePath path);
 
+  /**
+   * Reads a byte range of a file. Lets large files be read in parallel chunks. The default
+   * implementation skips through {@link #readFileStream}; adapters whose backends support ranged
+   * reads should override it.
+   *
+   * @param location the storage location
+   * @param path the file path to read
+   * @param offset position of the first byte to read
+   * @param length maximum number of bytes to read
+   * @return the bytes read, shorter than {@code length} only at the end of the file
+   * @throws RuntimeException if file doesn't exist or read fails
+   */
+  default byte[] readRange(StorageLocation location, StoragePath path, long offset, int length) {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("Offset and length cannot be negative");
+    }
+    try (InputStream in = readFileStream(location, path)) {
+      in.skipNBytes(offset);
+      return in.readNBytes(length);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read range of file: " + path, e);
+    }
+  }
+
+  /**
+   * Starts a multipart upload, through which a file is written as separately uploaded parts that
+   * become visible as one file only when the upload is completed. Parts of an unfinished upload
+   * persist, so a failed or interrupted transfer can resume with the parts still missing.
+   *
+   * @param location the storage location
+   * @param path the file path to write
+   * @return identifier of the new upload
+   * @throws RuntimeException if the upload cannot be started
+   */
+  default String createMultipartUpload(StorageLocation location, StoragePath path) {
+    return createMultipartUpload(location, path, null);
+  }
+
+  /**
+   * Starts a multipart upload that keeps a tag for as long as it is unfinished. A caller resuming
+   * an upload, possibly after a restart, can check the tag to tell whether the parts already
+   * uploaded belong to the content it is writing.
+   *
+   * @param location the storage location
+   * @param path the file path to write
+   * @param tag text kept with the upload, such as the etag of the content being written, or null
+   * @return identifier of the new upload
+   * @throws RuntimeException if the upload cannot be started
+   */
+  String createMultipartUpload(StorageLocation location, StoragePath path, String tag);
+
+  /**
+   * Gets the tag a multipart upload was started with.
+   *
+   * @param location the storage location
+   * @param path the file path being written
+   * @param uploadId the upload identifier
+   * @return the tag, empty if the upload was started without one
+   * @throws RuntimeException if the upload doesn't exist
+   */
+  Optional<String> getMultipartUploadTag(
+      StorageLocation location, StoragePath path, String uploadId);
+
+  /**
+   * Uploads one part of a multipart upload. Uploading a part number again replaces the part.
+   *
+   * @param location the storage location
+   * @param path the file path being written
+   * @param uploadId the upload identifier
+   * @param partNumber position of the part in the file, from 1
+   * @param data the part content
+   * @throws RuntimeException if the upload doesn't exist or the write fails
+   */
+  void uploadPart(
+      StorageLocation location, StoragePath path, String uploadId, int partNumber, byte[] data);
+
+  /**
+   * Lists the unfinished multipart uploads for a file, oldest first.
+   *
+   * @param location the storage location
+   * @param path the file path being written
+   * @return identifiers of the uploads, empty if there are none
+   */
+  List<String> listMultipartUploads(StorageLocation location, StoragePath path);
+
+  /**
+   * Lists the parts uploaded so far in a multipart upload.
+   *
+   * @param location the storage location
+   * @param path the file path being written
+   * @param uploadId the upload identifier
+   * @return size in bytes of each uploaded part, by part number
+   * @throws RuntimeException if the upload doesn't exist
+   */
+  Map<Integer, Long> listUploadedParts(StorageLocation location, StoragePath path, String uploadId);
+
+  /**
+   * Completes a multipart upload by joining parts 1 to {@code partCount} into the file, replacing
+   * any existing file at the path.
+   *
+   * @param location the storage location
+   * @param path the file path being written
+   * @param uploadId the upload identifier
+   * @param partCount number of parts in the file
+   * @throws RuntimeException if the upload doesn't exist or a part is missing
+   */
+  void completeMultipartUpload(
+      StorageLocation location, StoragePath path, String uploadId, int partCount);
+
+  /**
+   * Abandons a multipart upload and discards its parts. Does nothing if the upload doesn't exist.
+   *
+   * @param location the storage location
+   * @param path the file path being written
+   * @param uploadId the upload identifier
+   */
+  void abortMultipartUpload(StorageLocation location, StoragePath path, String uploadId);
+
+  /**
+   * Reads a file into a read-only buffer. Adapters that hold content in memory return a view of it
+   * rather than a copy, so callers that only read should prefer this over {@link #readFile}. The
+   * default implementation wraps {@link #readFile}.
+   *
+   * @param location the storage location
+   * @param path the file path to read
+   * @return a read-only buffer positioned at the start of the content
+   * @throws RuntimeException if file doesn't exist or read fails
+   */
+  default ByteBuffer readBuffer(StorageLocation location, StoragePath path) {
+    return ByteBuffer.wrap(readFile(location, path)).asReadOnlyBuffer();
+  }
+
+  /**
+   * Reads a byte range of a file into a read-only buffer, like {@link #readRange} but without
+   * copying for adapters that hold content in memory.
+   *
+   * @param location the storage location
+   * @param path the file path to read
+   * @param offset position of the first byte to read
+   * @param length maximum number of bytes to read
+   * @return a read-only buffer of the range, shorter than requested only at the end of the file
+   * @throws RuntimeException if file doesn't exist or read fails
+   */
+  default ByteBuffer readRangeBuffer(
+      StorageLocation location, StoragePath path, long offset, int length) {
+    return ByteBuffer.wrap(readRange(location, path, offset, length)).asReadOnlyBuffer();
+  }
+
+  /**
+   * Opens a read-only channel over a file, for readers that seek around a file rather than read
+   * it whole, such as Parquet footer and column chunk reads. Only the bytes read through the
+   * channel are fetched. The default implementation serves each read with {@link
+   * #readRangeBuffer}, so callers should read into buffers of a useful size; adapters with native
+   * seekable access should override it.
+   *
+   * @param location the storage location
+   * @param path the file path to read
+   * @return a channel positioned at the start of the file, to be closed by the caller
+   * @throws RuntimeException if file doesn't exist or cannot be opened
+   */
+  default SeekableByteChannel openChannel(StorageLocation location, StoragePath path) {
+    return new RangeReadChannel(this, location, path, getFileSize(location, path));
+  }
+
   /**
    * Checks if a file exists at the specified location.
    *
@@ -62,6 +313,93 @@ public interface StoragePort {
    */
   boolean fileExists(StorageLocation location, StoragePath path);
 
+  /**
+   * Gets a file's size and content hash without transferring its content. The default
+   * implementation hashes the file by reading it; adapters should override it with the hash their
+   * backend stores, e.g. computed on write.
+   *
+   * @param location the storage location
+   * @param path the file path
+   * @return the file's size and etag, or empty if the file doesn't exist
+   * @throws RuntimeException if the file cannot be inspected
+   */
+  default Optional<StoredObject> getObjectInfo(StorageLocation location, StoragePath path) {
+    if (!fileExists(location, path)) {
+      return Optional.empty();
+    }
+    try (InputStream in = readFileStream(location, path)) {
+      String etag = StoredObject.computeEtag(in);
+      return Optional.of(new StoredObject(path, getFileSize(location, path), etag));
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read file: " + path, e);
+    }
+  }
+
+  /**
+   * Checks which of a set of files exist. The default implementation calls {@link #fileExists} for
+   * each file; adapters should override it to look the files up in bulk.
+   *
+   * @param location the storage location
+   * @param paths the file paths to check
+   * @return the given paths that exist
+   */
+  default Set<StoragePath> existsAll(StorageLocation location, Collection<StoragePath> paths) {
+    Set<StoragePath> existing = new HashSet<>();
+    for (StoragePath path : paths) {
+      if (fileExists(location, path)) {
+        existing.add(path);
+      }
+    }
+    return existing;
+  }
+
+  /**
+   * Gets the size, etag and modification time of a set of files. The default implementation calls
+   * {@link #getObjectInfo} for each file and reports no modification times; adapters should
+   * override it to look the files up in bulk.
+   *
+   * @param location the storage location
+   * @param paths the file paths to look up
+   * @return the metadata of each given file that exists, by path
+   * @throws RuntimeException if a file cannot be inspected
+   */
+  default Map<StoragePath, FileStat> statAll(
+      StorageLocation location, Collection<StoragePath> paths) {
+    Map<StoragePath, FileStat> stats = new HashMap<>();
+    for (StoragePath path : paths) {
+      getObjectInfo(location, path).ifPresent(object -> stats.put(path, FileStat.of(object)));
+    }
+    return stats;
+  }
+
+  /**
+   * Deletes a set of files, reporting the outcome for each rather than stopping at the first
+   * failure. Adapters for object stores should send the files in bulk requests of at most {@link
+   * #MAX_DELETE_BATCH} keys. The default implementation deletes the files one at a time.
+   *
+   * @param location the storage location
+   * @param paths the file paths to delete
+   * @return which files were deleted, did not exist or could not be deleted
+   */
+  default BulkDeleteResult deleteAll(StorageLocation location, Collection<StoragePath> paths) {
+    List<StoragePath> deleted = new ArrayList<>();
+    List<StoragePath> notFound = new ArrayList<>();
+    Map<StoragePath, String> failed = new HashMap<>();
+    for (StoragePath path : paths) {
+      try {
+        if (!fileExists(location, path)) {
+          notFound.add(path);
+          continue;
+        }
+        deleteFile(location, path);
+        deleted.add(path);
+      } catch (RuntimeException e) {
+        failed.put(path, String.valueOf(e.getMessage()));
+      }
+    }
+    return new BulkDeleteResult(deleted, notFound, failed);
+  }
+
   /**
    * Deletes a file from storage.
    *
@@ -107,6 +445,37 @@ public interface StoragePort {
     return listFiles(location, path -> path.startsWith(prefix));
   }
 
+  /**
+   * Lists one page of the files with a given prefix, in path order. Scans over large locations,
+   * such as orphan file detection, should page through results with this rather than list
+   * everything at once. The default implementation lists every match with {@link
+   * #listFiles(StorageLocation, String)} and pages through the result; adapters with an ordered
+   * key index should override it to seek directly to the page.
+   *
+   * @param location the storage location
+   * @param prefix the path prefix to filter files, empty for all files
+   * @param startAfter list only paths that sort after this one, or null to start at the first
+   * @param limit maximum number of paths on the page
+   * @return the page, with where the next one starts if more files follow
+   */
+  default FileListing listFiles(
+      StorageLocation location, String prefix, String startAfter, int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Listing limit must be at least 1");
+    }
+    List<StoragePath> page = new ArrayList<>();
+    for (StoragePath path : listFiles(location, prefix)) {
+      if (startAfter != null && path.toString().compareTo(startAfter) <= 0) {
+        continue;
+      }
+      if (page.size() == limit) {
+        return new FileListing(page, page.get(limit - 1).toString());
+      }
+      page.add(path);
+    }
+    return new FileListing(page, null);
+  }
+
   /**
    * Gets the size of a file in bytes.
    *
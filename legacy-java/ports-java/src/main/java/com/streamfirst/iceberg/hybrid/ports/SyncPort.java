@@ -1,6 +1,8 @@
 package com.streamfirst.iceberg.hybrid.ports;
 
 import com.streamfirst.iceberg.hybrid.domain.*;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.function.Predicate;
 
@@ -13,6 +15,13 @@ public interface SyncPort {
   /**
    * Publishes a synchronization event to trigger replication.
    *
+   * <p>Pending events are coalesced per table and target region. A new METADATA_SYNC event
+   * supersedes any still-pending metadata event for the same table and region, since only the
+   * latest metadata matters. A new DATA_SYNC event absorbs the file set of any still-pending data
+   * event for the same table, source and target region. The superseded events move to SUPERSEDED,
+   * and the surviving event inherits the oldest creation time so it keeps its place in the queue.
+   * Events that have already been claimed are never coalesced.
+   *
    * @param event the sync event to publish
    * @throws RuntimeException if event cannot be published
    */
@@ -41,6 +50,67 @@ public interface SyncPort {
                 && event.getStatus() == SyncEvent.Status.PENDING);
   }
 
+  /**
+   * Gets up to {@code maxEvents} of the oldest pending sync events for a target region. Workers
+   * should prefer this over {@link #getPendingEvents(Region)} so that polling cost is bounded by
+   * the batch size rather than the backlog size.
+   *
+   * @param targetRegion the region to get pending events for
+   * @param maxEvents the maximum number of events to return
+   * @return at most {@code maxEvents} pending sync events, ordered by creation time
+   */
+  default List<SyncEvent> getPendingEvents(Region targetRegion, int maxEvents) {
+    return getPendingEvents(targetRegion).stream().limit(maxEvents).toList();
+  }
+
+  /**
+   * Atomically claims up to {@code maxEvents} of the oldest pending events for a target region.
+   * Claimed events move to IN_PROGRESS and are leased to the worker until the visibility timeout
+   * elapses. An event whose lease is neither renewed nor completed in time returns to PENDING so
+   * another worker can pick it up. Two concurrent callers never receive the same event.
+   *
+   * @param targetRegion the region to claim events for
+   * @param workerId identifies the claiming worker; required to renew or complete the claim
+   * @param maxEvents the maximum number of events to claim
+   * @param visibilityTimeout how long the claim is held before the event becomes visible again
+   * @return the claimed events in IN_PROGRESS status, ordered by creation time
+   */
+  List<SyncEvent> claimPendingEvents(
+      Region targetRegion, String workerId, int maxEvents, Duration visibilityTimeout);
+
+  /**
+   * Extends the lease on a claimed event. Long-running workers call this periodically so the event
+   * is not handed to another worker while it is still being processed.
+   *
+   * @param eventId the claimed event
+   * @param workerId the worker holding the claim
+   * @param visibilityTimeout the new timeout, measured from now
+   * @return true if the worker still held the claim, false if it expired or was never held
+   */
+  boolean renewClaim(EventId eventId, String workerId, Duration visibilityTimeout);
+
+  /**
+   * Completes a claimed event by moving it to its final status and releasing the lease. Completion
+   * is rejected if the lease has expired or belongs to another worker, so a slow worker cannot
+   * overwrite the outcome of the worker that took over the event.
+   *
+   * @param eventId the claimed event
+   * @param workerId the worker holding the claim
+   * @param status the final status (COMPLETED or FAILED)
+   * @return true if the status was applied, false if the worker no longer held the claim
+   */
+  boolean completeClaim(EventId eventId, String workerId, SyncEvent.Status status);
+
+  /**
+   * Returns events whose claims have expired in a region to PENDING. Implementations also do this
+   * lazily when claiming, so calling it is only needed to make expired work visible to readers of
+   * {@link #getPendingEvents(Region)}.
+   *
+   * @param targetRegion the region to sweep
+   * @return number of events returned to PENDING
+   */
+  int releaseExpiredClaims(Region targetRegion);
+
   /**
    * Updates the status of a synchronization event.
    *
@@ -62,12 +132,13 @@ public interface SyncPort {
 
   /**
    * Creates a data synchronization event. This triggers replication of data files to the target
-   * region.
+   * region. The event carries the file list, so workers copy exactly these files without reading
+   * the commit back from the catalog.
    *
    * @param metadata the table metadata context
    * @param dataFiles the specific data files to sync
    * @param targetRegion the region to sync to
-   * @return the created sync event
+   * @return the created sync event, with {@code dataFiles} as its manifest
    */
   SyncEvent createDataSyncEvent(
       TableMetadata metadata, List<StoragePath> dataFiles, Region targetRegion);
@@ -97,11 +168,84 @@ public interface SyncPort {
             event.getTargetRegion().equals(region) && event.getStatus() == SyncEvent.Status.FAILED);
   }
 
+  /**
+   * Gets up to {@code maxEvents} of the oldest events in a given status for a region. Dashboards
+   * and retry loops should prefer this over {@link #getSyncEvents(Predicate)}, which
+   * implementations can only answer by scanning every event.
+   *
+   * @param region the target region to get events for
+   * @param status the status to match
+   * @param maxEvents the maximum number of events to return
+   * @return at most {@code maxEvents} matching events, ordered by creation time
+   */
+  default List<SyncEvent> getEventsByStatus(
+      Region region, SyncEvent.Status status, int maxEvents) {
+    return getSyncEvents(
+            event -> event.getTargetRegion().equals(region) && event.getStatus() == status)
+        .stream()
+        .limit(maxEvents)
+        .toList();
+  }
+
+  /**
+   * Gets up to {@code maxEvents} of the events created in a time range, across all regions.
+   *
+   * @param from start of the range, inclusive
+   * @param to end of the range, exclusive
+   * @param maxEvents the maximum number of events to return
+   * @return at most {@code maxEvents} events, ordered by creation time
+   */
+  default List<SyncEvent> getEventsCreatedBetween(Instant from, Instant to, int maxEvents) {
+    return getSyncEvents(
+            event -> !event.getCreatedAt().isBefore(from) && event.getCreatedAt().isBefore(to))
+        .stream()
+        .limit(maxEvents)
+        .toList();
+  }
+
+  /**
+   * Removes finished events that have not changed since the given instant, so that the event
+   * store does not grow without bound. Only COMPLETED and SUPERSEDED events are removed; failed and
+   * dead-lettered events are kept until an operator deals with them.
+   *
+   * @param finishedBefore events last updated before this instant are removed
+   * @return number of events removed
+   */
+  int purgeCompletedEvents(Instant finishedBefore);
+
   /**
    * Retries a failed synchronization event. Resets the event status to PENDING for reprocessing.
+   * The event keeps its attempt count so retry policies can bound the number of attempts.
    *
    * @param eventId the event identifier to retry
    * @throws IllegalArgumentException if event doesn't exist or isn't failed
    */
   void retryFailedEvent(EventId eventId);
+
+  /**
+   * Moves a failed event to the dead-letter store. The event's status becomes DEAD_LETTERED and it
+   * is no longer returned by {@link #getFailedEvents(Region)} or retried.
+   *
+   * @param eventId the failed event to give up on
+   * @param reason why the event was dead-lettered, for operators
+   * @throws IllegalArgumentException if event doesn't exist or isn't failed
+   */
+  void deadLetterEvent(EventId eventId, String reason);
+
+  /**
+   * Gets the dead-lettered events for a target region, most recently dead-lettered first.
+   *
+   * @param region the region to get dead-lettered events for
+   * @return list of dead-letter entries
+   */
+  List<DeadLetterEntry> getDeadLetterEvents(Region region);
+
+  /**
+   * Removes an event from the dead-letter store and returns it to PENDING with its attempt count
+   * reset. Used once the underlying problem has been fixed.
+   *
+   * @param eventId the dead-lettered event to reprocess
+   * @throws IllegalArgumentException if event doesn't exist or isn't dead-lettered
+   */
+  void redriveDeadLetterEvent(EventId eventId);
 }